@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.reactive;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.callback.DataReceivedCallback;
+import no.nordicsemi.android.ble.data.Data;
+import no.nordicsemi.android.ble.reactive.annotation.BackpressureStrategy;
+
+/**
+ * A Reactive Streams {@link Publisher} emitting values received using notifications,
+ * indications or written to a server characteristic or descriptor.
+ * <p>
+ * The BLE link is push-only: a peripheral sends notifications regardless of whether the
+ * application keeps up with them. This publisher decouples the link from the consumer and
+ * delivers values only when requested using {@link Subscription#request(long)}.
+ * Values received while there is no outstanding demand are either buffered
+ * ({@link #STRATEGY_BUFFER}) or conflated, so that only the most recent one is kept
+ * ({@link #STRATEGY_CONFLATE}).
+ * <p>
+ * The publisher is unicast: it allows a single {@link Subscriber} at a time. Any other
+ * subscriber will receive {@link Subscriber#onError(Throwable)} with an
+ * {@link IllegalStateException}. When the subscription is cancelled or terminated the
+ * {@link Source} is unbound, so that the value changed callback is removed, and another
+ * subscriber may subscribe.
+ * <p>
+ * Example, in a {@link no.nordicsemi.android.ble.BleManager} subclass:
+ * <pre>
+ * final DataPublisher publisher = DataPublisher.buffer(new DataPublisher.Source() {
+ *     public void bind(DataReceivedCallback callback) {
+ *         setNotificationCallback(characteristic).with(callback);
+ *         enableNotifications(characteristic).enqueue();
+ *     }
+ *
+ *     public void unbind() {
+ *         disableNotifications(characteristic).enqueue();
+ *         removeNotificationCallback(characteristic);
+ *     }
+ * }, 64);
+ * </pre>
+ * Call {@link #complete()} or {@link #error(Throwable)} when the device disconnects.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class DataPublisher implements Publisher<Data> {
+	/**
+	 * Values received without demand are kept in a bounded buffer. When the buffer overflows
+	 * the subscriber is notified with an {@link IllegalStateException} and the subscription
+	 * is cancelled.
+	 */
+	public static final int STRATEGY_BUFFER = 0;
+	/**
+	 * Only the most recent value received without demand is kept. Older values are dropped.
+	 */
+	public static final int STRATEGY_CONFLATE = 1;
+
+	/**
+	 * The source of values, usually a {@link no.nordicsemi.android.ble.ValueChangedCallback}
+	 * set by the manager. The methods are called from the thread subscribing or cancelling
+	 * the subscription.
+	 */
+	public interface Source {
+		/**
+		 * Called when a subscriber has subscribed. The implementation should start
+		 * delivering values to the given callback.
+		 *
+		 * @param callback the callback to pass received values to.
+		 */
+		void bind(@NonNull final DataReceivedCallback callback);
+
+		/**
+		 * Called when the subscription was cancelled or has terminated.
+		 * The implementation should remove the callback given in {@link #bind(DataReceivedCallback)}.
+		 */
+		void unbind();
+	}
+
+	@NonNull
+	private final Source source;
+	@BackpressureStrategy
+	private final int strategy;
+	private final int capacity;
+	@NonNull
+	private final AtomicReference<DataSubscription> current = new AtomicReference<>();
+
+	/**
+	 * Creates a publisher that buffers up to the given number of values received when
+	 * there was no demand.
+	 *
+	 * @param source   the source of values.
+	 * @param capacity the maximum number of pending values.
+	 * @return The publisher.
+	 */
+	@NonNull
+	public static DataPublisher buffer(@NonNull final Source source,
+									   @IntRange(from = 1) final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+		return new DataPublisher(source, STRATEGY_BUFFER, capacity);
+	}
+
+	/**
+	 * Creates a publisher that keeps only the most recent value received when there was
+	 * no demand.
+	 *
+	 * @param source the source of values.
+	 * @return The publisher.
+	 */
+	@NonNull
+	public static DataPublisher conflate(@NonNull final Source source) {
+		return new DataPublisher(source, STRATEGY_CONFLATE, 1);
+	}
+
+	private DataPublisher(@NonNull final Source source,
+						  @BackpressureStrategy final int strategy, final int capacity) {
+		this.source = source;
+		this.strategy = strategy;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public void subscribe(final Subscriber<? super Data> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("Subscriber must not be null");
+
+		final DataSubscription subscription = new DataSubscription(subscriber);
+		if (!current.compareAndSet(null, subscription)) {
+			subscriber.onSubscribe(EmptySubscription.INSTANCE);
+			subscriber.onError(new IllegalStateException("DataPublisher allows only a single Subscriber"));
+			return;
+		}
+		subscriber.onSubscribe(subscription);
+		subscription.bind();
+	}
+
+	/**
+	 * Returns whether there is an active subscriber.
+	 *
+	 * @return True, if a subscriber is subscribed.
+	 */
+	public boolean hasSubscriber() {
+		return current.get() != null;
+	}
+
+	/**
+	 * Completes the current subscription, if any, after all pending values have been
+	 * delivered. Call this method when the device has disconnected.
+	 */
+	public void complete() {
+		final DataSubscription subscription = current.get();
+		if (subscription != null)
+			subscription.complete();
+	}
+
+	/**
+	 * Terminates the current subscription, if any, with the given error.
+	 * Pending values are dropped.
+	 *
+	 * @param error the error to be passed to the subscriber.
+	 */
+	public void error(@NonNull final Throwable error) {
+		final DataSubscription subscription = current.get();
+		if (subscription != null)
+			subscription.error(error);
+	}
+
+	private final class DataSubscription implements Subscription, DataReceivedCallback {
+		@Nullable
+		private volatile Subscriber<? super Data> subscriber;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+		private final AtomicInteger size = new AtomicInteger();
+		private final Queue<Data> queue;
+		private final AtomicReference<Data> latest;
+		private final AtomicReference<Throwable> error = new AtomicReference<>();
+		private volatile boolean done;
+		private volatile boolean cancelled;
+		private boolean bound;
+
+		DataSubscription(@NonNull final Subscriber<? super Data> subscriber) {
+			this.subscriber = subscriber;
+			this.queue = strategy == STRATEGY_BUFFER ? new ConcurrentLinkedQueue<>() : null;
+			this.latest = strategy == STRATEGY_CONFLATE ? new AtomicReference<>() : null;
+		}
+
+		@Override
+		public void onDataReceived(@NonNull final BluetoothDevice device, @NonNull final Data data) {
+			if (done || cancelled)
+				return;
+			if (queue != null) {
+				if (size.incrementAndGet() > capacity) {
+					size.decrementAndGet();
+					error(new IllegalStateException("Buffer overflow: more than "
+							+ capacity + " values pending"));
+					return;
+				}
+				queue.offer(data);
+			} else {
+				latest.set(data);
+			}
+			drain();
+		}
+
+		@Override
+		public void request(final long n) {
+			if (n <= 0) {
+				error(new IllegalArgumentException("Rule 3.9: non-positive request: " + n));
+				return;
+			}
+			long r, u;
+			do {
+				r = requested.get();
+				if (r == Long.MAX_VALUE)
+					break;
+				u = r + n;
+				if (u < 0)
+					u = Long.MAX_VALUE;
+			} while (!requested.compareAndSet(r, u));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			if (cancelled)
+				return;
+			cancelled = true;
+			release();
+			if (wip.getAndIncrement() == 0)
+				clear();
+		}
+
+		void complete() {
+			done = true;
+			drain();
+		}
+
+		void error(@NonNull final Throwable t) {
+			if (error.compareAndSet(null, t))
+				drain();
+		}
+
+		synchronized void bind() {
+			if (!cancelled && !done && error.get() == null) {
+				bound = true;
+				source.bind(this);
+			}
+		}
+
+		private void release() {
+			subscriber = null;
+			current.compareAndSet(this, null);
+			synchronized (this) {
+				if (bound) {
+					bound = false;
+					source.unbind();
+				}
+			}
+		}
+
+		private void clear() {
+			if (queue != null) {
+				queue.clear();
+				size.set(0);
+			} else {
+				latest.set(null);
+			}
+		}
+
+		@Nullable
+		private Data poll() {
+			if (queue != null) {
+				final Data data = queue.poll();
+				if (data != null)
+					size.decrementAndGet();
+				return data;
+			}
+			return latest.getAndSet(null);
+		}
+
+		private boolean isEmpty() {
+			return queue != null ? queue.isEmpty() : latest.get() == null;
+		}
+
+		/**
+		 * Delivers pending values and terminal events. Only one thread at a time may be
+		 * in the loop; other callers mark the work as missed and the thread in the loop
+		 * picks it up.
+		 */
+		private void drain() {
+			if (wip.getAndIncrement() != 0)
+				return;
+
+			int missed = 1;
+			final Subscriber<? super Data> a = subscriber;
+			for (;;) {
+				if (a == null || cancelled) {
+					clear();
+					return;
+				}
+				final long r = requested.get();
+				long e = 0L;
+				while (e != r) {
+					if (terminated(a))
+						return;
+					final Data data = poll();
+					if (data == null)
+						break;
+					a.onNext(data);
+					e++;
+				}
+				if (e == r && terminated(a))
+					return;
+				if (e != 0L && r != Long.MAX_VALUE)
+					requested.addAndGet(-e);
+
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					break;
+			}
+		}
+
+		/**
+		 * Checks whether the subscription was cancelled or has terminated and signals the
+		 * terminal event. Errors are delivered immediately, completion after all pending
+		 * values were emitted.
+		 */
+		private boolean terminated(@NonNull final Subscriber<? super Data> a) {
+			if (cancelled) {
+				clear();
+				return true;
+			}
+			final Throwable t = error.get();
+			if (t != null) {
+				cancelled = true;
+				clear();
+				release();
+				a.onError(t);
+				return true;
+			}
+			if (done && isEmpty()) {
+				cancelled = true;
+				release();
+				a.onComplete();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private static final class EmptySubscription implements Subscription {
+		static final EmptySubscription INSTANCE = new EmptySubscription();
+
+		@Override
+		public void request(final long n) {
+			// ignore
+		}
+
+		@Override
+		public void cancel() {
+			// ignore
+		}
+	}
+}
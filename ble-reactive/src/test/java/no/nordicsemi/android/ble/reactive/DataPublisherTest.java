@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.reactivestreams.tck.PublisherVerification;
+import org.reactivestreams.tck.TestEnvironment;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import no.nordicsemi.android.ble.callback.DataReceivedCallback;
+import no.nordicsemi.android.ble.data.Data;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class DataPublisherTest extends PublisherVerification<Data> {
+	private static final int CAPACITY = 1024;
+
+	public DataPublisherTest() {
+		super(new TestEnvironment());
+	}
+
+	/**
+	 * A simulated link, sending the given number of notifications from a background thread
+	 * as soon as the callback is bound, and completing the publisher afterwards.
+	 */
+	private static final class SimulatedLink implements DataPublisher.Source {
+		private final long count;
+		private DataPublisher publisher;
+		private volatile boolean connected;
+
+		SimulatedLink(final long count) {
+			this.count = count;
+		}
+
+		@Override
+		public void bind(final DataReceivedCallback callback) {
+			connected = true;
+			final Thread thread = new Thread(() -> {
+				for (long i = 0; i < count && connected; i++) {
+					callback.onDataReceived(null, Data.opCode((byte) i));
+				}
+				publisher.complete();
+			}, "SimulatedLink");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void unbind() {
+			connected = false;
+		}
+	}
+
+	/**
+	 * A link that only delivers notifications when {@link #send(int)} is called.
+	 */
+	private static final class ManualLink implements DataPublisher.Source {
+		private DataReceivedCallback callback;
+
+		@Override
+		public void bind(final DataReceivedCallback callback) {
+			this.callback = callback;
+		}
+
+		@Override
+		public void unbind() {
+			callback = null;
+		}
+
+		void send(final int value) {
+			if (callback != null)
+				callback.onDataReceived(null, Data.opCode((byte) value));
+		}
+	}
+
+	private static final class ListSubscriber implements Subscriber<Data> {
+		final List<Integer> values = new ArrayList<>();
+		Subscription subscription;
+		Throwable error;
+		boolean completed;
+
+		@Override
+		public void onSubscribe(final Subscription s) {
+			subscription = s;
+		}
+
+		@Override
+		public void onNext(final Data data) {
+			values.add(data.getIntValue(Data.FORMAT_UINT8, 0));
+		}
+
+		@Override
+		public void onError(final Throwable t) {
+			error = t;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+
+	@Override
+	public Publisher<Data> createPublisher(final long elements) {
+		final SimulatedLink link = new SimulatedLink(elements);
+		link.publisher = DataPublisher.buffer(link, CAPACITY);
+		return link.publisher;
+	}
+
+	@Override
+	public Publisher<Data> createFailedPublisher() {
+		final DataPublisher[] publisher = new DataPublisher[1];
+		publisher[0] = DataPublisher.buffer(new DataPublisher.Source() {
+			@Override
+			public void bind(final DataReceivedCallback callback) {
+				publisher[0].error(new RuntimeException("Disconnected"));
+			}
+
+			@Override
+			public void unbind() {
+				// empty
+			}
+		}, CAPACITY);
+		return publisher[0];
+	}
+
+	@Override
+	public long maxElementsFromPublisher() {
+		// Notifications which were not requested are buffered, so the simulated link
+		// must not send more than the buffer can hold.
+		return CAPACITY;
+	}
+
+	@Test
+	public void buffer_deliversOnDemand() {
+		final ManualLink link = new ManualLink();
+		final ListSubscriber subscriber = new ListSubscriber();
+		DataPublisher.buffer(link, 4).subscribe(subscriber);
+
+		link.send(1);
+		link.send(2);
+		link.send(3);
+		assertTrue(subscriber.values.isEmpty());
+
+		subscriber.subscription.request(2);
+		assertEquals(subscriber.values, Arrays.asList(1, 2));
+		subscriber.subscription.request(5);
+		link.send(4);
+		assertEquals(subscriber.values, Arrays.asList(1, 2, 3, 4));
+	}
+
+	@Test
+	public void buffer_overflowSignalsError() {
+		final ManualLink link = new ManualLink();
+		final ListSubscriber subscriber = new ListSubscriber();
+		final DataPublisher publisher = DataPublisher.buffer(link, 2);
+		publisher.subscribe(subscriber);
+
+		link.send(1);
+		link.send(2);
+		link.send(3);
+		assertTrue(subscriber.error instanceof IllegalStateException);
+		assertTrue(subscriber.values.isEmpty());
+		assertFalse(publisher.hasSubscriber());
+		assertEquals(link.callback, null);
+	}
+
+	@Test
+	public void conflate_keepsLatest() {
+		final ManualLink link = new ManualLink();
+		final ListSubscriber subscriber = new ListSubscriber();
+		final DataPublisher publisher = DataPublisher.conflate(link);
+		publisher.subscribe(subscriber);
+
+		link.send(1);
+		link.send(2);
+		link.send(3);
+		subscriber.subscription.request(10);
+		link.send(4);
+		publisher.complete();
+		assertEquals(subscriber.values, Arrays.asList(3, 4));
+		assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void cancel_unbindsSource() {
+		final ManualLink link = new ManualLink();
+		final ListSubscriber subscriber = new ListSubscriber();
+		final DataPublisher publisher = DataPublisher.buffer(link, 2);
+		publisher.subscribe(subscriber);
+		assertTrue(publisher.hasSubscriber());
+
+		subscriber.subscription.cancel();
+		assertEquals(link.callback, null);
+		assertFalse(publisher.hasSubscriber());
+
+		final ListSubscriber second = new ListSubscriber();
+		publisher.subscribe(second);
+		assertTrue(publisher.hasSubscriber());
+		assertEquals(second.error, null);
+	}
+}
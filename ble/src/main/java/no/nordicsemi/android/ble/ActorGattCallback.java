@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * A {@link BluetoothGattCallback} that hands every event over to an {@link EventLoop}.
+ * <p>
+ * Values of characteristics and descriptors are copied on the binder thread, before
+ * the event is queued, as the next notification may overwrite the value of the
+ * characteristic before the event is handled. Notification timestamps are also taken
+ * on the binder thread.
+ */
+final class ActorGattCallback extends BluetoothGattCallback {
+	private final EventLoop loop;
+	private final BleManagerHandler.GattCallback target;
+
+	ActorGattCallback(@NonNull final EventLoop loop,
+					  @NonNull final BleManagerHandler.GattCallback target) {
+		this.loop = loop;
+		this.target = target;
+	}
+
+	@Override
+	public void onConnectionStateChange(final BluetoothGatt gatt, final int status, final int newState) {
+		loop.execute(() -> target.onConnectionStateChange(gatt, status, newState));
+	}
+
+	@Override
+	public void onServicesDiscovered(final BluetoothGatt gatt, final int status) {
+		loop.execute(() -> target.onServicesDiscovered(gatt, status));
+	}
+
+	@Override
+	public void onCharacteristicRead(final BluetoothGatt gatt,
+									 final BluetoothGattCharacteristic characteristic,
+									 final int status) {
+		final byte[] data = copy(characteristic.getValue());
+		loop.execute(() -> target.onCharacteristicRead(gatt, characteristic, data, status));
+	}
+
+	@Override
+	public void onCharacteristicWrite(final BluetoothGatt gatt,
+									  final BluetoothGattCharacteristic characteristic,
+									  final int status) {
+		final byte[] data = copy(characteristic.getValue());
+		loop.execute(() -> target.onCharacteristicWrite(gatt, characteristic, data, status));
+	}
+
+	@Override
+	public void onReliableWriteCompleted(final BluetoothGatt gatt, final int status) {
+		loop.execute(() -> target.onReliableWriteCompleted(gatt, status));
+	}
+
+	@Override
+	public void onDescriptorRead(final BluetoothGatt gatt,
+								 final BluetoothGattDescriptor descriptor,
+								 final int status) {
+		final byte[] data = copy(descriptor.getValue());
+		loop.execute(() -> target.onDescriptorRead(gatt, descriptor, data, status));
+	}
+
+	@Override
+	public void onDescriptorWrite(final BluetoothGatt gatt,
+								  final BluetoothGattDescriptor descriptor,
+								  final int status) {
+		final byte[] data = copy(descriptor.getValue());
+		loop.execute(() -> target.onDescriptorWrite(gatt, descriptor, data, status));
+	}
+
+	@Override
+	public void onCharacteristicChanged(final BluetoothGatt gatt,
+										final BluetoothGattCharacteristic characteristic) {
+		final long timestamp = SystemClock.elapsedRealtimeNanos();
+		final byte[] data = copy(characteristic.getValue());
+		loop.execute(() -> target.onCharacteristicChanged(gatt, characteristic, data, timestamp));
+	}
+
+	@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+	@Override
+	public void onMtuChanged(final BluetoothGatt gatt, final int mtu, final int status) {
+		loop.execute(() -> target.onMtuChanged(gatt, mtu, status));
+	}
+
+	@RequiresApi(api = Build.VERSION_CODES.O)
+	// @Override
+	public void onConnectionUpdated(final BluetoothGatt gatt,
+									final int interval, final int latency, final int timeout,
+									final int status) {
+		loop.execute(() -> target.onConnectionUpdated(gatt, interval, latency, timeout, status));
+	}
+
+	@RequiresApi(api = Build.VERSION_CODES.O)
+	@Override
+	public void onPhyUpdate(final BluetoothGatt gatt, final int txPhy, final int rxPhy, final int status) {
+		loop.execute(() -> target.onPhyUpdate(gatt, txPhy, rxPhy, status));
+	}
+
+	@RequiresApi(api = Build.VERSION_CODES.O)
+	@Override
+	public void onPhyRead(final BluetoothGatt gatt, final int txPhy, final int rxPhy, final int status) {
+		loop.execute(() -> target.onPhyRead(gatt, txPhy, rxPhy, status));
+	}
+
+	@Override
+	public void onReadRemoteRssi(final BluetoothGatt gatt, final int rssi, final int status) {
+		loop.execute(() -> target.onReadRemoteRssi(gatt, rssi, status));
+	}
+
+	@Nullable
+	private static byte[] copy(@Nullable final byte[] value) {
+		return value != null ? value.clone() : null;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.os.Build;
+
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An index of characteristics of the connected device, built once after services were
+ * discovered. Each characteristic gets a slot indexed by its attribute handle, which holds
+ * everything needed to handle a notification or indication: the value changed callback,
+ * cached CCCD mode and special characteristic flags. A lookup is an array access and an
+ * identity comparison, without hashing or comparing UUIDs.
+ * <p>
+ * Before Android 7 the instance ID of a characteristic was not its handle, so no index
+ * is built and the callers should fall back to the maps.
+ */
+final class AttributeIndex {
+	/** Handles above this value are not indexed, to limit the memory used. */
+	private static final int MAX_HANDLE = 0x0FFF;
+
+	static final class Slot {
+		@NonNull
+		final BluetoothGattCharacteristic characteristic;
+		@Nullable
+		final BluetoothGattDescriptor cccd;
+		final boolean serviceChanged;
+		final boolean batteryLevel;
+		@Nullable
+		volatile ValueChangedCallback callback;
+		/** Cached mode of the CCCD. True if indications, false if notifications were enabled. */
+		volatile boolean indications;
+
+		private Slot(@NonNull final BluetoothGattCharacteristic characteristic) {
+			this.characteristic = characteristic;
+			this.cccd = characteristic.getDescriptor(BleManager.CLIENT_CHARACTERISTIC_CONFIG_DESCRIPTOR_UUID);
+			this.serviceChanged = BleManager.SERVICE_CHANGED_CHARACTERISTIC.equals(characteristic.getUuid());
+			this.batteryLevel = BleManager.BATTERY_LEVEL_CHARACTERISTIC.equals(characteristic.getUuid());
+			updateMode();
+		}
+
+		/**
+		 * Updates the cached CCCD mode from the value of the CCCD.
+		 * This should be called when the CCCD was written.
+		 */
+		void updateMode() {
+			final byte[] value = cccd != null ? cccd.getValue() : null;
+			indications = value != null && value.length == 2 && value[0] != 0x01;
+		}
+	}
+
+	@NonNull
+	private final Slot[] slots;
+
+	private AttributeIndex(@NonNull final Slot[] slots) {
+		this.slots = slots;
+	}
+
+	/**
+	 * Builds the index for given services.
+	 *
+	 * @param services  the discovered services.
+	 * @param callbacks the value changed callbacks registered so far.
+	 * @return The index, or null if attribute handles are not available on this Android version.
+	 */
+	@Nullable
+	static AttributeIndex build(@NonNull final List<BluetoothGattService> services,
+								@NonNull final Map<Object, ValueChangedCallback> callbacks) {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N)
+			return null;
+
+		int maxHandle = -1;
+		for (final BluetoothGattService service : services) {
+			for (final BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+				final int handle = characteristic.getInstanceId();
+				if (handle > maxHandle && handle <= MAX_HANDLE)
+					maxHandle = handle;
+			}
+		}
+		final Slot[] slots = new Slot[maxHandle + 1];
+		for (final BluetoothGattService service : services) {
+			for (final BluetoothGattCharacteristic characteristic : service.getCharacteristics()) {
+				final int handle = characteristic.getInstanceId();
+				if (handle >= 0 && handle <= maxHandle) {
+					final Slot slot = slots[handle] = new Slot(characteristic);
+					slot.callback = callbacks.get(characteristic);
+				}
+			}
+		}
+		return new AttributeIndex(slots);
+	}
+
+	/**
+	 * Returns the slot of given characteristic.
+	 *
+	 * @param characteristic the characteristic.
+	 * @return The slot, or null, if the characteristic is not indexed.
+	 */
+	@Nullable
+	Slot get(@NonNull final BluetoothGattCharacteristic characteristic) {
+		final int handle = characteristic.getInstanceId();
+		if (handle < 0 || handle >= slots.length)
+			return null;
+		final Slot slot = slots[handle];
+		return slot != null && slot.characteristic == characteristic ? slot : null;
+	}
+
+	/**
+	 * Updates the callback of given attribute, if it is an indexed characteristic.
+	 *
+	 * @param attribute the attribute.
+	 * @param callback  the new callback, or null, if the callback was removed.
+	 */
+	void setCallback(@Nullable final Object attribute, @Nullable final ValueChangedCallback callback) {
+		if (attribute instanceof BluetoothGattCharacteristic) {
+			final Slot slot = get((BluetoothGattCharacteristic) attribute);
+			if (slot != null)
+				slot.callback = callback;
+		}
+	}
+
+	/**
+	 * Updates the cached CCCD mode if the descriptor is a CCCD of an indexed characteristic.
+	 *
+	 * @param descriptor the descriptor that was written.
+	 */
+	void onDescriptorWritten(@NonNull final BluetoothGattDescriptor descriptor) {
+		final BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+		if (characteristic == null)
+			return;
+		final Slot slot = get(characteristic);
+		if (slot != null && slot.cccd == descriptor)
+			slot.updateMode();
+	}
+}
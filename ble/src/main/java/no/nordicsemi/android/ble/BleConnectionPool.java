@@ -0,0 +1,607 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.observer.ConnectionObserver;
+
+/**
+ * A pool of {@link BleManager}s connecting to multiple devices.
+ * <p>
+ * Android and the Bluetooth controller handle only a limited number of concurrent connection
+ * attempts. When many managers connect at the same time, the attempts tend to time out or
+ * fail with status 133. The pool limits the number of connection attempts in progress,
+ * starts them one by one with a given interval and in the order of priority.
+ * <p>
+ * All managers added to the pool share a single callback thread, set using
+ * {@link BleManager#setExecutor(Executor)}. The previous callback executor is restored when
+ * the manager is removed from the pool, or when the pool is closed.
+ * <p>
+ * A connection attempt which does not complete within the connect timeout is cancelled and
+ * fails with {@link FailCallback#REASON_TIMEOUT}, freeing its slot.
+ *
+ * <pre>
+ * final BleConnectionPool pool = new BleConnectionPool(3, 200);
+ * for (BluetoothDevice device : devices) {
+ *     pool.connect(pool.add(new MyManager(context), device, 0));
+ * }
+ * </pre>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class BleConnectionPool {
+
+	/**
+	 * The way a member is connected and disconnected. The default transport uses
+	 * {@link BleManager#connect(BluetoothDevice)} and {@link BleManager#disconnect()}.
+	 * Implement it to customize the {@link ConnectRequest}, e.g. set retries or
+	 * auto connect, or to simulate devices in tests.
+	 */
+	public interface Transport {
+		/**
+		 * Starts connecting. Exactly one of the callbacks must be called when the attempt
+		 * is complete.
+		 *
+		 * @param member the member to connect.
+		 * @param done   the callback to call when the device has connected and initialized.
+		 * @param fail   the callback to call when the connection attempt failed.
+		 */
+		void connect(@NonNull final Member member,
+					 @NonNull final SuccessCallback done, @NonNull final FailCallback fail);
+
+		/**
+		 * Disconnects the member, or cancels the connection attempt in progress.
+		 *
+		 * @param member the member to disconnect.
+		 */
+		void disconnect(@NonNull final Member member);
+	}
+
+	/** A manager and a device added to the pool. */
+	public static final class Member {
+		/** The member is not connected and not waiting for a connection. */
+		public static final int STATE_IDLE = 0;
+		/** The member is waiting for a free connection slot. */
+		public static final int STATE_PENDING = 1;
+		/** Connection attempt is in progress. */
+		public static final int STATE_CONNECTING = 2;
+		/** The device has connected. */
+		public static final int STATE_CONNECTED = 3;
+
+		private final BleManager manager;
+		private final BluetoothDevice device;
+		private final int priority;
+		private final long order;
+		private int state = STATE_IDLE;
+		private int attempt;
+		private long attemptStartNanos;
+		private int lastStatus;
+		private Runnable timeoutTask;
+		private CallbackHandler previousExecutorHandler;
+
+		private Member(@NonNull final BleManager manager, @NonNull final BluetoothDevice device,
+					   final int priority, final long order) {
+			this.manager = manager;
+			this.device = device;
+			this.priority = priority;
+			this.order = order;
+		}
+
+		@NonNull
+		public BleManager getManager() {
+			return manager;
+		}
+
+		@NonNull
+		public BluetoothDevice getDevice() {
+			return device;
+		}
+
+		/**
+		 * Returns the priority. Members with higher priority are connected first.
+		 *
+		 * @return The priority.
+		 */
+		public int getPriority() {
+			return priority;
+		}
+
+		/**
+		 * Returns the state of the member in the pool, one of STATE_* constants.
+		 *
+		 * @return The state.
+		 */
+		public int getState() {
+			return state;
+		}
+
+		/**
+		 * Returns the status of the last failed connection attempt.
+		 *
+		 * @return The status, see {@link FailCallback}, or 0.
+		 */
+		public int getLastStatus() {
+			return lastStatus;
+		}
+	}
+
+	private static final Transport DEFAULT_TRANSPORT = new Transport() {
+		@Override
+		public void connect(@NonNull final Member member,
+							@NonNull final SuccessCallback done, @NonNull final FailCallback fail) {
+			member.getManager().connect(member.getDevice()).done(done).fail(fail).enqueue();
+		}
+
+		@Override
+		public void disconnect(@NonNull final Member member) {
+			member.getManager().disconnect().enqueue();
+		}
+	};
+
+	/** The default connect timeout, in milliseconds. */
+	public static final long DEFAULT_CONNECT_TIMEOUT = 30_000;
+
+	private final int maxConcurrentConnections;
+	private final long staggerMillis;
+	private final ExecutorService ownExecutor;
+	private final Executor executor;
+	private final CallbackHandler scheduler;
+	private final Transport transport;
+	private final List<Member> members = new ArrayList<>();
+	private final PriorityQueue<Member> pending = new PriorityQueue<>(11, (a, b) ->
+			a.priority != b.priority ? Integer.compare(b.priority, a.priority) : Long.compare(a.order, b.order));
+	private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT;
+	private long nextOrder;
+	private int connecting;
+	private boolean staggering;
+
+	// Metrics
+	private long attempts;
+	private long successes;
+	private long failures;
+	private long totalConnectNanos;
+	private int maxConnecting;
+
+	/**
+	 * Creates a pool with its own callback thread.
+	 *
+	 * @param maxConcurrentConnections the maximum number of connection attempts in progress.
+	 * @param staggerMillis            the minimum interval between starting two connection
+	 *                                 attempts, in milliseconds.
+	 */
+	public BleConnectionPool(@IntRange(from = 1) final int maxConcurrentConnections,
+							 @IntRange(from = 0) final long staggerMillis) {
+		this(maxConcurrentConnections, staggerMillis, DEFAULT_TRANSPORT);
+	}
+
+	/**
+	 * Creates a pool with its own callback thread and a custom transport.
+	 *
+	 * @param maxConcurrentConnections the maximum number of connection attempts in progress.
+	 * @param staggerMillis            the minimum interval between starting two connection
+	 *                                 attempts, in milliseconds.
+	 * @param transport                the transport used to connect the members.
+	 */
+	public BleConnectionPool(@IntRange(from = 1) final int maxConcurrentConnections,
+							 @IntRange(from = 0) final long staggerMillis,
+							 @NonNull final Transport transport) {
+		this(maxConcurrentConnections, staggerMillis, transport, createExecutor(), null);
+	}
+
+	BleConnectionPool(final int maxConcurrentConnections, final long staggerMillis,
+					  @NonNull final Transport transport, @NonNull final Executor executor,
+					  final CallbackHandler scheduler) {
+		if (maxConcurrentConnections < 1)
+			throw new IllegalArgumentException("At least 1 concurrent connection is required");
+		this.maxConcurrentConnections = maxConcurrentConnections;
+		this.staggerMillis = Math.max(0, staggerMillis);
+		this.transport = transport;
+		this.executor = executor;
+		this.ownExecutor = executor instanceof ExecutorService ? (ExecutorService) executor : null;
+		this.scheduler = scheduler != null ? scheduler : new ExecutorCallbackHandler(executor);
+	}
+
+	@NonNull
+	private static ExecutorService createExecutor() {
+		return Executors.newSingleThreadExecutor(r -> {
+			final Thread thread = new Thread(r, "BleConnectionPool");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Sets the maximum time a connection attempt may take, including service discovery and
+	 * initialization. When it passes, the attempt is cancelled and fails with
+	 * {@link FailCallback#REASON_TIMEOUT}. Applies to attempts started afterwards.
+	 *
+	 * @param timeoutMillis the timeout in milliseconds, or 0 to wait until the transport
+	 *                      reports the result.
+	 */
+	public synchronized void setConnectTimeout(@IntRange(from = 0) final long timeoutMillis) {
+		this.connectTimeoutMillis = Math.max(0, timeoutMillis);
+	}
+
+	/**
+	 * Adds a manager to the pool. The manager's callbacks will be invoked on the pool's
+	 * callback thread. The pool observes the manager's connection state, so that a member
+	 * which got disconnected may be connected again.
+	 *
+	 * @param manager  the manager.
+	 * @param device   the device to connect to using this manager.
+	 * @param priority the priority, members with higher priority are connected first.
+	 * @return The pool member.
+	 */
+	@NonNull
+	public Member add(@NonNull final BleManager manager, @NonNull final BluetoothDevice device,
+					  final int priority) {
+		final CallbackHandler previousExecutorHandler = manager.requestHandler.getExecutorHandler();
+		manager.setExecutor(executor);
+		final Member member = addMember(manager, device, priority);
+		member.previousExecutorHandler = previousExecutorHandler;
+		manager.requestHandler.setInternalConnectionObserver(new MemberObserver(member));
+		return member;
+	}
+
+	/**
+	 * Stops observing the member's manager and restores its previous callback executor.
+	 */
+	private static void detach(@NonNull final Member member) {
+		final BleManager manager = member.manager;
+		if (manager == null)
+			return;
+		manager.requestHandler.setInternalConnectionObserver(null);
+		manager.requestHandler.setExecutorHandler(member.previousExecutorHandler);
+	}
+
+	@NonNull
+	synchronized Member addMember(final BleManager manager, final BluetoothDevice device,
+								  final int priority) {
+		final Member member = new Member(manager, device, priority, nextOrder++);
+		members.add(member);
+		return member;
+	}
+
+	/**
+	 * Returns all members of the pool.
+	 *
+	 * @return The members.
+	 */
+	@NonNull
+	public synchronized List<Member> getMembers() {
+		return Collections.unmodifiableList(new ArrayList<>(members));
+	}
+
+	/**
+	 * Queues a connection attempt for the member. The attempt will be started when there are
+	 * less than the maximum number of attempts in progress.
+	 *
+	 * @param member the member to connect.
+	 */
+	public void connect(@NonNull final Member member) {
+		synchronized (this) {
+			if (member.state != Member.STATE_IDLE)
+				return;
+			member.state = Member.STATE_PENDING;
+			pending.add(member);
+		}
+		schedule();
+	}
+
+	/**
+	 * Queues connection attempts for all idle members.
+	 */
+	public void connectAll() {
+		synchronized (this) {
+			for (final Member member : members) {
+				if (member.state == Member.STATE_IDLE) {
+					member.state = Member.STATE_PENDING;
+					pending.add(member);
+				}
+			}
+		}
+		schedule();
+	}
+
+	/**
+	 * Disconnects the member, cancels the connection attempt in progress or removes it from
+	 * the queue.
+	 *
+	 * @param member the member to disconnect.
+	 */
+	public void disconnect(@NonNull final Member member) {
+		final boolean active;
+		synchronized (this) {
+			if (member.state == Member.STATE_PENDING)
+				pending.remove(member);
+			active = member.state == Member.STATE_CONNECTING || member.state == Member.STATE_CONNECTED;
+			// A connection attempt in progress frees its slot when the fail callback is called.
+			if (member.state != Member.STATE_CONNECTING)
+				member.state = Member.STATE_IDLE;
+		}
+		if (active)
+			transport.disconnect(member);
+	}
+
+	/**
+	 * Disconnects and removes the member from the pool. The manager's previous callback
+	 * executor is restored.
+	 *
+	 * @param member the member to remove.
+	 */
+	public void remove(@NonNull final Member member) {
+		disconnect(member);
+		synchronized (this) {
+			members.remove(member);
+		}
+		detach(member);
+	}
+
+	/**
+	 * Marks the member as disconnected, so that it may be connected again using
+	 * {@link #connect(Member)}. Managers added using {@link #add(BleManager, BluetoothDevice, int)}
+	 * are observed by the pool, this method needs to be called only when the link loss is
+	 * detected otherwise, e.g. by a custom {@link Transport}.
+	 *
+	 * @param member the member that got disconnected.
+	 */
+	public synchronized void onDisconnected(@NonNull final Member member) {
+		if (member.state == Member.STATE_CONNECTED)
+			member.state = Member.STATE_IDLE;
+	}
+
+	/**
+	 * Stops scheduling connection attempts, restores the callback executors of all managers
+	 * and shuts down the pool's callback thread. Connections are not closed, the managers
+	 * should be disconnected and closed before.
+	 */
+	public void close() {
+		final List<Member> members;
+		synchronized (this) {
+			pending.clear();
+			for (final Member member : this.members) {
+				if (member.timeoutTask != null) {
+					scheduler.removeCallbacks(member.timeoutTask);
+					member.timeoutTask = null;
+				}
+			}
+			members = new ArrayList<>(this.members);
+		}
+		scheduler.removeCallbacks(staggerTask);
+		for (final Member member : members)
+			detach(member);
+		if (ownExecutor != null)
+			ownExecutor.shutdown();
+	}
+
+	/**
+	 * Starts as many pending connection attempts as allowed.
+	 */
+	private void schedule() {
+		final Member member;
+		synchronized (this) {
+			if (staggering || connecting >= maxConcurrentConnections || pending.isEmpty())
+				return;
+			member = pending.poll();
+			member.state = Member.STATE_CONNECTING;
+			member.attempt++;
+			member.attemptStartNanos = System.nanoTime();
+			attempts++;
+			connecting++;
+			maxConnecting = Math.max(maxConnecting, connecting);
+			staggering = true;
+			if (connectTimeoutMillis > 0) {
+				final int attempt = member.attempt;
+				member.timeoutTask = () -> onAttemptTimeout(member, attempt);
+				scheduler.postDelayed(member.timeoutTask, connectTimeoutMillis);
+			}
+		}
+		final int attempt = member.attempt;
+		// Let the next attempt start only after the stagger interval
+		scheduler.postDelayed(staggerTask, staggerMillis);
+		transport.connect(member,
+				device -> onAttemptFinished(member, attempt, 0),
+				(device, status) -> onAttemptFinished(member, attempt, status));
+	}
+
+	private final Runnable staggerTask = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (BleConnectionPool.this) {
+				staggering = false;
+			}
+			schedule();
+		}
+	};
+
+	private void onAttemptFinished(@NonNull final Member member, final int attempt, final int status) {
+		if (finishAttempt(member, attempt, status))
+			schedule();
+	}
+
+	private void onAttemptTimeout(@NonNull final Member member, final int attempt) {
+		if (finishAttempt(member, attempt, FailCallback.REASON_TIMEOUT)) {
+			// The fail callback of the cancelled attempt will be ignored.
+			transport.disconnect(member);
+			schedule();
+		}
+	}
+
+	/**
+	 * Frees the slot taken by the attempt.
+	 *
+	 * @return True, if the attempt was in progress; false if it was already finished.
+	 */
+	private synchronized boolean finishAttempt(@NonNull final Member member, final int attempt,
+											   final int status) {
+		// Ignore callbacks from previous attempts.
+		if (member.attempt != attempt || member.state != Member.STATE_CONNECTING)
+			return false;
+		if (member.timeoutTask != null) {
+			scheduler.removeCallbacks(member.timeoutTask);
+			member.timeoutTask = null;
+		}
+		connecting--;
+		totalConnectNanos += System.nanoTime() - member.attemptStartNanos;
+		if (status == 0) {
+			successes++;
+			member.state = Member.STATE_CONNECTED;
+		} else {
+			failures++;
+			member.lastStatus = status;
+			member.state = Member.STATE_IDLE;
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the member as disconnected when its manager reports that the device got
+	 * disconnected.
+	 */
+	private final class MemberObserver implements ConnectionObserver {
+		private final Member member;
+
+		private MemberObserver(@NonNull final Member member) {
+			this.member = member;
+		}
+
+		@Override
+		public void onDeviceConnecting(@NonNull final BluetoothDevice device) {
+			// do nothing
+		}
+
+		@Override
+		public void onDeviceConnected(@NonNull final BluetoothDevice device) {
+			// do nothing
+		}
+
+		@Override
+		public void onDeviceFailedToConnect(@NonNull final BluetoothDevice device, final int reason) {
+			// do nothing, the connect request's fail callback frees the slot
+		}
+
+		@Override
+		public void onDeviceReady(@NonNull final BluetoothDevice device) {
+			// do nothing
+		}
+
+		@Override
+		public void onDeviceDisconnecting(@NonNull final BluetoothDevice device) {
+			// do nothing
+		}
+
+		@Override
+		public void onDeviceDisconnected(@NonNull final BluetoothDevice device, final int reason) {
+			onDisconnected(member);
+		}
+	}
+
+	/**
+	 * Returns the number of members waiting for a connection slot.
+	 *
+	 * @return The number of pending members.
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Returns the number of connection attempts in progress.
+	 *
+	 * @return The number of members connecting.
+	 */
+	public synchronized int getConnectingCount() {
+		return connecting;
+	}
+
+	/**
+	 * Returns the number of connected members.
+	 *
+	 * @return The number of members in {@link Member#STATE_CONNECTED} state.
+	 */
+	public synchronized int getConnectedCount() {
+		int count = 0;
+		for (final Member member : members)
+			if (member.state == Member.STATE_CONNECTED)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Returns the highest number of concurrent connection attempts observed.
+	 *
+	 * @return The peak number of attempts in progress.
+	 */
+	public synchronized int getMaxConnectingCount() {
+		return maxConnecting;
+	}
+
+	/**
+	 * Returns the number of connection attempts started since the pool was created.
+	 *
+	 * @return The number of attempts.
+	 */
+	public synchronized long getAttemptCount() {
+		return attempts;
+	}
+
+	/**
+	 * Returns the number of successful connection attempts.
+	 *
+	 * @return The number of successful attempts.
+	 */
+	public synchronized long getSuccessCount() {
+		return successes;
+	}
+
+	/**
+	 * Returns the number of failed connection attempts.
+	 *
+	 * @return The number of failed attempts.
+	 */
+	public synchronized long getFailureCount() {
+		return failures;
+	}
+
+	/**
+	 * Returns the average time of a finished connection attempt, successful or not.
+	 *
+	 * @return The average time in milliseconds, or 0 if no attempt has finished.
+	 */
+	public synchronized long getAverageConnectionTimeMillis() {
+		final long finished = successes + failures;
+		return finished == 0 ? 0 : totalConnectNanos / finished / 1_000_000L;
+	}
+}
@@ -36,6 +36,7 @@ import android.os.Looper;
 import android.util.Log;
 
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -101,6 +102,7 @@ public abstract class BleManager implements ILogger {
 
 	final static UUID GENERIC_ATTRIBUTE_SERVICE = UUID.fromString("00001801-0000-1000-8000-00805f9b34fb");
 	final static UUID SERVICE_CHANGED_CHARACTERISTIC = UUID.fromString("00002A05-0000-1000-8000-00805f9b34fb");
+	final static UUID DATABASE_HASH_CHARACTERISTIC = UUID.fromString("00002B2A-0000-1000-8000-00805f9b34fb");
 
 	public static final int PAIRING_VARIANT_PIN = 0;
 	public static final int PAIRING_VARIANT_PASSKEY = 1;
@@ -110,6 +112,18 @@ public abstract class BleManager implements ILogger {
 	public static final int PAIRING_VARIANT_DISPLAY_PIN = 5;
 	public static final int PAIRING_VARIANT_OOB_CONSENT = 6;
 
+	/**
+	 * An executor that runs callbacks directly on the thread that delivered the event,
+	 * usually a binder thread receiving GATT callbacks. Use it for latency-critical consumers
+	 * that return quickly, as no other event can be delivered until the callback returns.
+	 * Delayed tasks, like timeouts, are run on a shared timer thread.
+	 *
+	 * @see #setExecutor(Executor)
+	 * @see Request#setExecutor(Executor)
+	 * @see ValueChangedCallback#setExecutor(Executor)
+	 */
+	public static final Executor DIRECT_EXECUTOR = Runnable::run;
+
 	private final Context context;
 	private BleServerManager serverManager;
 	@NonNull
@@ -190,6 +204,96 @@ public abstract class BleManager implements ILogger {
 		requestHandler.close();
 	}
 
+	/**
+	 * Sets the executor that will be used, instead of the handler given in the constructor,
+	 * for delaying operations, timeouts and the request callbacks (done/fail/with, etc).
+	 * This method should be called before connecting to the device.
+	 * <p>
+	 * A single threaded executor is recommended, as otherwise the order of callbacks
+	 * is not guaranteed. Use {@link #DIRECT_EXECUTOR} to invoke callbacks directly on
+	 * the thread that delivered the GATT event.
+	 *
+	 * @param executor the executor.
+	 */
+	public void setExecutor(@NonNull final Executor executor) {
+		requestHandler.setExecutor(executor);
+	}
+
+	/**
+	 * Enables the actor mode, in which all GATT callbacks, enqueued requests, cancellations,
+	 * request timeouts, internal delayed tasks (sleep, retries, service discovery delay, link
+	 * monitoring, etc.) and Bluetooth state and bond state broadcasts are handled on the given
+	 * event loop, one at a time and in order. The state of the manager is then only mutated by
+	 * the loop's thread.
+	 * This method should be called before connecting to the device.
+	 * <p>
+	 * The loop may be shared by several managers. The request callbacks (done/fail/with, etc.)
+	 * are still invoked using the handler or the executor set using {@link #setExecutor(Executor)}.
+	 *
+	 * @param eventLoop the event loop, or null to handle events on the threads they were
+	 *                  delivered on (default).
+	 * @see EventLoopGroup
+	 */
+	public void setEventLoop(@Nullable final EventLoop eventLoop) {
+		requestHandler.setEventLoop(eventLoop);
+	}
+
+	/**
+	 * Sets the recorder that will write all ATT-level events (reads, writes, notifications,
+	 * indications, MTU, PHY and connection parameter updates) to a capture file.
+	 * The capture may be replayed using {@link GattReplayer}.
+	 * <p>
+	 * The recorder is not closed by the manager. Call with null to stop recording and close
+	 * the recorder using {@link GattRecorder#close()}.
+	 *
+	 * @param recorder the recorder, or null to stop recording.
+	 */
+	public void setRecorder(@Nullable final GattRecorder recorder) {
+		requestHandler.setRecorder(recorder);
+	}
+
+	/**
+	 * Sets the persistent cache of GATT layouts. When the layout of the device is cached,
+	 * the service discovery starts immediately after the device gets connected, instead of
+	 * after {@link #getServiceDiscoveryDelay(boolean)}. The cached layout is verified using
+	 * the Database Hash characteristic, if present, and invalidated when a Service Changed
+	 * indication is received.
+	 * <p>
+	 * This method should be called before connecting to the device.
+	 *
+	 * @param cache the cache, or null to disable caching.
+	 */
+	public void setServiceCache(@Nullable final GattServiceCache cache) {
+		requestHandler.setServiceCache(cache);
+	}
+
+	/**
+	 * Enables or disables the durable queue. When enabled, requests marked as resumable, e.g.
+	 * using {@link WriteRequest#resumable()}, do not fail when the link is lost. Instead, they
+	 * are executed again, before other requests, when the device reconnects and becomes
+	 * ready. Split writes continue from the first packet that was not sent.
+	 * <p>
+	 * Suspended requests fail when {@link #disconnect()} is called, when the queue is
+	 * cancelled, when a different device gets connected, or when this mode is disabled.
+	 * Other requests fail, or are dropped, on link loss as before.
+	 *
+	 * @param enabled true to enable the durable queue; disabled by default.
+	 */
+	public void setDurableQueue(final boolean enabled) {
+		requestHandler.setDurableQueue(enabled);
+	}
+
+	/**
+	 * Sets the link monitor, which reads RSSI of the connected device when no other requests
+	 * are pending, at an adaptive interval, and computes a link quality score.
+	 * Monitoring starts when the device is ready and stops when it disconnects.
+	 *
+	 * @param monitor the monitor, or null to stop monitoring.
+	 */
+	public void setLinkMonitor(@Nullable final LinkMonitor monitor) {
+		requestHandler.setLinkMonitor(monitor);
+	}
+
 	/**
 	 * Runs the given runnable using a handler given to the constructor.
 	 * If no handler was given, the callbacks will be called on UI thread.
@@ -1658,6 +1762,30 @@ public abstract class BleManager implements ILogger {
 		requestHandler.overrideMtu(mtu);
 	}
 
+	/**
+	 * Enables adaptive connection priority. When the number of queued requests reaches the
+	 * threshold, or a write request split into multiple packets is started,
+	 * {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_HIGH} is requested to maximize
+	 * the throughput. When the queue has been empty for the given time, the idle priority is
+	 * requested to save battery. On Android Oreo or newer the change is confirmed in
+	 * {@link BleManagerGattCallback#onConnectionUpdated(BluetoothGatt, int, int, int)}.
+	 * <p>
+	 * Works only on Android Lollipop or newer.
+	 *
+	 * @param threshold    the number of queued requests that triggers the boost;
+	 *                     0 disables adaptive connection priority.
+	 * @param idleTimeout  the time in milliseconds without any requests after which the
+	 *                     idle priority is requested.
+	 * @param idlePriority the priority requested when idle, usually
+	 *                     {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_BALANCED} or
+	 *                     {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_LOW_POWER}.
+	 */
+	protected void setAdaptiveConnectionPriority(@IntRange(from = 0) final int threshold,
+												 @IntRange(from = 0) final long idleTimeout,
+												 @ConnectionPriority final int idlePriority) {
+		requestHandler.setAdaptiveConnectionPriority(threshold, idleTimeout, idlePriority);
+	}
+
 	/**
 	 * Requests the new connection priority. Acceptable values are:
 	 * <ol>
@@ -16,18 +16,26 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.util.Log;
-import android.util.Pair;
 
 import java.lang.reflect.Method;
 import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -35,6 +43,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import no.nordicsemi.android.ble.annotation.ConnectionPriority;
 import no.nordicsemi.android.ble.annotation.ConnectionState;
+import no.nordicsemi.android.ble.annotation.GattEventType;
 import no.nordicsemi.android.ble.annotation.PhyMask;
 import no.nordicsemi.android.ble.annotation.PhyOption;
 import no.nordicsemi.android.ble.annotation.PhyValue;
@@ -43,6 +52,7 @@ import no.nordicsemi.android.ble.data.Data;
 import no.nordicsemi.android.ble.error.GattError;
 import no.nordicsemi.android.ble.observer.BondingObserver;
 import no.nordicsemi.android.ble.observer.ConnectionObserver;
+import no.nordicsemi.android.ble.retry.RetryPolicy;
 import no.nordicsemi.android.ble.utils.ParserUtils;
 
 @SuppressWarnings({"WeakerAccess", "DeprecatedIsStillUsed", "unused", "deprecation"})
@@ -70,8 +80,50 @@ abstract class BleManagerHandler extends RequestHandler {
 	private BleManager manager;
 	private BleServerManager serverManager;
 	private Handler handler;
+	/** The executor based handler. If set, it is used instead of the {@link #handler}. */
+	private volatile CallbackHandler executorHandler;
+	private volatile ConnectionObserver internalConnectionObserver;
+	/**
+	 * The event loop on which GATT callbacks and enqueued requests are handled,
+	 * or null to handle them on the threads they were delivered on.
+	 */
+	@Nullable
+	private volatile EventLoop eventLoop;
+	/**
+	 * The handler running internal tasks on the {@link #eventLoop}, or null when no event loop
+	 * is set, in which case they are run like the callbacks.
+	 */
+	@Nullable
+	private volatile CallbackHandler eventLoopHandler;
+	/** The recorder of ATT events, or null if not recording. */
+	private volatile GattRecorder recorder;
+	/** The persistent cache of GATT layouts, or null if disabled. */
+	@Nullable
+	private GattServiceCache serviceCache;
+	/** The cached GATT layout of the connected device, read when it got connected. */
+	private GattServiceCache.Entry cachedServices;
+	/** The link monitor reading RSSI when the queue is idle, or null if disabled. */
+	@Nullable
+	private volatile LinkMonitor linkMonitor;
+	/** Incremented whenever link monitoring stops, so that outdated RSSI reads are not repeated. */
+	private final AtomicInteger linkMonitorGeneration = new AtomicInteger();
+	@Nullable
+	private volatile LinkMonitorTask linkMonitorTask;
 
 	private final Deque<Request> taskQueue = new LinkedBlockingDeque<>();
+	/**
+	 * Resumable requests interrupted by a link loss, executed again when the device is ready.
+	 */
+	private final Deque<Request> suspendedQueue = new LinkedList<>();
+	/**
+	 * The device for which the requests were suspended.
+	 */
+	@Nullable
+	private BluetoothDevice suspendedDevice;
+	/**
+	 * A flag set to true when requests marked as resumable should survive a link loss.
+	 */
+	private boolean durableQueue;
 	private Deque<Request> initQueue;
 	private boolean initInProgress;
 
@@ -83,6 +135,14 @@ abstract class BleManagerHandler extends RequestHandler {
 	 * earlier. 20 sec should be OK here.
 	 */
 	private final static long CONNECTION_TIMEOUT_THRESHOLD = 20000; // ms
+	/**
+	 * The initial, minimum and maximum delay between closing a {@link BluetoothGatt} and
+	 * opening a new one for the same device. The delay is adapted per device: doubled when
+	 * a connection fails right after reopening and decreased when services were discovered.
+	 */
+	private final static int SETTLE_DELAY_DEFAULT = 200; // ms
+	private final static int SETTLE_DELAY_MIN = 50; // ms
+	private final static int SETTLE_DELAY_MAX = 1600; // ms
 	/**
 	 * Flag set when services were discovered.
 	 */
@@ -105,6 +165,16 @@ abstract class BleManagerHandler extends RequestHandler {
 	 * A temporary counter to prevent requesting service discovery for old connection.
 	 */
 	private int connectionCount = 0;
+	/**
+	 * The learned settle delays, keyed by the device address. They are updated from
+	 * the GATT callbacks and read when connecting, which may happen on different threads.
+	 */
+	private final Map<String, Integer> settleDelays = new ConcurrentHashMap<>();
+	/**
+	 * The address of the device reconnected after a settle delay, until the outcome of the
+	 * connection is known. The outcome is applied by whoever clears it first.
+	 */
+	private final AtomicReference<String> settlingAddress = new AtomicReference<>();
 	/**
 	 * Flag set to true when the device is connected.
 	 */
@@ -116,7 +186,7 @@ abstract class BleManagerHandler extends RequestHandler {
 	/**
 	 * A flag indicating that an operation is currently in progress.
 	 */
-	private boolean operationInProgress;
+	private volatile boolean operationInProgress;
 	/**
 	 * This flag is set to false only when the {@link ConnectRequest#shouldAutoConnect()} method
 	 * returns true and the device got disconnected without calling {@link BleManager#disconnect()}
@@ -149,6 +219,20 @@ abstract class BleManagerHandler extends RequestHandler {
 	 * won't be called during another operation.
 	 */
 	private boolean connectionPriorityOperationInProgress = false;
+	/**
+	 * Number of queued requests that triggers the connection priority boost,
+	 * or 0 if adaptive connection priority is disabled.
+	 */
+	private int boostThreshold;
+	/** Time after the queue got empty after which the boost is removed. */
+	private long boostIdleTimeout;
+	/** Connection priority requested when idle. */
+	private int boostIdlePriority;
+	/** Whether {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_HIGH} was requested by the adaptive policy. */
+	private boolean boosted;
+	private boolean boostIdleScheduled;
+	/** The priority requested by the adaptive policy waiting for confirmation, or -1. */
+	private int pendingAdaptivePriority = -1;
 	/**
 	 * A flag indicating that Reliable Write is in progress.
 	 */
@@ -171,12 +255,21 @@ abstract class BleManagerHandler extends RequestHandler {
 	private Map<BluetoothGattCharacteristic, byte[]> characteristicValues;
 	/** Values of non-shared descriptors. Each connected device has its own copy of such. */
 	private Map<BluetoothGattDescriptor, byte[]> descriptorValues;
+	/**
+	 * Server characteristics on which this client has enabled notifications. It is updated
+	 * when the CCCD value changes and may be read from any thread.
+	 */
+	private final Set<BluetoothGattCharacteristic> notificationsEnabled =
+			Collections.newSetFromMap(new ConcurrentHashMap<>());
 	/**
 	 * Temporary values of characteristic to support Reliable Write. The temp value will be
 	 * set as valid when the write request is executed, or discarded when aborted.
 	 */
-	private Deque<Pair<Object /* BluetoothGattCharacteristic of BluetoothGattDescriptor> */, byte[]>> preparedValues;
-	private int prepareError;
+	private PreparedWriteQueue preparedValues;
+	/**
+	 * Values of server attributes being read by the client using Long Read.
+	 */
+	private final LongReadSnapshots longReads = new LongReadSnapshots();
 	/**
 	 * The connect request. This is instantiated in {@link BleManager#connect(BluetoothDevice, int)}
 	 * and nullified after the device is ready.
@@ -188,7 +281,7 @@ abstract class BleManagerHandler extends RequestHandler {
 	/**
 	 * Currently performed request or null in idle state.
 	 */
-	private Request request;
+	private volatile Request request;
 	/**
 	 * Currently performer request set, or null if none.
 	 */
@@ -199,6 +292,12 @@ abstract class BleManagerHandler extends RequestHandler {
 	 */
 	@NonNull
 	private final HashMap<Object, ValueChangedCallback> valueChangedCallbacks = new HashMap<>();
+	/**
+	 * An index of characteristics of the connected device, used to handle notifications
+	 * and indications without map lookups. Built after services were discovered.
+	 */
+	@Nullable
+	private volatile AttributeIndex attributeIndex;
 	/**
 	 * A special handler for Battery Level notifications.
 	 */
@@ -210,11 +309,13 @@ abstract class BleManagerHandler extends RequestHandler {
 	 * There may be only a single instance of such request at a time as this is a blocking request.
 	 */
 	@Nullable
-	private AwaitingRequest awaitingRequest;
+	private volatile AwaitingRequest awaitingRequest;
 
 	private final BroadcastReceiver bluetoothStateBroadcastReceiver = new BroadcastReceiver() {
 		@Override
 		public void onReceive(final Context context, final Intent intent) {
+			if (runOnEventLoop(this, context, intent))
+				return;
 			final int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.STATE_OFF);
 			final int previousState = intent.getIntExtra(BluetoothAdapter.EXTRA_PREVIOUS_STATE, BluetoothAdapter.STATE_OFF);
 
@@ -287,6 +388,8 @@ abstract class BleManagerHandler extends RequestHandler {
 	private final BroadcastReceiver mBondingBroadcastReceiver = new BroadcastReceiver() {
 		@Override
 		public void onReceive(final Context context, final Intent intent) {
+			if (runOnEventLoop(this, context, intent))
+				return;
 			final BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
 			final int bondState = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, -1);
 			final int previousBondState = intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE, -1);
@@ -342,7 +445,7 @@ abstract class BleManagerHandler extends RequestHandler {
 					// established the services were not discovered.
 					if (!servicesDiscovered && !serviceDiscoveryRequested) {
 						serviceDiscoveryRequested = true;
-						post(() -> {
+						postInternal(() -> {
 							log(Log.VERBOSE, "Discovering services...");
 							log(Log.DEBUG, "gatt.discoverServices()");
 							bluetoothGatt.discoverServices();
@@ -388,6 +491,238 @@ abstract class BleManagerHandler extends RequestHandler {
 		this.handler = handler;
 	}
 
+	/**
+	 * Sets the executor that will be used instead of the handler given in
+	 * {@link #init(BleManager, Handler)}.
+	 *
+	 * @param executor the executor.
+	 */
+	void setExecutor(@NonNull final Executor executor) {
+		this.executorHandler = new ExecutorCallbackHandler(executor);
+	}
+
+	/**
+	 * Returns the executor based handler, or null if the handler given in
+	 * {@link #init(BleManager, Handler)} is used.
+	 */
+	@Nullable
+	CallbackHandler getExecutorHandler() {
+		return executorHandler;
+	}
+
+	/**
+	 * Restores the executor based handler returned by {@link #getExecutorHandler()}.
+	 *
+	 * @param executorHandler the handler, or null to use the handler given in
+	 *                        {@link #init(BleManager, Handler)}.
+	 */
+	void setExecutorHandler(@Nullable final CallbackHandler executorHandler) {
+		this.executorHandler = executorHandler;
+	}
+
+	/**
+	 * Sets an observer notified about connection state changes in addition to the one set
+	 * using {@link BleManager#setConnectionObserver(ConnectionObserver)}. It is used by
+	 * {@link BleConnectionPool} to track its members.
+	 *
+	 * @param observer the observer, or null to remove it.
+	 */
+	void setInternalConnectionObserver(@Nullable final ConnectionObserver observer) {
+		this.internalConnectionObserver = observer;
+	}
+
+	/**
+	 * Returns the event loop set using {@link #setEventLoop(EventLoop)}, or null.
+	 */
+	@Nullable
+	EventLoop getEventLoop() {
+		return eventLoop;
+	}
+
+	/**
+	 * Sets the event loop on which all GATT callbacks and enqueued requests will be handled.
+	 * Call with null to handle them on the threads they were delivered on.
+	 *
+	 * @param eventLoop the event loop.
+	 */
+	void setEventLoop(@Nullable final EventLoop eventLoop) {
+		this.eventLoop = eventLoop;
+		this.eventLoopHandler = eventLoop != null ? new ExecutorCallbackHandler(eventLoop) : null;
+	}
+
+	/**
+	 * Sets the recorder of ATT events. Call with null to stop recording.
+	 *
+	 * @param recorder the recorder; null to stop recording.
+	 */
+	void setRecorder(@Nullable final GattRecorder recorder) {
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Sets the persistent cache of GATT layouts.
+	 *
+	 * @param cache the cache; null to disable caching.
+	 */
+	void setServiceCache(@Nullable final GattServiceCache cache) {
+		this.serviceCache = cache;
+	}
+
+	/**
+	 * Enables or disables the durable queue. When disabled, the suspended requests fail.
+	 *
+	 * @param enabled true to keep resumable requests on link loss.
+	 */
+	synchronized void setDurableQueue(final boolean enabled) {
+		this.durableQueue = enabled;
+		if (!enabled)
+			failSuspendedRequests(FailCallback.REASON_DEVICE_DISCONNECTED);
+	}
+
+	/**
+	 * Moves the current request, if resumable, and resumable requests from the task queue
+	 * to the suspended queue, so that they are executed again after reconnection.
+	 * Other requests in the task queue are dropped, as before.
+	 *
+	 * @param device the device that got disconnected.
+	 */
+	private void suspendRequests(@NonNull final BluetoothDevice device) {
+		final Request current = request;
+		if (current != null && current.resumable && !current.finished) {
+			// The timeout is started again when the request is resumed.
+			if (current instanceof TimeoutableRequest)
+				((TimeoutableRequest) current).cancelTimeout();
+			rewind(current);
+			suspendedQueue.add(current);
+			request = null;
+			if (awaitingRequest == current)
+				awaitingRequest = null;
+		}
+		for (final Request r : taskQueue) {
+			if (r.resumable) {
+				rewind(r);
+				suspendedQueue.add(r);
+			}
+		}
+		if (!suspendedQueue.isEmpty()) {
+			suspendedDevice = device;
+			log(Log.INFO, suspendedQueue.size() + " request(s) suspended until reconnection");
+		}
+	}
+
+	private static void rewind(@NonNull final Request request) {
+		if (request instanceof WriteRequest)
+			((WriteRequest) request).rewind();
+		else if (request instanceof ReadRequest)
+			((ReadRequest) request).rewind();
+	}
+
+	/**
+	 * Adds suspended requests to the front of the task queue, in the original order.
+	 * Requests which attribute no longer exists fail.
+	 *
+	 * @param gatt the GATT client of the reconnected device.
+	 */
+	private void resumeRequests(@NonNull final BluetoothGatt gatt) {
+		if (suspendedQueue.isEmpty())
+			return;
+		if (!gatt.getDevice().equals(suspendedDevice)) {
+			failSuspendedRequests(FailCallback.REASON_DEVICE_DISCONNECTED);
+			return;
+		}
+		log(Log.INFO, "Resuming " + suspendedQueue.size() + " request(s)");
+		final Iterator<Request> iterator = suspendedQueue.descendingIterator();
+		while (iterator.hasNext()) {
+			final Request r = iterator.next();
+			// The request might have timed out before it was suspended.
+			if (r.finished)
+				continue;
+			if (r.rebind(gatt)) {
+				taskQueue.addFirst(r);
+			} else {
+				r.notifyFail(gatt.getDevice(), FailCallback.REASON_NULL_ATTRIBUTE);
+			}
+		}
+		suspendedQueue.clear();
+		suspendedDevice = null;
+	}
+
+	private void failSuspendedRequests(final int reason) {
+		final BluetoothDevice device = suspendedDevice;
+		if (device != null) {
+			for (final Request r : suspendedQueue)
+				r.notifyFail(device, reason);
+		}
+		suspendedQueue.clear();
+		suspendedDevice = null;
+	}
+
+	/**
+	 * Sets the link monitor. If the device is ready, monitoring starts immediately.
+	 *
+	 * @param monitor the monitor; null to stop monitoring.
+	 */
+	void setLinkMonitor(@Nullable final LinkMonitor monitor) {
+		this.linkMonitor = monitor;
+		startLinkMonitor();
+	}
+
+	/**
+	 * Stops the current chain of RSSI reads and, if the link monitor is set and the device
+	 * is ready, starts a new one.
+	 */
+	private void startLinkMonitor() {
+		final int generation = stopLinkMonitor();
+		if (linkMonitor != null && ready) {
+			final LinkMonitorTask task = new LinkMonitorTask(generation);
+			linkMonitorTask = task;
+			postInternalDelayed(task, 0);
+		}
+	}
+
+	/**
+	 * Stops the current chain of RSSI reads, including a read in progress.
+	 *
+	 * @return The new generation of the link monitor task.
+	 */
+	private int stopLinkMonitor() {
+		final int generation = linkMonitorGeneration.incrementAndGet();
+		final Runnable task = linkMonitorTask;
+		linkMonitorTask = null;
+		if (task != null)
+			removeInternalCallbacks(task);
+		return generation;
+	}
+
+	/**
+	 * Records an ATT event, if a recorder is set.
+	 */
+	private void record(@GattEventType final int type, final int direction, final int status,
+						@NonNull final BluetoothGattCharacteristic characteristic,
+						@Nullable final byte[] value) {
+		final GattRecorder recorder = this.recorder;
+		if (recorder != null)
+			recorder.record(SystemClock.elapsedRealtimeNanos(), type, direction, status,
+					characteristic.getUuid(), characteristic.getInstanceId(), false, value);
+	}
+
+	/**
+	 * Records an ATT event of a descriptor, if a recorder is set. The descriptor is identified
+	 * by the instance ID of its characteristic.
+	 */
+	private void record(@GattEventType final int type, final int direction, final int status,
+						@NonNull final BluetoothGattDescriptor descriptor,
+						@Nullable final byte[] value) {
+		final GattRecorder recorder = this.recorder;
+		if (recorder != null) {
+			final BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+			recorder.record(SystemClock.elapsedRealtimeNanos(), type, direction, status,
+					descriptor.getUuid(),
+					characteristic != null ? characteristic.getInstanceId() : GattEvent.NO_INSTANCE_ID,
+					true, value);
+		}
+	}
+
 	/**
 	 * Binds the server with the BLE manager handler. Call with null to unbind the server.
 	 *
@@ -428,6 +763,7 @@ abstract class BleManagerHandler extends RequestHandler {
 			reliableWriteInProgress = false;
 			initialConnection = false;
 			valueChangedCallbacks.clear();
+			attributeIndex = null;
 			// close() is called in notifyDeviceDisconnected, which may enqueue new requests.
 			// Setting this flag to false would allow to enqueue a new request before the
 			// current one ends processing. The following line should not be uncommented.
@@ -494,6 +830,14 @@ abstract class BleManagerHandler extends RequestHandler {
 			return true;
 		}
 
+		if (connectRequest != null && !connectRequest.canAttempt()) {
+			log(Log.WARN, "Connection attempt rejected by the retry policy");
+			connectRequest.notifyFail(device, FailCallback.REASON_REQUEST_FAILED);
+			this.connectRequest = null;
+			nextRequest(true);
+			return true;
+		}
+
 		final Context context = manager.getContext();
 		synchronized (LOCK) {
 			if (bluetoothGatt != null) {
@@ -514,12 +858,19 @@ abstract class BleManagerHandler extends RequestHandler {
 						// ignore
 					}
 					bluetoothGatt = null;
-					try {
-						log(Log.DEBUG, "wait(200)");
-						Thread.sleep(200); // Is 200 ms enough?
-					} catch (final InterruptedException e) {
-						// Ignore
-					}
+					if (connectRequest == null)
+						return false;
+					// Open the new client after a settle delay, without blocking the thread.
+					final int delay = getSettleDelay(device);
+					log(Log.DEBUG, "wait(" + delay + ")");
+					settlingAddress.set(device.getAddress());
+					postInternalDelayed(() -> {
+						// The request might have been cancelled in the meantime.
+						if (this.connectRequest != connectRequest || connected)
+							return;
+						connectGatt(context, device, connectRequest);
+					}, delay);
+					return true;
 				} else {
 					// Instead, the gatt.connect() method will be used to reconnect to the same device.
 					// This method forces autoConnect = true even if the gatt was created with this
@@ -547,6 +898,13 @@ abstract class BleManagerHandler extends RequestHandler {
 		// when retrying to create a connection.
 		if (connectRequest == null)
 			return false;
+		connectGatt(context, device, connectRequest);
+		return true;
+	}
+
+	private void connectGatt(@NonNull final Context context,
+							 @NonNull final BluetoothDevice device,
+							 @NonNull final ConnectRequest connectRequest) {
 		final boolean shouldAutoConnect = connectRequest.shouldAutoConnect();
 		// We will receive Link Loss events only when the device is connected with autoConnect=true.
 		userDisconnected = !shouldAutoConnect;
@@ -557,11 +915,17 @@ abstract class BleManagerHandler extends RequestHandler {
 			initialConnection = true;
 		}
 		bluetoothDevice = device;
+		final BleServerManager server = serverManager;
+		if (server != null)
+			server.addRoute(device, manager);
 		log(Log.VERBOSE, connectRequest.isFirstAttempt() ? "Connecting..." : "Retrying...");
 		connectionState = BluetoothGatt.STATE_CONNECTING;
 		postCallback(c -> c.onDeviceConnecting(device));
 		postConnectionStateChange(o -> o.onDeviceConnecting(device));
 		connectionTime = SystemClock.elapsedRealtime();
+		final EventLoop loop = eventLoop;
+		final BluetoothGattCallback callback = loop != null ?
+				new ActorGattCallback(loop, gattCallback) : gattCallback;
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
 			// connectRequest will never be null here.
 			final int preferredPhy = connectRequest.getPreferredPhy();
@@ -569,23 +933,48 @@ abstract class BleManagerHandler extends RequestHandler {
 					+ ParserUtils.phyMaskToString(preferredPhy) + ")");
 			// A variant of connectGatt with Handled can't be used here.
 			// Check https://github.com/NordicSemiconductor/Android-BLE-Library/issues/54
-			bluetoothGatt = device.connectGatt(context, false, gattCallback,
+			bluetoothGatt = device.connectGatt(context, false, callback,
 					BluetoothDevice.TRANSPORT_LE, preferredPhy/*, handler*/);
 		} else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
 			log(Log.DEBUG, "gatt = device.connectGatt(autoConnect = false, TRANSPORT_LE)");
-			bluetoothGatt = device.connectGatt(context, false, gattCallback,
+			bluetoothGatt = device.connectGatt(context, false, callback,
 					BluetoothDevice.TRANSPORT_LE);
 		} else {
 			log(Log.DEBUG, "gatt = device.connectGatt(autoConnect = false)");
-			bluetoothGatt = device.connectGatt(context, false, gattCallback);
+			bluetoothGatt = device.connectGatt(context, false, callback);
 		}
-		return true;
+	}
+
+	@IntRange(from = SETTLE_DELAY_MIN, to = SETTLE_DELAY_MAX)
+	private int getSettleDelay(@NonNull final BluetoothDevice device) {
+		final Integer delay = settleDelays.get(device.getAddress());
+		return delay != null ? delay : SETTLE_DELAY_DEFAULT;
+	}
+
+	/**
+	 * Adapts the settle delay of the device reconnected after closing the previous client.
+	 *
+	 * @param success true if services were discovered, false if the connection failed.
+	 */
+	private void adaptSettleDelay(final boolean success) {
+		final String address = settlingAddress.getAndSet(null);
+		if (address == null)
+			return;
+		final Integer current = settleDelays.get(address);
+		final int delay = current != null ? current : SETTLE_DELAY_DEFAULT;
+		final int newDelay = success ?
+				Math.max(SETTLE_DELAY_MIN, delay * 3 / 4) :
+				Math.min(SETTLE_DELAY_MAX, delay * 2);
+		settleDelays.put(address, newDelay);
+		if (newDelay != delay)
+			log(Log.DEBUG, "Settle delay changed to " + newDelay + " ms");
 	}
 
 	private boolean internalDisconnect() {
 		userDisconnected = true;
 		initialConnection = false;
 		ready = false;
+		failSuspendedRequests(FailCallback.REASON_DEVICE_DISCONNECTED);
 
 		if (bluetoothGatt != null) {
 			connectionState = BluetoothGatt.STATE_DISCONNECTING;
@@ -795,7 +1184,7 @@ abstract class BleManagerHandler extends RequestHandler {
 			log(Log.DEBUG, "server.notifyCharacteristicChanged(device, " + serverCharacteristic.getUuid() + ", " + confirm + ")");
 			final boolean result = serverManager.getServer().notifyCharacteristicChanged(bluetoothDevice, serverCharacteristic, confirm);
 			if (result && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
-				post(() -> {
+				postInternal(() -> {
 					notifyNotificationSent(bluetoothDevice);
 					nextRequest(true);
 				});
@@ -807,6 +1196,39 @@ abstract class BleManagerHandler extends RequestHandler {
 		return true;
 	}
 
+	/**
+	 * Returns whether the connected client has enabled notifications on the given
+	 * server characteristic.
+	 *
+	 * @param serverCharacteristic the server characteristic.
+	 * @return True, if the CCCD value of this client has the notification bit set.
+	 */
+	final boolean isNotificationEnabled(@NonNull final BluetoothGattCharacteristic serverCharacteristic) {
+		return (serverCharacteristic.getProperties() & BluetoothGattCharacteristic.PROPERTY_NOTIFY) != 0
+				&& notificationsEnabled.contains(serverCharacteristic);
+	}
+
+	/**
+	 * Updates the notification state of this client if the descriptor is a CCCD.
+	 * For a shared CCCD only values written by this client are taken into account, as the
+	 * shared value may have been written by any client.
+	 *
+	 * @param descriptor the server descriptor.
+	 * @param value      the new value of the descriptor for this client.
+	 */
+	private void updateNotificationState(@NonNull final BluetoothGattDescriptor descriptor,
+										 @Nullable final byte[] value) {
+		if (!BleManager.CLIENT_CHARACTERISTIC_CONFIG_DESCRIPTOR_UUID.equals(descriptor.getUuid()))
+			return;
+		final BluetoothGattCharacteristic characteristic = descriptor.getCharacteristic();
+		if (characteristic == null)
+			return;
+		if (value != null && value.length == 2 && (value[0] & 0x01) != 0)
+			notificationsEnabled.add(characteristic);
+		else
+			notificationsEnabled.remove(characteristic);
+	}
+
 	/**
 	 * Returns the Client Characteristic Config Descriptor if the characteristic has the
 	 * required property. It may return null if the CCCD is not there.
@@ -995,6 +1417,107 @@ abstract class BleManagerHandler extends RequestHandler {
 		return gatt.requestMtu(mtu);
 	}
 
+	/**
+	 * Enables or disables adaptive connection priority.
+	 *
+	 * @param threshold    the number of queued requests that triggers the boost, or 0 to disable.
+	 * @param idleTimeout  time in milliseconds after the queue got empty before the
+	 *                     idle priority is requested.
+	 * @param idlePriority the priority to be requested when idle.
+	 */
+	void setAdaptiveConnectionPriority(final int threshold, final long idleTimeout,
+									   @ConnectionPriority final int idlePriority) {
+		this.boostThreshold = Math.max(0, threshold);
+		this.boostIdleTimeout = Math.max(0, idleTimeout);
+		this.boostIdlePriority = idlePriority;
+	}
+
+	/**
+	 * Requests {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_HIGH} when the queue
+	 * crosses the threshold or a long split write is about to start. The request is not
+	 * queued, as it does not use the ATT bearer and may be sent while another operation
+	 * is in progress.
+	 */
+	private void adaptConnectionPriority(@NonNull final Request request) {
+		if (boostThreshold == 0 || !connected
+				|| Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+			return;
+		if (boosted) {
+			if (boostIdleScheduled) {
+				boostIdleScheduled = false;
+				removeInternalCallbacks(boostIdleTask);
+			}
+			return;
+		}
+		final boolean bulk = taskQueue.size() + 1 >= boostThreshold
+				|| (request instanceof WriteRequest && ((WriteRequest) request).isLongSplit(mtu));
+		if (bulk && internalRequestConnectionPriority(ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH)) {
+			log(Log.INFO, "Connection priority boosted for bulk transfer");
+			boosted = true;
+			pendingAdaptivePriority = ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH;
+		}
+	}
+
+	/**
+	 * Reads RSSI for the link monitor, unless other requests are pending, in which case
+	 * the read is postponed. The next read is scheduled when this one completes.
+	 * A task from an older generation stops, also when its read completes, so that
+	 * restarting the monitor never leaves two chains of reads.
+	 */
+	private final class LinkMonitorTask implements Runnable {
+		private final int generation;
+
+		private LinkMonitorTask(final int generation) {
+			this.generation = generation;
+		}
+
+		private boolean isCurrent() {
+			return generation == linkMonitorGeneration.get();
+		}
+
+		@Override
+		public void run() {
+			final LinkMonitor monitor = linkMonitor;
+			if (!isCurrent() || monitor == null || !connected || !ready)
+				return;
+			synchronized (BleManagerHandler.this) {
+				if (operationInProgress || !taskQueue.isEmpty()) {
+					postInternalDelayed(this, monitor.getNextInterval());
+					return;
+				}
+			}
+			final ReadRssiRequest request = Request.newReadRssiRequest();
+			request.setRequestHandler(BleManagerHandler.this)
+					.with((device, rssi) -> monitor.onRssi(device, rssi, SystemClock.elapsedRealtime()))
+					.done(device -> {
+						if (isCurrent())
+							postInternalDelayed(this, monitor.getNextInterval());
+					})
+					.fail((device, status) -> {
+						if (isCurrent() && status != FailCallback.REASON_DEVICE_DISCONNECTED)
+							postInternalDelayed(this, monitor.getNextInterval());
+					});
+			enqueue(request);
+		}
+	}
+
+	private final Runnable boostIdleTask = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (BleManagerHandler.this) {
+				boostIdleScheduled = false;
+				if (!boosted || operationInProgress || !taskQueue.isEmpty() || !connected
+						|| Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+					return;
+				boosted = false;
+				if (internalRequestConnectionPriority(boostIdlePriority)) {
+					log(Log.INFO, "Connection idle, priority boost removed");
+					pendingAdaptivePriority = boostIdlePriority;
+				}
+			}
+		}
+	};
+
 	@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
 	private boolean internalRequestConnectionPriority(@ConnectionPriority final int priority) {
 		final BluetoothGatt gatt = bluetoothGatt;
@@ -1074,6 +1597,9 @@ abstract class BleManagerHandler extends RequestHandler {
 			callback = new ValueChangedCallback(this);
 			if (attribute != null) {
 				valueChangedCallbacks.put(attribute, callback);
+				final AttributeIndex index = attributeIndex;
+				if (index != null)
+					index.setCallback(attribute, callback);
 			}
 		}
 		return callback.free();
@@ -1086,6 +1612,9 @@ abstract class BleManagerHandler extends RequestHandler {
 	 */
 	void removeValueChangedCallback(@Nullable final Object attribute) {
 		valueChangedCallbacks.remove(attribute);
+		final AttributeIndex index = attributeIndex;
+		if (index != null)
+			index.setCallback(attribute, null);
 	}
 
 	@Deprecated
@@ -1144,6 +1673,191 @@ abstract class BleManagerHandler extends RequestHandler {
 		return false;
 	}
 
+	/**
+	 * Adds requests negotiating high connection priority, maximum MTU and LE 2M PHY to the
+	 * front of the queue. The priority is requested first, so that the MTU exchange and PHY
+	 * update take less time. Failures are ignored, as the final values are reported anyway.
+	 *
+	 * @param device   the connected device.
+	 * @param callback an optional callback notified with the negotiated values.
+	 */
+	private void enqueueThroughputProfile(@NonNull final BluetoothDevice device,
+										  @Nullable final ThroughputProfileCallback callback) {
+		// interval, latency, timeout, txPhy, rxPhy
+		final int[] values = { 0, 0, 0, PhyCallback.PHY_LE_1M, PhyCallback.PHY_LE_1M };
+		final PhyRequest phyRequest = Request.newSetPreferredPhyRequest(
+				PhyRequest.PHY_LE_2M_MASK, PhyRequest.PHY_LE_2M_MASK, PhyRequest.PHY_OPTION_NO_PREFERRED);
+		phyRequest.setRequestHandler(this)
+				.with((d, txPhy, rxPhy) -> {
+					values[3] = txPhy;
+					values[4] = rxPhy;
+				})
+				.done(d -> notifyThroughputProfile(d, values, callback))
+				.fail((d, status) -> {
+					log(Log.DEBUG, "LE 2M PHY not negotiated (status: " + status + ")");
+					notifyThroughputProfile(d, values, callback);
+				});
+		enqueueFirst(phyRequest);
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+			enqueueFirst(Request.newMtuRequest(517).setRequestHandler(this)
+					.fail((d, status) -> log(Log.DEBUG, "Maximum MTU not negotiated (status: " + status + ")")));
+			enqueueFirst(Request.newConnectionPriorityRequest(ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH)
+					.setRequestHandler(this)
+					.with((d, interval, latency, timeout) -> {
+						values[0] = interval;
+						values[1] = latency;
+						values[2] = timeout;
+					})
+					.fail((d, status) -> log(Log.DEBUG, "High connection priority not negotiated (status: " + status + ")")));
+		}
+		log(Log.VERBOSE, "Negotiating throughput profile");
+	}
+
+	/**
+	 * Starts the service discovery after the given delay, unless the connection was lost or
+	 * a new one was established in the meantime.
+	 *
+	 * @param gatt            the GATT client.
+	 * @param connectionCount the connection number the discovery is scheduled for.
+	 * @param delay           the delay in milliseconds.
+	 */
+	private void discoverServicesDelayed(@NonNull final BluetoothGatt gatt,
+										 final int connectionCount, final int delay) {
+		if (delay > 0)
+			log(Log.DEBUG, "wait(" + delay + ")");
+		postInternalDelayed(() -> {
+			if (connectionCount != BleManagerHandler.this.connectionCount) {
+				// Ensure that we will not try to discover services for a lost connection.
+				return;
+			}
+			// Some proximity tags (e.g. nRF PROXIMITY Pebble) initialize bonding
+			// automatically when connected. Wait with the discovery until bonding is
+			// complete. It will be initiated again in the bond state broadcast receiver
+			// on the top of this file.
+			if (connected &&
+					gatt.getDevice().getBondState() != BluetoothDevice.BOND_BONDING) {
+				serviceDiscoveryRequested = true;
+				log(Log.VERBOSE, "Discovering services...");
+				log(Log.DEBUG, "gatt.discoverServices()");
+				gatt.discoverServices();
+			}
+		}, delay);
+	}
+
+	/**
+	 * Stores the discovered GATT layout in the service cache, if set. If the device has the
+	 * Database Hash characteristic, its value is read first and compared with the cached one.
+	 * If the hash has changed, or the discovered services differ from the layout cached with
+	 * the same hash, the device cache is refreshed and the services are discovered again.
+	 * Otherwise, {@link #initialize()} is called.
+	 *
+	 * @param gatt the GATT client with discovered services.
+	 * @return True, if the Database Hash will be read and the initialization will start
+	 * after it's verified; false if the initialization may start right away.
+	 */
+	private boolean updateServiceCache(@NonNull final BluetoothGatt gatt) {
+		final GattServiceCache cache = serviceCache;
+		if (cache == null)
+			return false;
+
+		final String address = gatt.getDevice().getAddress();
+		final GattServiceCache.Entry entry = cachedServices;
+		final byte[] layout = GattServiceCache.layoutOf(gatt.getServices());
+		final BluetoothGattService gaService = gatt.getService(BleManager.GENERIC_ATTRIBUTE_SERVICE);
+		final BluetoothGattCharacteristic databaseHash = gaService != null ?
+				gaService.getCharacteristic(BleManager.DATABASE_HASH_CHARACTERISTIC) : null;
+		if (databaseHash == null) {
+			// Without the hash it is not known which layout is valid, the discovered one is kept.
+			if (entry != null && !Arrays.equals(entry.layout, layout))
+				log(Log.INFO, "GATT layout changed");
+			cachedServices = new GattServiceCache.Entry(null, layout);
+			cache.putAsync(address, null, layout);
+			return false;
+		}
+
+		final ReadRequest request = Request.newReadRequest(databaseHash);
+		request.setRequestHandler(this);
+		// Internal callbacks are called synchronously, before the next request is started.
+		request.internalSuccess(device ->
+				verifyServiceCache(cache, address, entry, layout, databaseHash.getValue()));
+		request.internalFail((device, status) -> {
+			log(Log.WARN, "Reading Database Hash failed (status: " + status + ")");
+			initializeAfterServiceCacheCheck();
+		});
+		enqueueFirst(request);
+		return true;
+	}
+
+	/**
+	 * Compares the Database Hash read from the device with the cached one. On a mismatch the
+	 * device cache is refreshed, otherwise {@link #initialize()} is called.
+	 *
+	 * @param cache   the service cache.
+	 * @param address the device address.
+	 * @param entry   the cached entry, read when the device was connecting.
+	 * @param layout  the layout of the discovered services.
+	 * @param hash    the Database Hash read from the device.
+	 */
+	void verifyServiceCache(@NonNull final GattServiceCache cache, @NonNull final String address,
+							@Nullable final GattServiceCache.Entry entry,
+							@NonNull final byte[] layout, @Nullable final byte[] hash) {
+		if (entry != null && entry.hash != null && !Arrays.equals(entry.hash, hash)) {
+			log(Log.WARN, "Database Hash changed, discovering services again");
+			refreshServiceCache(cache, address);
+		} else if (entry != null && entry.hash != null && !Arrays.equals(entry.layout, layout)) {
+			// The hash matches, so the cached layout is valid and the Android cache is not.
+			log(Log.WARN, "Services differ from the cached layout, discovering services again");
+			refreshServiceCache(cache, address);
+		} else {
+			cachedServices = new GattServiceCache.Entry(hash, layout);
+			cache.putAsync(address, hash, layout);
+			initializeAfterServiceCacheCheck();
+		}
+	}
+
+	private void refreshServiceCache(@NonNull final GattServiceCache cache, @NonNull final String address) {
+		// The connection was lost in the meantime.
+		if (initQueue == null)
+			return;
+		// The layout will not be verified again after the services are rediscovered.
+		cachedServices = null;
+		cache.invalidateAsync(address);
+		// The refresh must be done from the initialization queue, as otherwise the device
+		// would become ready before the services are discovered again. Refreshing clears
+		// the queues, the initialization will start after the discovery.
+		// If refreshing fails, the discovered services are used.
+		final Request request = Request.newRefreshCacheRequest().setRequestHandler(this);
+		request.internalFail((device, status) -> initializeAfterServiceCacheCheck());
+		final boolean initializing = initInProgress;
+		initInProgress = true;
+		enqueueFirst(request);
+		initInProgress = initializing;
+	}
+
+	/**
+	 * Calls {@link #initialize()} after the Database Hash has been verified. The requests are
+	 * added to the end of the initialization queue, after those added by the library.
+	 */
+	private void initializeAfterServiceCacheCheck() {
+		// The connection was lost in the meantime.
+		if (initQueue == null)
+			return;
+		initInProgress = true;
+		initialize();
+		initInProgress = false;
+	}
+
+	private void notifyThroughputProfile(@NonNull final BluetoothDevice device,
+										 @NonNull final int[] values,
+										 @Nullable final ThroughputProfileCallback callback) {
+		final ThroughputProfile profile = new ThroughputProfile(mtu, values[3], values[4],
+				values[0], values[1], values[2]);
+		log(Log.INFO, "Throughput profile negotiated: " + profile);
+		if (callback != null)
+			callback.onThroughputProfileNegotiated(device, profile);
+	}
+
 	// Request Handler methods
 
 	@Override
@@ -1155,6 +1869,12 @@ abstract class BleManagerHandler extends RequestHandler {
 
 	@Override
 	final void enqueue(@NonNull final Request request) {
+		final EventLoop loop = eventLoop;
+		if (loop != null && !loop.inEventLoop()) {
+			request.enqueued = true;
+			loop.execute(() -> enqueue(request));
+			return;
+		}
 		final Deque<Request> queue = initInProgress ? initQueue : taskQueue;
 		queue.add(request);
 		request.enqueued = true;
@@ -1163,8 +1883,14 @@ abstract class BleManagerHandler extends RequestHandler {
 
 	@Override
 	final void cancelQueue() {
+		final EventLoop loop = eventLoop;
+		if (loop != null && !loop.inEventLoop()) {
+			loop.execute(this::cancelQueue);
+			return;
+		}
 		taskQueue.clear();
 		initQueue = null;
+		failSuspendedRequests(FailCallback.REASON_CANCELLED);
 		if (awaitingRequest != null) {
 			awaitingRequest.notifyFail(bluetoothDevice, FailCallback.REASON_CANCELLED);
 		}
@@ -1188,6 +1914,16 @@ abstract class BleManagerHandler extends RequestHandler {
 
 	@Override
 	final void onRequestTimeout(@NonNull final TimeoutableRequest request) {
+		final EventLoop loop = eventLoop;
+		if (loop != null && !loop.inEventLoop()) {
+			loop.execute(() -> onRequestTimeout(request));
+			return;
+		}
+		// A request that is no longer executed, e.g. one that was suspended, must not
+		// affect the current one.
+		if (request != this.request && request != awaitingRequest
+				&& request.type != Request.Type.CONNECT && request.type != Request.Type.DISCONNECT)
+			return;
 		this.request = null;
 		awaitingRequest = null;
 		if (request.type == Request.Type.CONNECT) {
@@ -1205,17 +1941,86 @@ abstract class BleManagerHandler extends RequestHandler {
 
 	@Override
 	public void post(@NonNull final Runnable r) {
-		handler.post(r);
+		final CallbackHandler executorHandler = this.executorHandler;
+		if (executorHandler != null) {
+			executorHandler.post(r);
+		} else {
+			handler.post(r);
+		}
 	}
 
 	@Override
 	public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
-		handler.postDelayed(r, delayMillis);
+		final CallbackHandler executorHandler = this.executorHandler;
+		if (executorHandler != null) {
+			executorHandler.postDelayed(r, delayMillis);
+		} else {
+			handler.postDelayed(r, delayMillis);
+		}
 	}
 
 	@Override
 	public void removeCallbacks(@NonNull final Runnable r) {
-		handler.removeCallbacks(r);
+		final CallbackHandler executorHandler = this.executorHandler;
+		if (executorHandler != null) {
+			executorHandler.removeCallbacks(r);
+		} else {
+			handler.removeCallbacks(r);
+		}
+	}
+
+	@Override
+	public boolean isCurrentThread() {
+		final CallbackHandler executorHandler = this.executorHandler;
+		if (executorHandler != null) {
+			return executorHandler.isCurrentThread();
+		}
+		return handler != null && handler.getLooper() == Looper.myLooper();
+	}
+
+	/**
+	 * Posts an internal task, which changes the state of the manager. When an event loop
+	 * is set, the task is run on the loop. Otherwise, it's posted like the callbacks.
+	 */
+	private void postInternal(@NonNull final Runnable r) {
+		final CallbackHandler eventLoopHandler = this.eventLoopHandler;
+		if (eventLoopHandler != null) {
+			eventLoopHandler.post(r);
+		} else {
+			post(r);
+		}
+	}
+
+	private void postInternalDelayed(@NonNull final Runnable r, final long delayMillis) {
+		final CallbackHandler eventLoopHandler = this.eventLoopHandler;
+		if (eventLoopHandler != null) {
+			eventLoopHandler.postDelayed(r, delayMillis);
+		} else {
+			postDelayed(r, delayMillis);
+		}
+	}
+
+	private void removeInternalCallbacks(@NonNull final Runnable r) {
+		final CallbackHandler eventLoopHandler = this.eventLoopHandler;
+		if (eventLoopHandler != null) {
+			eventLoopHandler.removeCallbacks(r);
+		} else {
+			removeCallbacks(r);
+		}
+	}
+
+	/**
+	 * Passes the broadcast to the event loop, if one is set and this is not the loop thread.
+	 *
+	 * @return True, if the broadcast will be handled on the event loop.
+	 */
+	private boolean runOnEventLoop(@NonNull final BroadcastReceiver receiver,
+								   final Context context, final Intent intent) {
+		final EventLoop loop = eventLoop;
+		if (loop == null || loop.inEventLoop())
+			return false;
+		loop.execute(() -> receiver.onReceive(context, intent));
+		return true;
 	}
 
 	// Helper methods
@@ -1252,6 +2057,10 @@ abstract class BleManagerHandler extends RequestHandler {
 		if (observer != null) {
 			post(() -> r.run(observer));
 		}
+		final ConnectionObserver internalObserver = internalConnectionObserver;
+		if (internalObserver != null) {
+			post(() -> r.run(internalObserver));
+		}
 	}
 
 	/**
@@ -1435,6 +2244,17 @@ abstract class BleManagerHandler extends RequestHandler {
 		final boolean wasConnected = connected;
 		connected = false;
 		servicesDiscovered = false;
+		attributeIndex = null;
+		boosted = false;
+		boostIdleScheduled = false;
+		pendingAdaptivePriority = -1;
+		removeInternalCallbacks(boostIdleTask);
+		stopLinkMonitor();
+		longReads.clear();
+		notificationsEnabled.clear();
+		final LinkMonitor linkMonitor = this.linkMonitor;
+		if (linkMonitor != null)
+			linkMonitor.reset();
 		serviceDiscoveryRequested = false;
 		deviceNotSupported = false;
 		initInProgress = false;
@@ -1608,12 +2428,21 @@ abstract class BleManagerHandler extends RequestHandler {
 	}
 
 	private void onError(final BluetoothDevice device, final String message, final int errorCode) {
+		final LinkMonitor linkMonitor = this.linkMonitor;
+		if (linkMonitor != null)
+			linkMonitor.onGattError();
 		log(Log.ERROR, "Error (0x" + Integer.toHexString(errorCode) + "): "
 				+ GattError.parse(errorCode));
 		postCallback(c -> c.onError(device, message, errorCode));
 	}
 
-	private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
+	private final GattCallback gattCallback = new GattCallback();
+
+	/**
+	 * The GATT callback. The methods receiving a value have variants taking the value as
+	 * a parameter, so that {@link ActorGattCallback} may pass a copy taken on the binder thread.
+	 */
+	final class GattCallback extends BluetoothGattCallback {
 
 		@Override
 		public final void onConnectionStateChange(@NonNull final BluetoothGatt gatt,
@@ -1647,28 +2476,23 @@ abstract class BleManagerHandler extends RequestHandler {
 
 				if (!serviceDiscoveryRequested) {
 					final boolean bonded = gatt.getDevice().getBondState() == BluetoothDevice.BOND_BONDED;
-					final int delay = manager.getServiceDiscoveryDelay(bonded);
-					if (delay > 0)
-						log(Log.DEBUG, "wait(" + delay + ")");
-
 					final int connectionCount = ++BleManagerHandler.this.connectionCount;
-					postDelayed(() -> {
-						if (connectionCount != BleManagerHandler.this.connectionCount) {
-							// Ensure that we will not try to discover services for a lost connection.
-							return;
-						}
-						// Some proximity tags (e.g. nRF PROXIMITY Pebble) initialize bonding
-						// automatically when connected. Wait with the discovery until bonding is
-						// complete. It will be initiated again in the bond state broadcast receiver
-						// on the top of this file.
-						if (connected &&
-								gatt.getDevice().getBondState() != BluetoothDevice.BOND_BONDING) {
-							serviceDiscoveryRequested = true;
-							log(Log.VERBOSE, "Discovering services...");
-							log(Log.DEBUG, "gatt.discoverServices()");
-							gatt.discoverServices();
-						}
-					}, delay);
+					final GattServiceCache cache = serviceCache;
+					cachedServices = null;
+					if (cache != null) {
+						// The cache is read in the background, not to block this thread on I/O.
+						cache.getAsync(gatt.getDevice().getAddress(), entry -> postInternal(() -> {
+							if (connectionCount != BleManagerHandler.this.connectionCount)
+								return;
+							cachedServices = entry;
+							if (entry != null)
+								log(Log.VERBOSE, "Services cached, Service Changed indication will not be awaited");
+							discoverServicesDelayed(gatt, connectionCount,
+									entry != null ? 0 : manager.getServiceDiscoveryDelay(bonded));
+						}));
+					} else {
+						discoverServicesDelayed(gatt, connectionCount, manager.getServiceDiscoveryDelay(bonded));
+					}
 				}
 			} else {
 				if (newState == BluetoothProfile.STATE_DISCONNECTED) {
@@ -1680,17 +2504,29 @@ abstract class BleManagerHandler extends RequestHandler {
 						log(Log.WARN, "Error: (0x" + Integer.toHexString(status) + "): " +
 								GattError.parseConnectionError(status));
 
+					// A connection error just after reopening the client may mean that
+					// the previous one was not closed yet.
+					if (status != BluetoothGatt.GATT_SUCCESS && !connected && !timeout)
+						adaptSettleDelay(false);
+
 					// In case of a connection error, retry if required.
-					if (status != BluetoothGatt.GATT_SUCCESS && canTimeout && !timeout
-							&& connectRequest != null && connectRequest.canRetry()) {
-						final int delay = connectRequest.getRetryDelay();
-						if (delay > 0)
-							log(Log.DEBUG, "wait(" + delay + ")");
-						postDelayed(() -> internalConnect(gatt.getDevice(), connectRequest), delay);
-						return;
+					if (status != BluetoothGatt.GATT_SUCCESS && canTimeout && connectRequest != null) {
+						final long delay = connectRequest.getRetryDelay(timeout ?
+								FailCallback.REASON_TIMEOUT : status);
+						if (delay != RetryPolicy.NO_RETRY) {
+							if (delay > 0)
+								log(Log.DEBUG, "wait(" + delay + ")");
+							postInternalDelayed(() -> internalConnect(gatt.getDevice(), connectRequest), delay);
+							return;
+						}
 					}
 
 					operationInProgress = true; // no more calls are possible
+					// Keep resumable requests if the link was lost, but not when
+					// disconnect() was called or the device is not supported.
+					if (durableQueue && connected && !deviceNotSupported
+							&& (request == null || request.type != Request.Type.DISCONNECT))
+						suspendRequests(gatt.getDevice());
 					taskQueue.clear();
 					initQueue = null;
 					ready = false;
@@ -1767,7 +2603,9 @@ abstract class BleManagerHandler extends RequestHandler {
 			serviceDiscoveryRequested = false;
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Services discovered");
+				adaptSettleDelay(true);
 				servicesDiscovered = true;
+				attributeIndex = AttributeIndex.build(gatt.getServices(), valueChangedCallbacks);
 				if (isRequiredServiceSupported(gatt)) {
 					log(Log.VERBOSE, "Primary service found");
 					deviceNotSupported = false;
@@ -1794,6 +2632,7 @@ abstract class BleManagerHandler extends RequestHandler {
 											if (descriptorValues == null)
 												descriptorValues = new HashMap<>();
 											descriptorValues.put(descriptor, descriptor.getValue());
+											updateNotificationState(descriptor, descriptor.getValue());
 										}
 									}
 								}
@@ -1851,7 +2690,18 @@ abstract class BleManagerHandler extends RequestHandler {
 					}
 					// End
 
-					initialize();
+					// 4. Negotiate the throughput profile before any other initialization
+					//    request, so that they already benefit from it.
+					if (connectRequest != null && connectRequest.shouldNegotiateThroughputProfile())
+						enqueueThroughputProfile(gatt.getDevice(),
+								connectRequest.getThroughputProfileCallback());
+
+					// 5. Verify the cached GATT layout before anything else, as on a mismatch
+					//    the services will be discovered again. In that case the app's
+					//    initialization is started only when the Database Hash is verified.
+					if (!updateServiceCache(gatt))
+						initialize();
+
 					initInProgress = false;
 					nextRequest(true);
 				} else {
@@ -1862,6 +2712,7 @@ abstract class BleManagerHandler extends RequestHandler {
 				}
 			} else {
 				Log.e(TAG, "onServicesDiscovered error " + status);
+				adaptSettleDelay(false);
 				onError(gatt.getDevice(), ERROR_DISCOVERY_SERVICE, status);
 				if (connectRequest != null) {
 					connectRequest.notifyFail(gatt.getDevice(), FailCallback.REASON_REQUEST_FAILED);
@@ -1875,7 +2726,14 @@ abstract class BleManagerHandler extends RequestHandler {
 		public void onCharacteristicRead(final BluetoothGatt gatt,
 										 final BluetoothGattCharacteristic characteristic,
 										 final int status) {
-			final byte[] data = characteristic.getValue();
+			onCharacteristicRead(gatt, characteristic, characteristic.getValue(), status);
+		}
+
+		void onCharacteristicRead(@NonNull final BluetoothGatt gatt,
+								  @NonNull final BluetoothGattCharacteristic characteristic,
+								  @Nullable final byte[] data, final int status) {
+			record(GattEvent.TYPE_READ, GattEvent.DIRECTION_INCOMING, status,
+					characteristic, data);
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Read Response received from " + characteristic.getUuid() +
@@ -1921,7 +2779,14 @@ abstract class BleManagerHandler extends RequestHandler {
 		public void onCharacteristicWrite(final BluetoothGatt gatt,
 										  final BluetoothGattCharacteristic characteristic,
 										  final int status) {
-			final byte[] data = characteristic.getValue();
+			onCharacteristicWrite(gatt, characteristic, characteristic.getValue(), status);
+		}
+
+		void onCharacteristicWrite(@NonNull final BluetoothGatt gatt,
+								   @NonNull final BluetoothGattCharacteristic characteristic,
+								   @Nullable final byte[] data, final int status) {
+			record(GattEvent.TYPE_WRITE, GattEvent.DIRECTION_OUTGOING, status,
+					characteristic, data);
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Data written to " + characteristic.getUuid() +
@@ -1991,7 +2856,14 @@ abstract class BleManagerHandler extends RequestHandler {
 
 		@Override
 		public void onDescriptorRead(final BluetoothGatt gatt, final BluetoothGattDescriptor descriptor, final int status) {
-			final byte[] data = descriptor.getValue();
+			onDescriptorRead(gatt, descriptor, descriptor.getValue(), status);
+		}
+
+		void onDescriptorRead(@NonNull final BluetoothGatt gatt,
+							  @NonNull final BluetoothGattDescriptor descriptor,
+							  @Nullable final byte[] data, final int status) {
+			record(GattEvent.TYPE_READ, GattEvent.DIRECTION_INCOMING, status,
+					descriptor, data);
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Read Response received from descr. " + descriptor.getUuid() +
@@ -2034,11 +2906,21 @@ abstract class BleManagerHandler extends RequestHandler {
 		public void onDescriptorWrite(final BluetoothGatt gatt,
 									  final BluetoothGattDescriptor descriptor,
 									  final int status) {
-			final byte[] data = descriptor.getValue();
+			onDescriptorWrite(gatt, descriptor, descriptor.getValue(), status);
+		}
+
+		void onDescriptorWrite(@NonNull final BluetoothGatt gatt,
+							   @NonNull final BluetoothGattDescriptor descriptor,
+							   @Nullable final byte[] data, final int status) {
+			record(GattEvent.TYPE_WRITE, GattEvent.DIRECTION_OUTGOING, status,
+					descriptor, data);
 
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Data written to descr. " + descriptor.getUuid() +
 						", value: " + ParserUtils.parse(data));
+				final AttributeIndex index = attributeIndex;
+				if (index != null)
+					index.onDescriptorWritten(descriptor);
 
 				if (isServiceChangedCCCD(descriptor)) {
 					log(Log.INFO, "Service Changed notifications enabled");
@@ -2101,24 +2983,49 @@ abstract class BleManagerHandler extends RequestHandler {
 		@Override
 		public void onCharacteristicChanged(final BluetoothGatt gatt,
 											final BluetoothGattCharacteristic characteristic) {
-			final byte[] data = characteristic.getValue();
+			// Take the timestamp first, before any logging or parsing
+			final long timestamp = SystemClock.elapsedRealtimeNanos();
+			onCharacteristicChanged(gatt, characteristic, characteristic.getValue(), timestamp);
+		}
 
-			if (isServiceChangedCharacteristic(characteristic)) {
+		void onCharacteristicChanged(@NonNull final BluetoothGatt gatt,
+									 @NonNull final BluetoothGattCharacteristic characteristic,
+									 @Nullable final byte[] data, final long timestamp) {
+			final AttributeIndex index = attributeIndex;
+			final AttributeIndex.Slot slot = index != null ? index.get(characteristic) : null;
+
+			if (slot != null ? slot.serviceChanged : isServiceChangedCharacteristic(characteristic)) {
 				// TODO this should be tested. Should services be invalidated?
 				// Forbid enqueuing more operations.
 				operationInProgress = true;
+				attributeIndex = null;
 				// Clear queues, services are no longer valid.
 				taskQueue.clear();
 				initQueue = null;
 				log(Log.INFO, "Service Changed indication received");
+				final GattServiceCache cache = serviceCache;
+				cachedServices = null;
+				if (cache != null)
+					cache.invalidateAsync(gatt.getDevice().getAddress());
 				log(Log.VERBOSE, "Discovering Services...");
 				log(Log.DEBUG, "gatt.discoverServices()");
 				gatt.discoverServices();
 			} else {
-				final BluetoothGattDescriptor cccd =
-						characteristic.getDescriptor(BleManager.CLIENT_CHARACTERISTIC_CONFIG_DESCRIPTOR_UUID);
-				final boolean notifications = cccd == null || cccd.getValue() == null ||
-						cccd.getValue().length != 2 || cccd.getValue()[0] == 0x01;
+				final boolean notifications;
+				if (slot != null) {
+					notifications = !slot.indications;
+				} else {
+					final BluetoothGattDescriptor cccd =
+							characteristic.getDescriptor(BleManager.CLIENT_CHARACTERISTIC_CONFIG_DESCRIPTOR_UUID);
+					notifications = cccd == null || cccd.getValue() == null ||
+							cccd.getValue().length != 2 || cccd.getValue()[0] == 0x01;
+				}
+				final GattRecorder recorder = BleManagerHandler.this.recorder;
+				if (recorder != null)
+					recorder.record(timestamp,
+							notifications ? GattEvent.TYPE_NOTIFICATION : GattEvent.TYPE_INDICATION,
+							GattEvent.DIRECTION_INCOMING, BluetoothGatt.GATT_SUCCESS,
+							characteristic.getUuid(), characteristic.getInstanceId(), false, data);
 
 				final String dataString = ParserUtils.parse(data);
 				if (notifications) {
@@ -2130,13 +3037,15 @@ abstract class BleManagerHandler extends RequestHandler {
 							characteristic.getUuid() + ", value: " + dataString);
 					onCharacteristicIndicated(gatt, characteristic);
 				}
-				if (batteryLevelNotificationCallback != null && isBatteryLevelCharacteristic(characteristic)) {
-					batteryLevelNotificationCallback.notifyValueChanged(gatt.getDevice(), data);
+				if (batteryLevelNotificationCallback != null && (slot != null ?
+						slot.batteryLevel : isBatteryLevelCharacteristic(characteristic))) {
+					batteryLevelNotificationCallback.notifyValueChanged(gatt.getDevice(), data, timestamp);
 				}
 				// Notify the notification registered listener, if set
-				final ValueChangedCallback request = valueChangedCallbacks.get(characteristic);
+				final ValueChangedCallback request = slot != null ?
+						slot.callback : valueChangedCallbacks.get(characteristic);
 				if (request != null && request.matches(data)) {
-					request.notifyValueChanged(gatt.getDevice(), data);
+					request.notifyValueChanged(gatt.getDevice(), data, timestamp);
 				}
 				// If there is a value change request,
 				if (awaitingRequest instanceof WaitForValueChangedRequest
@@ -2175,6 +3084,10 @@ abstract class BleManagerHandler extends RequestHandler {
 		public final void onMtuChanged(@NonNull final BluetoothGatt gatt,
 									   @IntRange(from = 23, to = 517) final int mtu,
 									   final int status) {
+			final GattRecorder recorder = BleManagerHandler.this.recorder;
+			if (recorder != null)
+				recorder.recordMtu(SystemClock.elapsedRealtimeNanos(),
+						GattEvent.DIRECTION_INCOMING, status, mtu);
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "MTU changed to: " + mtu);
 				BleManagerHandler.this.mtu = mtu;
@@ -2215,11 +3128,21 @@ abstract class BleManagerHandler extends RequestHandler {
 											  @IntRange(from = 0, to = 499) final int latency,
 											  @IntRange(from = 10, to = 3200) final int timeout,
 											  final int status) {
+			final GattRecorder recorder = BleManagerHandler.this.recorder;
+			if (recorder != null)
+				recorder.recordConnectionUpdate(SystemClock.elapsedRealtimeNanos(), status,
+						interval, latency, timeout);
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "Connection parameters updated " +
 						"(interval: " + (interval * 1.25) + "ms," +
 						" latency: " + latency + ", timeout: " + (timeout * 10) + "ms)");
 				BleManagerHandler.this.onConnectionUpdated(gatt, interval, latency, timeout);
+				if (pendingAdaptivePriority != -1) {
+					log(Log.DEBUG, "Adaptive connection priority " +
+							(pendingAdaptivePriority == ConnectionPriorityRequest.CONNECTION_PRIORITY_HIGH ?
+									"boost" : "fallback") + " confirmed");
+					pendingAdaptivePriority = -1;
+				}
 
 				// This callback may be called af any time, also when some other request is executed
 				if (request instanceof ConnectionPriorityRequest) {
@@ -2253,6 +3176,10 @@ abstract class BleManagerHandler extends RequestHandler {
 				}
 				postCallback(c -> c.onError(gatt.getDevice(), ERROR_CONNECTION_PRIORITY_REQUEST, status));
 			}
+			// A rejected boost is not retried until the connection gets idle,
+			// to avoid requesting it before every request.
+			if (status != BluetoothGatt.GATT_SUCCESS)
+				pendingAdaptivePriority = -1;
 			if (connectionPriorityOperationInProgress) {
 				connectionPriorityOperationInProgress = false;
 				checkCondition();
@@ -2265,6 +3192,9 @@ abstract class BleManagerHandler extends RequestHandler {
 		public final void onPhyUpdate(@NonNull final BluetoothGatt gatt,
 									  @PhyValue final int txPhy, @PhyValue final int rxPhy,
 									  final int status) {
+			final GattRecorder recorder = BleManagerHandler.this.recorder;
+			if (recorder != null)
+				recorder.recordPhy(SystemClock.elapsedRealtimeNanos(), status, txPhy, rxPhy);
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "PHY updated (TX: " + ParserUtils.phyToString(txPhy) +
 						", RX: " + ParserUtils.phyToString(rxPhy) + ")");
@@ -2292,6 +3222,9 @@ abstract class BleManagerHandler extends RequestHandler {
 		public final void onPhyRead(@NonNull final BluetoothGatt gatt,
 									@PhyValue final int txPhy, @PhyValue final int rxPhy,
 									final int status) {
+			final GattRecorder recorder = BleManagerHandler.this.recorder;
+			if (recorder != null)
+				recorder.recordPhy(SystemClock.elapsedRealtimeNanos(), status, txPhy, rxPhy);
 			if (status == BluetoothGatt.GATT_SUCCESS) {
 				log(Log.INFO, "PHY read (TX: " + ParserUtils.phyToString(txPhy) +
 						", RX: " + ParserUtils.phyToString(rxPhy) + ")");
@@ -2332,7 +3265,7 @@ abstract class BleManagerHandler extends RequestHandler {
 			checkCondition();
 			nextRequest(true);
 		}
-	};
+	}
 
 	private int mapDisconnectStatusToReason(final int status) {
 		switch (status) {
@@ -2373,9 +3306,18 @@ abstract class BleManagerHandler extends RequestHandler {
 			waitForReadRequest.setDataIfNull(data);
 			data = waitForReadRequest.getData(mtu);
 		}
-		// If data are longer than MTU - 1, cut the array. Only ATT_MTU - 1 bytes can be sent in Long Read.
-		if (data != null && data.length > mtu - 1) {
-			data = Bytes.copy(data, offset, mtu - 1);
+		if (waitForReadRequest != null) {
+			// If data are longer than MTU - 1, cut the array. Only ATT_MTU - 1 bytes can be sent in Long Read.
+			if (data != null && data.length > mtu - 1) {
+				data = Bytes.copy(data, offset, mtu - 1);
+			}
+		} else {
+			// Parts of a Long Read are served from a snapshot of the value taken on the first read.
+			data = longReads.read(characteristic, offset, data, mtu - 1);
+			if (data == LongReadSnapshots.INVALID_OFFSET) {
+				sendResponse(server, device, BluetoothGatt.GATT_INVALID_OFFSET, requestId, offset, null);
+				return;
+			}
 		}
 
 		sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, data);
@@ -2410,30 +3352,22 @@ abstract class BleManagerHandler extends RequestHandler {
 					+ " received, value: " + ParserUtils.parse(value));
 		}
 
-		if (responseNeeded) {
-			sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, value);
-		}
-
 		// If Prepare Write or Long Write is sent, store the data in a temporary queue until it's executed.
 		if (preparedWrite) {
 			if (preparedValues == null) {
-				preparedValues = new LinkedList<>();
+				preparedValues = new PreparedWriteQueue();
 			}
-			if (offset == 0) {
-				// Add new value to the operations.
-				preparedValues.offer(new Pair<>(characteristic, value));
-			} else {
-				// Concatenate the value to the end of previous value, if the previous request was
-				// also for the same characteristic.
-				final Pair<Object, byte[]> last = preparedValues.peekLast();
-				if (last != null && characteristic.equals(last.first)) {
-					preparedValues.pollLast();
-					preparedValues.offer(new Pair<>(characteristic, Bytes.concat(last.second, value, offset)));
-				} else {
-					prepareError = BluetoothGatt.GATT_INVALID_OFFSET;
-				}
+			// The value is assembled in place. Only a full queue is reported in the response,
+			// invalid offsets and lengths are reported when the queue is executed.
+			final int status = preparedValues.add(characteristic, offset, value);
+			if (responseNeeded) {
+				sendResponse(server, device, status, requestId, offset,
+						status == BluetoothGatt.GATT_SUCCESS ? value : null);
 			}
 		} else {
+			if (responseNeeded) {
+				sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, value);
+			}
 			// Otherwise, save the data immediately.
 			if (assignAndNotify(device, characteristic, value) || checkCondition()) {
 				nextRequest(true);
@@ -2463,9 +3397,18 @@ abstract class BleManagerHandler extends RequestHandler {
 			waitForReadRequest.setDataIfNull(data);
 			data = waitForReadRequest.getData(mtu);
 		}
-		// If data are longer than MTU - 1, cut the array. Only ATT_MTU - 1 bytes can be sent in Long Read.
-		if (data != null && data.length > mtu - 1) {
-			data = Bytes.copy(data, offset, mtu - 1);
+		if (waitForReadRequest != null) {
+			// If data are longer than MTU - 1, cut the array. Only ATT_MTU - 1 bytes can be sent in Long Read.
+			if (data != null && data.length > mtu - 1) {
+				data = Bytes.copy(data, offset, mtu - 1);
+			}
+		} else {
+			// Parts of a Long Read are served from a snapshot of the value taken on the first read.
+			data = longReads.read(descriptor, offset, data, mtu - 1);
+			if (data == LongReadSnapshots.INVALID_OFFSET) {
+				sendResponse(server, device, BluetoothGatt.GATT_INVALID_OFFSET, requestId, offset, null);
+				return;
+			}
 		}
 
 		sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, data);
@@ -2500,30 +3443,22 @@ abstract class BleManagerHandler extends RequestHandler {
 					+ " received, value: " + ParserUtils.parse(value));
 		}
 
-		if (responseNeeded) {
-			sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, value);
-		}
-
 		// If Prepare Write or Long Write is sent, store the data in a temporary queue until it's executed.
 		if (preparedWrite) {
 			if (preparedValues == null) {
-				preparedValues = new LinkedList<>();
+				preparedValues = new PreparedWriteQueue();
 			}
-			if (offset == 0) {
-				// Add new value to the operations.
-				preparedValues.offer(new Pair<>(descriptor, value));
-			} else {
-				// Concatenate the value to the end of previous value, if the previous request was
-				// also for the same descriptor.
-				final Pair<Object, byte[]> last = preparedValues.peekLast();
-				if (last != null && descriptor.equals(last.first)) {
-					preparedValues.pollLast();
-					preparedValues.offer(new Pair<>(descriptor, Bytes.concat(last.second, value, offset)));
-				} else {
-					prepareError = BluetoothGatt.GATT_INVALID_OFFSET;
-				}
+			// The value is assembled in place. Only a full queue is reported in the response,
+			// invalid offsets and lengths are reported when the queue is executed.
+			final int status = preparedValues.add(descriptor, offset, value);
+			if (responseNeeded) {
+				sendResponse(server, device, status, requestId, offset,
+						status == BluetoothGatt.GATT_SUCCESS ? value : null);
 			}
 		} else {
+			if (responseNeeded) {
+				sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, offset, value);
+			}
 			// Otherwise, save the data immediately.
 			if (assignAndNotify(device, descriptor, value) || checkCondition()) {
 				nextRequest(true);
@@ -2536,27 +3471,28 @@ abstract class BleManagerHandler extends RequestHandler {
 							  final boolean execute) {
 		log(Log.DEBUG, "[Server callback] Execute write request (requestId=" + requestId + ", execute=" + execute + ")");
 		if (execute) {
-			final Deque<Pair<Object, byte[]>> values = preparedValues;
+			final PreparedWriteQueue values = preparedValues;
 			log(Log.INFO, "[Server] Execute write request received");
 			preparedValues = null;
-			if (prepareError != 0) {
-				sendResponse(server, device, prepareError, requestId, 0, null);
-				prepareError = 0;
+			// No value is written if any of the prepared values is invalid.
+			final int status = values != null ? values.validate() : BluetoothGatt.GATT_SUCCESS;
+			sendResponse(server, device, status, requestId, 0, null);
+
+			if (status != BluetoothGatt.GATT_SUCCESS) {
+				log(Log.WARN, "[Server] Prepared values rejected (status: " + status + ")");
 				return;
 			}
-			sendResponse(server, device, BluetoothGatt.GATT_SUCCESS, requestId, 0, null);
-
 			if (values == null || values.isEmpty()) {
 				return;
 			}
 			boolean startNextRequest = false;
-			for (final Pair<Object, byte[]> value: values) {
-				if (value.first instanceof BluetoothGattCharacteristic) {
-					final BluetoothGattCharacteristic characteristic = (BluetoothGattCharacteristic) value.first;
-					startNextRequest = assignAndNotify(device, characteristic, value.second) || startNextRequest;
-				} else if (value.first instanceof BluetoothGattDescriptor){
-					final BluetoothGattDescriptor descriptor = (BluetoothGattDescriptor) value.first;
-					startNextRequest = assignAndNotify(device, descriptor, value.second) || startNextRequest;
+			for (final PreparedWriteQueue.Entry value: values.getEntries()) {
+				if (value.attribute instanceof BluetoothGattCharacteristic) {
+					final BluetoothGattCharacteristic characteristic = (BluetoothGattCharacteristic) value.attribute;
+					startNextRequest = assignAndNotify(device, characteristic, value.getValue()) || startNextRequest;
+				} else if (value.attribute instanceof BluetoothGattDescriptor){
+					final BluetoothGattDescriptor descriptor = (BluetoothGattDescriptor) value.attribute;
+					startNextRequest = assignAndNotify(device, descriptor, value.getValue()) || startNextRequest;
 				}
 			}
 			if (checkCondition() || startNextRequest) {
@@ -2591,6 +3527,10 @@ abstract class BleManagerHandler extends RequestHandler {
 							@NonNull final BluetoothDevice device,
 							final int mtu) {
 		log(Log.INFO, "[Server] MTU changed to: " + mtu);
+		final GattRecorder recorder = this.recorder;
+		if (recorder != null)
+			recorder.recordMtu(SystemClock.elapsedRealtimeNanos(),
+					GattEvent.DIRECTION_INCOMING, BluetoothGatt.GATT_SUCCESS, mtu);
 		BleManagerHandler.this.mtu = mtu;
 		checkCondition();
 		nextRequest(false);
@@ -2608,6 +3548,10 @@ abstract class BleManagerHandler extends RequestHandler {
 					break;
 			}
 			//noinspection ConstantConditions
+			record(wr.type == Request.Type.INDICATE ? GattEvent.TYPE_INDICATION : GattEvent.TYPE_NOTIFICATION,
+					GattEvent.DIRECTION_OUTGOING, BluetoothGatt.GATT_SUCCESS,
+					wr.characteristic, wr.characteristic.getValue());
+			//noinspection ConstantConditions
 			wr.notifyPacketSent(device, wr.characteristic.getValue());
 			if (wr.hasMore()) {
 				enqueueFirst(wr);
@@ -2626,10 +3570,12 @@ abstract class BleManagerHandler extends RequestHandler {
 		} else {
 			characteristicValues.put(characteristic, value);
 		}
+		record(GattEvent.TYPE_WRITE, GattEvent.DIRECTION_INCOMING, BluetoothGatt.GATT_SUCCESS,
+				characteristic, value);
 		// Notify listener
 		ValueChangedCallback callback;
 		if ((callback = valueChangedCallbacks.get(characteristic)) != null) {
-			callback.notifyValueChanged(device, value);
+			callback.notifyValueChanged(device, value, SystemClock.elapsedRealtimeNanos());
 		}
 
 		// Check if a request awaits,
@@ -2668,10 +3614,13 @@ abstract class BleManagerHandler extends RequestHandler {
 		} else {
 			descriptorValues.put(descriptor, value);
 		}
+		updateNotificationState(descriptor, value);
+		record(GattEvent.TYPE_WRITE, GattEvent.DIRECTION_INCOMING, BluetoothGatt.GATT_SUCCESS,
+				descriptor, value);
 		// Notify listener
 		ValueChangedCallback callback;
 		if ((callback = valueChangedCallbacks.get(descriptor)) != null) {
-			callback.notifyValueChanged(device, value);
+			callback.notifyValueChanged(device, value, SystemClock.elapsedRealtimeNanos());
 		}
 
 		// Check if a request awaits,
@@ -2710,6 +3659,8 @@ abstract class BleManagerHandler extends RequestHandler {
 			case BluetoothGatt.GATT_SUCCESS: 				msg = "GATT_SUCCESS"; break;
 			case BluetoothGatt.GATT_REQUEST_NOT_SUPPORTED: 	msg = "GATT_REQUEST_NOT_SUPPORTED"; break;
 			case BluetoothGatt.GATT_INVALID_OFFSET: 		msg = "GATT_INVALID_OFFSET"; break;
+			case GattError.GATT_PREPARE_Q_FULL: 			msg = "GATT_PREPARE_Q_FULL"; break;
+			case GattError.GATT_INVALID_ATTR_LEN: 			msg = "GATT_INVALID_ATTR_LEN"; break;
 			default: throw new InvalidParameterException();
 		}
 		log(Log.DEBUG, "server.sendResponse(" + msg + ", offset=" + offset + ", value=" + ParserUtils.parseDebug(response) + ")");
@@ -2776,6 +3727,7 @@ abstract class BleManagerHandler extends RequestHandler {
 				// will not start new nextRequest() call.
 				operationInProgress = true;
 				ready = true;
+				startLinkMonitor();
 				onDeviceReady();
 				final BluetoothDevice device = bluetoothGatt.getDevice();
 				postCallback(c -> c.onDeviceReady(device));
@@ -2784,6 +3736,7 @@ abstract class BleManagerHandler extends RequestHandler {
 					connectRequest.notifySuccess(connectRequest.getDevice());
 					connectRequest = null;
 				}
+				resumeRequests(bluetoothGatt);
 			}
 			// If so, we can continue with the task queue
 			try {
@@ -2792,6 +3745,10 @@ abstract class BleManagerHandler extends RequestHandler {
 				// No more tasks to perform
 				operationInProgress = false;
 				this.request = null;
+				if (boosted && !boostIdleScheduled) {
+					boostIdleScheduled = true;
+					postInternalDelayed(boostIdleTask, boostIdleTimeout);
+				}
 				onManagerReady();
 				return;
 			}
@@ -2800,6 +3757,10 @@ abstract class BleManagerHandler extends RequestHandler {
 		boolean result = false;
 		operationInProgress = true;
 		this.request = request;
+		adaptConnectionPriority(request);
+		final LinkMonitor linkMonitor = this.linkMonitor;
+		if (linkMonitor != null)
+			linkMonitor.onOperation();
 
 		if (request instanceof AwaitingRequest) {
 			final AwaitingRequest r = (AwaitingRequest) request;
@@ -2948,9 +3909,10 @@ abstract class BleManagerHandler extends RequestHandler {
 			case SET_DESCRIPTOR_VALUE: {
 				final SetValueRequest svr = (SetValueRequest) request;
 				if (svr.descriptor != null) {
-					if (descriptorValues != null && descriptorValues.containsKey(svr.descriptor))
+					if (descriptorValues != null && descriptorValues.containsKey(svr.descriptor)) {
 						descriptorValues.put(svr.descriptor, svr.getData(mtu));
-					else
+						updateNotificationState(svr.descriptor, svr.getData(mtu));
+					} else
 						svr.descriptor.setValue(svr.getData(mtu));
 					result = true;
 					svr.notifySuccess(bluetoothDevice);
@@ -3039,7 +4001,7 @@ abstract class BleManagerHandler extends RequestHandler {
 					// called in any case.
 					if (result) {
 						final BluetoothDevice device = bluetoothDevice;
-						postDelayed(() -> {
+						postInternalDelayed(() -> {
 							if (cpr.notifySuccess(device)) {
 								connectionPriorityOperationInProgress = false;
 								nextRequest(true);
@@ -3091,7 +4053,7 @@ abstract class BleManagerHandler extends RequestHandler {
 				result = internalRefreshDeviceCache();
 				if (result) {
 					final BluetoothDevice device = bluetoothDevice;
-					postDelayed(() -> {
+					postInternalDelayed(() -> {
 						log(Log.INFO, "Cache refreshed");
 						r.notifySuccess(device);
 						this.request = null;
@@ -3118,7 +4080,7 @@ abstract class BleManagerHandler extends RequestHandler {
 				if (device != null) {
 					final SleepRequest sr = (SleepRequest) request;
 					log(Log.DEBUG, "sleep(" + sr.getDelay() + ")");
-					postDelayed(() -> {
+					postInternalDelayed(() -> {
 						sr.notifySuccess(device);
 						nextRequest(true);
 					}, sr.getDelay());
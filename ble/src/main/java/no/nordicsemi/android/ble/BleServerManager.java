@@ -10,14 +10,22 @@ import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothManager;
 import android.content.Context;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -26,6 +34,7 @@ import androidx.annotation.StringRes;
 import no.nordicsemi.android.ble.annotation.CharacteristicPermissions;
 import no.nordicsemi.android.ble.annotation.CharacteristicProperties;
 import no.nordicsemi.android.ble.annotation.DescriptorPermissions;
+import no.nordicsemi.android.ble.callback.NotificationFanOutCallback;
 import no.nordicsemi.android.ble.observer.ServerObserver;
 import no.nordicsemi.android.ble.data.Data;
 import no.nordicsemi.android.ble.utils.ILogger;
@@ -44,7 +53,17 @@ public abstract class BleServerManager implements ILogger {
 	/** Bluetooth GATT server instance, or null if not opened. */
 	private BluetoothGattServer server;
 
-	private final List<BleManager> managers = new ArrayList<>();
+	private final List<BleManager> managers = new CopyOnWriteArrayList<>();
+	/**
+	 * Managers by the address of the connected client, to find the manager handling
+	 * a server callback without scanning the list of managers.
+	 */
+	private final Map<String, BleManager> routes = new ConcurrentHashMap<>();
+	/**
+	 * Addresses of clients for which no manager was found, so that callbacks from them
+	 * don't scan the list of managers again. Cleared when a manager is added or bound.
+	 */
+	private final Set<String> unrouted = Collections.newSetFromMap(new ConcurrentHashMap<>());
 	private final Context context;
 	private ServerObserver serverObserver;
 
@@ -55,8 +74,9 @@ public abstract class BleServerManager implements ILogger {
 	 */
 	private Queue<BluetoothGattService> serverServices;
 
-	private List<BluetoothGattCharacteristic> sharedCharacteristics;
-	private List<BluetoothGattDescriptor> sharedDescriptors;
+	private Set<BluetoothGattCharacteristic> sharedCharacteristics;
+	private Set<BluetoothGattDescriptor> sharedDescriptors;
+
 
 	public BleServerManager(@NonNull final Context context) {
 		this.context = context;
@@ -115,6 +135,8 @@ public abstract class BleServerManager implements ILogger {
 			manager.close();
 		}
 		managers.clear();
+		routes.clear();
+		unrouted.clear();
 	}
 
 	/**
@@ -126,6 +148,69 @@ public abstract class BleServerManager implements ILogger {
 		this.serverObserver = observer;
 	}
 
+	/**
+	 * Sends the value as a notification to all connected clients which have enabled
+	 * notifications on the given characteristic.
+	 * <p>
+	 * The value is copied once and split into packets according to each client's MTU,
+	 * with packets shared between clients with the same MTU. A notification request is
+	 * enqueued on each client's own queue, so the clients are sent to independently of
+	 * each other. Whether a client has enabled notifications is checked when this method
+	 * is called.
+	 *
+	 * @param characteristic the server characteristic to notify.
+	 * @param data           the value to send.
+	 * @param callback       an optional callback reporting each client's completion.
+	 * @return The fan-out, which may be used to get the results.
+	 */
+	@NonNull
+	public final NotificationFanOut notifyAll(@NonNull final BluetoothGattCharacteristic characteristic,
+											  @Nullable final byte[] data,
+											  @Nullable final NotificationFanOutCallback callback) {
+		final List<BleManager> clients = new ArrayList<>(managers.size());
+		for (final BleManager manager : managers) {
+			if (manager.isConnected() && manager.getBluetoothDevice() != null)
+				clients.add(manager);
+		}
+		final byte[] value = data != null ? data.clone() : new byte[0];
+		final NotificationFanOut fanOut = new NotificationFanOut(value, clients.size(),
+				SystemClock.elapsedRealtime(), callback);
+		if (clients.isEmpty()) {
+			if (callback != null)
+				callback.onFanOutCompleted(fanOut);
+			return fanOut;
+		}
+		for (final BleManager manager : clients) {
+			if (!manager.requestHandler.isNotificationEnabled(characteristic)) {
+				//noinspection ConstantConditions
+				fanOut.onSkipped(manager.getBluetoothDevice());
+				continue;
+			}
+			new WriteRequest(Request.Type.NOTIFY, characteristic, value)
+					.split(fanOut.splitter)
+					.setRequestHandler(manager.requestHandler)
+					.done(d -> fanOut.onSent(d, SystemClock.elapsedRealtime()))
+					.fail((d, status) -> fanOut.onFailed(d, status))
+					.enqueue();
+		}
+		return fanOut;
+	}
+
+	/**
+	 * Sends the value as a notification to all connected clients which have enabled
+	 * notifications on the given characteristic.
+	 *
+	 * @param characteristic the server characteristic to notify.
+	 * @param data           the value to send.
+	 * @return The fan-out, which may be used to get the results.
+	 * @see #notifyAll(BluetoothGattCharacteristic, byte[], NotificationFanOutCallback)
+	 */
+	@NonNull
+	public final NotificationFanOut notifyAll(@NonNull final BluetoothGattCharacteristic characteristic,
+											  @Nullable final byte[] data) {
+		return notifyAll(characteristic, data, null);
+	}
+
 	/**
 	 * Returns the {@link BluetoothGattServer} instance.
 	 */
@@ -142,6 +227,23 @@ public abstract class BleServerManager implements ILogger {
 		if (!managers.contains(manager)) {
 			managers.add(manager);
 		}
+		unrouted.clear();
+		final BluetoothDevice device = manager.getBluetoothDevice();
+		if (device != null)
+			addRoute(device, manager);
+	}
+
+	/**
+	 * Routes server callbacks from the given device to the manager. This is called when
+	 * the manager gets bound to the device, which may happen after the device has
+	 * connected to the server.
+	 *
+	 * @param device  the device.
+	 * @param manager the manager handling the device.
+	 */
+	final void addRoute(@NonNull final BluetoothDevice device, @NonNull final BleManager manager) {
+		routes.put(device.getAddress(), manager);
+		unrouted.remove(device.getAddress());
 	}
 
 	/**
@@ -150,6 +252,11 @@ public abstract class BleServerManager implements ILogger {
 	 */
 	final void removeManager(@NonNull final BleManager manager) {
 		managers.remove(manager);
+		final Iterator<BleManager> iterator = routes.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next() == manager)
+				iterator.remove();
+		}
 	}
 
 	final boolean isShared(@NonNull final BluetoothGattCharacteristic characteristic) {
@@ -162,9 +269,32 @@ public abstract class BleServerManager implements ILogger {
 
 	@Nullable
 	private BleManagerHandler getRequestHandler(@NonNull final BluetoothDevice device) {
+		final String address = device.getAddress();
+		final BleManager route = routes.get(address);
+		// The manager may have been reused for another device since the route was added.
+		if (route != null && device.equals(route.getBluetoothDevice())) {
+			return route.requestHandler;
+		}
+		if (route == null && unrouted.contains(address)) {
+			return null;
+		}
+		final BleManager manager = findManager(device);
+		if (manager != null) {
+			routes.put(address, manager);
+			return manager.requestHandler;
+		}
+		if (route != null) {
+			routes.remove(address);
+		}
+		unrouted.add(address);
+		return null;
+	}
+
+	@Nullable
+	private BleManager findManager(@NonNull final BluetoothDevice device) {
 		for (final BleManager manager : managers) {
 			if (device.equals(manager.getBluetoothDevice())) {
-				return manager.requestHandler;
+				return manager;
 			}
 		}
 		return null;
@@ -428,7 +558,7 @@ public abstract class BleServerManager implements ILogger {
 																	 final BluetoothGattDescriptor... descriptors) {
 		final BluetoothGattCharacteristic characteristic = characteristic(uuid, properties, permissions, initialValue, descriptors);
 		if (sharedCharacteristics == null)
-			sharedCharacteristics = new ArrayList<>();
+			sharedCharacteristics = Collections.newSetFromMap(new IdentityHashMap<>());
 		sharedCharacteristics.add(characteristic);
 		return characteristic;
 	}
@@ -565,7 +695,7 @@ public abstract class BleServerManager implements ILogger {
 															 @Nullable final byte[] initialValue) {
 		final BluetoothGattDescriptor descriptor = descriptor(uuid, permissions, initialValue);
 		if (sharedDescriptors == null)
-			sharedDescriptors = new ArrayList<>();
+			sharedDescriptors = Collections.newSetFromMap(new IdentityHashMap<>());
 		sharedDescriptors.add(descriptor);
 		return descriptor;
 	}
@@ -648,7 +778,7 @@ public abstract class BleServerManager implements ILogger {
 				description != null ? description.getBytes() : null);
 		if (!writableAuxiliaries) {
 			if (sharedDescriptors == null)
-				sharedDescriptors = new ArrayList<>();
+				sharedDescriptors = Collections.newSetFromMap(new IdentityHashMap<>());
 			sharedDescriptors.add(cud);
 		}
 		return cud;
@@ -677,6 +807,10 @@ public abstract class BleServerManager implements ILogger {
 		public void onConnectionStateChange(@NonNull final BluetoothDevice device, final int status, final int newState) {
 			if (status == BluetoothGatt.GATT_SUCCESS && newState == BluetoothGatt.STATE_CONNECTED) {
 				log(Log.INFO, "[Server] " + device.getAddress() + " is now connected");
+				unrouted.remove(device.getAddress());
+				final BleManager manager = findManager(device);
+				if (manager != null)
+					routes.put(device.getAddress(), manager);
 				if (serverObserver != null)
 					serverObserver.onDeviceConnectedToServer(device);
 			} else {
@@ -685,6 +819,8 @@ public abstract class BleServerManager implements ILogger {
 				} else {
 					log(Log.WARN, "[Server] " + device.getAddress() + " has disconnected connected with status: " + status);
 				}
+				routes.remove(device.getAddress());
+				unrouted.remove(device.getAddress());
 				if (serverObserver != null)
 					serverObserver.onDeviceDisconnectedFromServer(device);
 			}
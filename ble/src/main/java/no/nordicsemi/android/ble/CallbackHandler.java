@@ -31,4 +31,15 @@ interface CallbackHandler {
 	 * Remove any pending posts of Runnable r that are in the message queue.
      */
 	void removeCallbacks(@NonNull final Runnable r);
+
+	/**
+	 * Returns whether the calling thread is the thread the runnables are run on.
+	 * A task running on this thread must not wait for a runnable posted to this handler,
+	 * as it would only run after the task has returned.
+	 *
+	 * @return True, if called from the handler's thread.
+	 */
+	default boolean isCurrentThread() {
+		return false;
+	}
 }
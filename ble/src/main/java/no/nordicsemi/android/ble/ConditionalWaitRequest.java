@@ -3,6 +3,8 @@ package no.nordicsemi.android.ble;
 import android.os.Handler;
 import android.util.Log;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -48,6 +50,13 @@ public final class ConditionalWaitRequest<T> extends AwaitingRequest implements
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ConditionalWaitRequest<T> setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public ConditionalWaitRequest<T> done(@NonNull final SuccessCallback callback) {
@@ -29,13 +29,21 @@ import android.bluetooth.BluetoothGattCallback;
 import android.content.Context;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import no.nordicsemi.android.ble.annotation.PhyMask;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
 import no.nordicsemi.android.ble.callback.FailCallback;
 import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
 import no.nordicsemi.android.ble.callback.SuccessCallback;
+import no.nordicsemi.android.ble.callback.ThroughputProfileCallback;
+import no.nordicsemi.android.ble.retry.CircuitBreakerRetryPolicy;
+import no.nordicsemi.android.ble.retry.DecorrelatedJitterRetryPolicy;
+import no.nordicsemi.android.ble.retry.ExponentialBackoffRetryPolicy;
+import no.nordicsemi.android.ble.retry.RetryPolicy;
 
 /**
  * The connect request is used to connect to a Bluetooth LE device. The request will end when
@@ -56,7 +64,13 @@ public class ConnectRequest extends TimeoutableRequest {
 	private int attempt = 0, retries = 0;
 	@IntRange(from = 0)
 	private int delay = 0;
+	private int failures = 0;
+	@Nullable
+	private RetryPolicy retryPolicy;
 	private boolean autoConnect = false;
+	private boolean throughputProfile = false;
+	@Nullable
+	private ThroughputProfileCallback throughputProfileCallback;
 
 	ConnectRequest(@NonNull final Type type, @NonNull final BluetoothDevice device) {
 		super(type);
@@ -78,6 +92,13 @@ public class ConnectRequest extends TimeoutableRequest {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ConnectRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@NonNull
 	@Override
 	public ConnectRequest timeout(@IntRange(from = 0) final long timeout) {
@@ -140,6 +161,7 @@ public class ConnectRequest extends TimeoutableRequest {
 	public ConnectRequest retry(@IntRange(from = 0) final int count) {
 		this.retries = count;
 		this.delay = 0;
+		this.retryPolicy = null;
 		return this;
 	}
 
@@ -151,9 +173,9 @@ public class ConnectRequest extends TimeoutableRequest {
 	 *
 	 * @param count how many times should the BleManager retry to connect.
 	 * @param delay the delay between each connection attempt, in milliseconds.
-	 *              The real delay will be 200 ms longer than specified, as
-	 *              {@link BluetoothGatt#clone()} is estimated to last
-	 *              {@link BleManagerHandler#internalConnect(BluetoothDevice, ConnectRequest) 200 ms}.
+	 *              The real delay will be longer than specified, as the library waits for
+	 *              {@link BluetoothGatt#close()} to settle before reconnecting. The settle
+	 *              delay is 200 ms initially and is adapted for each device.
 	 * @return The request.
 	 * @see #retry(int)
 	 */
@@ -161,6 +183,28 @@ public class ConnectRequest extends TimeoutableRequest {
 								@IntRange(from = 0) final int delay) {
 		this.retries = count;
 		this.delay = delay;
+		this.retryPolicy = null;
+		return this;
+	}
+
+	/**
+	 * Sets a retry policy, which decides whether and when to retry based on the number of
+	 * failed attempts and the status of the last failure. Unlike {@link #retry(int, int)},
+	 * the policy may also retry when the connection timed out
+	 * ({@link FailCallback#REASON_TIMEOUT}).
+	 * <p>
+	 * The library provides {@link ExponentialBackoffRetryPolicy},
+	 * {@link DecorrelatedJitterRetryPolicy} and {@link CircuitBreakerRetryPolicy}.
+	 * The last one may also reject the request without any attempt, in which case it fails
+	 * with {@link FailCallback#REASON_REQUEST_FAILED}.
+	 *
+	 * @param policy the retry policy.
+	 * @return The request.
+	 */
+	public ConnectRequest retry(@NonNull final RetryPolicy policy) {
+		this.retryPolicy = policy;
+		this.retries = 0;
+		this.delay = 0;
 		return this;
 	}
 
@@ -221,6 +265,38 @@ public class ConnectRequest extends TimeoutableRequest {
 		return this;
 	}
 
+	/**
+	 * Negotiates parameters allowing the highest throughput as soon as services are
+	 * discovered, before the initialization requests are executed. The library will request
+	 * {@link ConnectionPriorityRequest#CONNECTION_PRIORITY_HIGH high connection priority},
+	 * the maximum MTU and {@link PhyRequest#PHY_LE_2M_MASK LE 2M PHY}, in that order, so that
+	 * the MTU exchange and PHY update take fewer connection events.
+	 * <p>
+	 * Features not supported by the phone or the device are skipped and do not cause the
+	 * connection to fail.
+	 *
+	 * @return The request.
+	 * @see #throughputProfile(ThroughputProfileCallback)
+	 */
+	public ConnectRequest throughputProfile() {
+		this.throughputProfile = true;
+		return this;
+	}
+
+	/**
+	 * Negotiates parameters allowing the highest throughput as soon as services are
+	 * discovered. See {@link #throughputProfile()} for details.
+	 *
+	 * @param callback the callback that will be notified with the negotiated MTU, PHY and
+	 *                 connection parameters, and the theoretical throughput they allow.
+	 * @return The request.
+	 */
+	public ConnectRequest throughputProfile(@NonNull final ThroughputProfileCallback callback) {
+		this.throughputProfile = true;
+		this.throughputProfileCallback = callback;
+		return this;
+	}
+
 	@NonNull
 	public BluetoothDevice getDevice() {
 		return device;
@@ -231,24 +307,51 @@ public class ConnectRequest extends TimeoutableRequest {
 		return preferredPhy;
 	}
 
-	boolean canRetry() {
-		if (retries > 0) {
-			retries -= 1;
-			return true;
-		}
-		return false;
+	/**
+	 * Returns the delay before the next connection attempt after a failure.
+	 *
+	 * @param status the status of the failure, or {@link FailCallback#REASON_TIMEOUT}.
+	 * @return The delay in milliseconds, or {@link RetryPolicy#NO_RETRY}.
+	 */
+	long getRetryDelay(final int status) {
+		failures++;
+		if (retryPolicy != null)
+			return retryPolicy.getRetryDelay(device, failures, status);
+		// The device is not reachable, there is no point in retrying.
+		if (status == FailCallback.REASON_TIMEOUT || retries == 0)
+			return RetryPolicy.NO_RETRY;
+		retries -= 1;
+		return delay;
+	}
+
+	boolean canAttempt() {
+		return retryPolicy == null || retryPolicy.canAttempt(device);
 	}
 
 	boolean isFirstAttempt() {
 		return attempt++ == 0;
 	}
 
-	@IntRange(from = 0)
-	int getRetryDelay() {
-		return delay;
+	@Override
+	boolean notifySuccess(@NonNull final BluetoothDevice device) {
+		if (super.notifySuccess(device)) {
+			if (retryPolicy != null)
+				retryPolicy.onSuccess(device);
+			return true;
+		}
+		return false;
 	}
 
 	boolean shouldAutoConnect() {
 		return autoConnect;
 	}
+
+	boolean shouldNegotiateThroughputProfile() {
+		return throughputProfile;
+	}
+
+	@Nullable
+	ThroughputProfileCallback getThroughputProfileCallback() {
+		return throughputProfileCallback;
+	}
 }
@@ -26,6 +26,8 @@ import android.bluetooth.BluetoothDevice;
 import android.os.Build;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
@@ -94,6 +96,13 @@ public final class ConnectionPriorityRequest extends SimpleValueRequest<Connecti
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ConnectionPriorityRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public ConnectionPriorityRequest done(@NonNull final SuccessCallback callback) {
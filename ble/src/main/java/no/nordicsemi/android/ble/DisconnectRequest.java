@@ -24,6 +24,8 @@ package no.nordicsemi.android.ble;
 
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -51,6 +53,13 @@ public class DisconnectRequest extends TimeoutableRequest {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public DisconnectRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@NonNull
 	@Override
 	public DisconnectRequest timeout(@IntRange(from = 0) final long timeout) {
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A single thread executing tasks one after another, in the order they were submitted.
+ * <p>
+ * When set using {@link BleManager#setEventLoop(EventLoop)}, all GATT callbacks and
+ * enqueued requests of the manager are handled on this thread, so the state of the manager
+ * is only ever mutated by a single thread. The same loop may be shared by several managers,
+ * e.g. ones belonging to one {@link BleConnectionPool}.
+ * <p>
+ * Tasks should return quickly, as no other event can be processed until they return.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class EventLoop implements Executor {
+	/** The time constant of the load average, in nanoseconds. */
+	private final static double LOAD_TIME_CONSTANT = 1e9;
+
+	private final ThreadPoolExecutor executor;
+	private volatile Thread thread;
+	/** The time the current task has started, written and read only by the loop thread. */
+	private long taskStart;
+	/** The time the load was last updated. */
+	private volatile long loadUpdated = System.nanoTime();
+	/** The load average at {@link #loadUpdated}. */
+	private volatile double load;
+
+	/**
+	 * Creates an event loop with a daemon thread named "BleEventLoop".
+	 */
+	public EventLoop() {
+		this("BleEventLoop");
+	}
+
+	/**
+	 * Creates an event loop with a daemon thread with the given name.
+	 *
+	 * @param name the name of the thread.
+	 */
+	public EventLoop(@NonNull final String name) {
+		executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), r -> {
+			final Thread thread = new Thread(r, name);
+			thread.setDaemon(true);
+			EventLoop.this.thread = thread;
+			return thread;
+		}) {
+			@Override
+			protected void beforeExecute(final Thread t, final Runnable r) {
+				taskStart = System.nanoTime();
+			}
+
+			@Override
+			protected void afterExecute(final Runnable r, final Throwable t) {
+				updateLoad(taskStart, System.nanoTime());
+			}
+		};
+	}
+
+	/**
+	 * Submits the task to the loop.
+	 *
+	 * @param task the task.
+	 * @throws RejectedExecutionException when the loop was shut down.
+	 */
+	@Override
+	public void execute(@NonNull final Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * Returns whether the calling thread is the thread of this loop.
+	 *
+	 * @return True, if called from the loop.
+	 */
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Returns the number of tasks waiting for execution.
+	 *
+	 * @return The number of pending tasks.
+	 */
+	public int getPendingTasks() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Returns the load of the loop, that is the fraction of time spent executing tasks,
+	 * averaged exponentially with a time constant of 1 second.
+	 *
+	 * @return The load, from 0 (idle) to 1 (always busy).
+	 */
+	public float getLoad() {
+		final long elapsed = System.nanoTime() - loadUpdated;
+		// Decay the average by the time the loop has been idle since the last task.
+		return (float) (load * Math.exp(-elapsed / LOAD_TIME_CONSTANT));
+	}
+
+	/**
+	 * Returns whether {@link #shutdown()} was called.
+	 *
+	 * @return True, if the loop no longer accepts tasks.
+	 */
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	/**
+	 * Stops the loop after all pending tasks have been executed. New tasks are rejected.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Updates the load average with a task that has been executing from start to end.
+	 * The loop was idle between the previous update and the start of the task.
+	 */
+	private void updateLoad(final long start, final long end) {
+		final long previous = loadUpdated;
+		final long idle = Math.max(0, start - previous);
+		final long busy = Math.max(0, end - Math.max(start, previous));
+		double value = load * Math.exp(-idle / LOAD_TIME_CONSTANT);
+		final double decay = Math.exp(-busy / LOAD_TIME_CONSTANT);
+		value = value * decay + (1 - decay);
+		load = value;
+		loadUpdated = end;
+	}
+}
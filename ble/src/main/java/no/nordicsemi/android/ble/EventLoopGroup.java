@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A fixed number of {@link EventLoop}s shared by many managers.
+ * <p>
+ * Each registered manager is assigned to one loop, on which its GATT callbacks, requests
+ * and request callbacks are handled, see {@link BleManager#setEventLoop(EventLoop)} and
+ * {@link BleManager#setExecutor(java.util.concurrent.Executor)}. Devices are assigned
+ * to the loop with the fewest devices, or the lowest load if there are several.
+ * All managers of the same device are assigned to the same loop, so that the callbacks
+ * of a device are delivered in order.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class EventLoopGroup {
+	private final EventLoop[] loops;
+	private final int[] assigned;
+	private final Map<String, Affinity> affinities = new HashMap<>();
+	private final Map<BleManager, Registration> registrations = new HashMap<>();
+
+	private final static class Affinity {
+		private final int index;
+		private int managers;
+
+		private Affinity(final int index) {
+			this.index = index;
+		}
+	}
+
+	/** The loop key and the settings of a manager before it was registered. */
+	private final static class Registration {
+		@NonNull
+		private final String key;
+		@Nullable
+		private final EventLoop previousEventLoop;
+		@Nullable
+		private final CallbackHandler previousExecutorHandler;
+
+		private Registration(@NonNull final String key, @NonNull final BleManager manager) {
+			this.key = key;
+			this.previousEventLoop = manager.requestHandler.getEventLoop();
+			this.previousExecutorHandler = manager.requestHandler.getExecutorHandler();
+		}
+
+		private void restore(@NonNull final BleManager manager) {
+			manager.requestHandler.setEventLoop(previousEventLoop);
+			manager.requestHandler.setExecutorHandler(previousExecutorHandler);
+		}
+	}
+
+	/**
+	 * Creates a group with one loop per available processor, but not more than 4.
+	 */
+	public EventLoopGroup() {
+		this(Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Creates a group with the given number of loops.
+	 *
+	 * @param loopCount the number of loops.
+	 */
+	public EventLoopGroup(@IntRange(from = 1) final int loopCount) {
+		if (loopCount < 1)
+			throw new IllegalArgumentException("At least one loop is required");
+		loops = new EventLoop[loopCount];
+		assigned = new int[loopCount];
+		for (int i = 0; i < loopCount; i++)
+			loops[i] = new EventLoop("BleEventLoop-" + i);
+	}
+
+	/**
+	 * Assigns the manager to a loop and sets it as the manager's event loop and executor.
+	 * This method should be called before connecting to the device.
+	 *
+	 * @param manager the manager.
+	 * @param device  the device the manager will connect to.
+	 * @return The loop assigned to the manager.
+	 */
+	@NonNull
+	public synchronized EventLoop register(@NonNull final BleManager manager,
+										   @NonNull final BluetoothDevice device) {
+		final String key = device.getAddress();
+		final Registration registration = registrations.get(manager);
+		if (registration != null) {
+			if (registration.key.equals(key))
+				return loops[affinities.get(key).index];
+			unregister(manager);
+		}
+		registrations.put(manager, new Registration(key, manager));
+		final EventLoop loop = acquire(key);
+		manager.setEventLoop(loop);
+		manager.setExecutor(loop);
+		return loop;
+	}
+
+	/**
+	 * Releases the loop assigned to the manager and restores the event loop and executor
+	 * the manager used before it was registered. This method should be called after the
+	 * manager was closed.
+	 *
+	 * @param manager the manager.
+	 */
+	public synchronized void unregister(@NonNull final BleManager manager) {
+		final Registration registration = registrations.remove(manager);
+		if (registration == null)
+			return;
+		registration.restore(manager);
+		release(registration.key);
+	}
+
+	/**
+	 * Returns the loop assigned to the managers of the given device.
+	 *
+	 * @param device the device.
+	 * @return The loop, or null if no manager of this device is registered.
+	 */
+	@Nullable
+	public EventLoop getEventLoop(@NonNull final BluetoothDevice device) {
+		return get(device.getAddress());
+	}
+
+	/**
+	 * Returns the number of loops in this group.
+	 *
+	 * @return The number of loops.
+	 */
+	public int getLoopCount() {
+		return loops.length;
+	}
+
+	/**
+	 * Returns the loop with the given index.
+	 *
+	 * @param index the index of the loop, from 0 to {@link #getLoopCount()} - 1.
+	 * @return The loop.
+	 */
+	@NonNull
+	public EventLoop getLoop(final int index) {
+		return loops[index];
+	}
+
+	/**
+	 * Returns the number of devices assigned to the loop with the given index.
+	 *
+	 * @param index the index of the loop, from 0 to {@link #getLoopCount()} - 1.
+	 * @return The number of devices with at least one registered manager.
+	 */
+	public synchronized int getDeviceCount(final int index) {
+		return assigned[index];
+	}
+
+	/**
+	 * Returns the load of the loop with the given index.
+	 *
+	 * @param index the index of the loop, from 0 to {@link #getLoopCount()} - 1.
+	 * @return The load, from 0 (idle) to 1 (always busy).
+	 * @see EventLoop#getLoad()
+	 */
+	public float getLoad(final int index) {
+		return loops[index].getLoad();
+	}
+
+	/**
+	 * Unregisters all managers, restoring their previous event loops and executors, and
+	 * stops all loops after their pending tasks have been executed.
+	 */
+	public synchronized void shutdown() {
+		for (final Map.Entry<BleManager, Registration> entry : registrations.entrySet())
+			entry.getValue().restore(entry.getKey());
+		registrations.clear();
+		affinities.clear();
+		Arrays.fill(assigned, 0);
+		for (final EventLoop loop : loops)
+			loop.shutdown();
+	}
+
+	@NonNull
+	synchronized EventLoop acquire(@NonNull final String key) {
+		Affinity affinity = affinities.get(key);
+		if (affinity == null) {
+			affinity = new Affinity(leastLoaded());
+			affinities.put(key, affinity);
+		}
+		if (affinity.managers++ == 0)
+			assigned[affinity.index]++;
+		return loops[affinity.index];
+	}
+
+	synchronized void release(@NonNull final String key) {
+		final Affinity affinity = affinities.get(key);
+		if (affinity == null)
+			return;
+		if (--affinity.managers == 0) {
+			assigned[affinity.index]--;
+			affinities.remove(key);
+		}
+	}
+
+	@Nullable
+	synchronized EventLoop get(@NonNull final String key) {
+		final Affinity affinity = affinities.get(key);
+		return affinity != null ? loops[affinity.index] : null;
+	}
+
+	private int leastLoaded() {
+		int best = 0;
+		for (int i = 1; i < loops.length; i++) {
+			if (assigned[i] < assigned[best] ||
+					(assigned[i] == assigned[best] && loops[i].getLoad() < loops[best].getLoad()))
+				best = i;
+		}
+		return best;
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link CallbackHandler} that runs tasks using an {@link Executor}.
+ * <p>
+ * Delayed tasks are scheduled on a single, shared timer thread and handed over to the
+ * executor when due. The timer thread is released when there are no delayed tasks.
+ * Only delayed tasks may be removed using {@link #removeCallbacks(Runnable)}, which, like
+ * {@link android.os.Handler#removeCallbacks(Runnable)}, removes all pending posts of the
+ * runnable; tasks already passed to the executor will run.
+ */
+final class ExecutorCallbackHandler implements CallbackHandler {
+	private static final long TIMER_KEEP_ALIVE_MILLIS = 1000;
+	private static ScheduledExecutorService timer;
+
+	private final Executor executor;
+	/** Pending delayed tasks. A runnable may be posted more than once. */
+	private final Map<Runnable, List<DelayedTask>> delayedTasks = new HashMap<>();
+
+	ExecutorCallbackHandler(@NonNull final Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public void post(@NonNull final Runnable r) {
+		executor.execute(r);
+	}
+
+	@Override
+	public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
+		final DelayedTask task = new DelayedTask(r);
+		synchronized (delayedTasks) {
+			List<DelayedTask> tasks = delayedTasks.get(r);
+			if (tasks == null) {
+				tasks = new ArrayList<>(1);
+				delayedTasks.put(r, tasks);
+			}
+			tasks.add(task);
+		}
+		task.future = getTimer().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void removeCallbacks(@NonNull final Runnable r) {
+		final List<DelayedTask> tasks;
+		synchronized (delayedTasks) {
+			tasks = delayedTasks.remove(r);
+			if (tasks == null)
+				return;
+			// A task that is due right now checks the flag under the same lock.
+			for (final DelayedTask task : tasks)
+				task.cancelled = true;
+		}
+		for (final DelayedTask task : tasks) {
+			final ScheduledFuture<?> future = task.future;
+			if (future != null)
+				future.cancel(false);
+		}
+	}
+
+	/**
+	 * Returns the number of delayed tasks waiting to be handed over to the executor.
+	 *
+	 * @return The number of pending delayed tasks.
+	 */
+	int getPendingCount() {
+		int count = 0;
+		synchronized (delayedTasks) {
+			for (final List<DelayedTask> tasks : delayedTasks.values())
+				count += tasks.size();
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isCurrentThread() {
+		return executor instanceof EventLoop && ((EventLoop) executor).inEventLoop();
+	}
+
+	@NonNull
+	private static synchronized ScheduledExecutorService getTimer() {
+		if (timer == null) {
+			final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+				final Thread thread = new Thread(r, "BleCallbackTimer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// Cancelled tasks are removed from the queue, so that the idle thread may terminate.
+			executor.setRemoveOnCancelPolicy(true);
+			executor.setKeepAliveTime(TIMER_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+			executor.allowCoreThreadTimeOut(true);
+			timer = executor;
+		}
+		return timer;
+	}
+
+	private final class DelayedTask implements Runnable {
+		private final Runnable runnable;
+		private volatile ScheduledFuture<?> future;
+		private boolean cancelled;
+
+		private DelayedTask(@NonNull final Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			synchronized (delayedTasks) {
+				if (cancelled)
+					return;
+				final List<DelayedTask> tasks = delayedTasks.get(runnable);
+				if (tasks != null) {
+					tasks.remove(this);
+					if (tasks.isEmpty())
+						delayedTasks.remove(runnable);
+				}
+			}
+			executor.execute(runnable);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Reads events from a capture file written by {@link GattRecorder}.
+ * The reader does not depend on Android APIs and may be used in JVM unit tests.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class GattCaptureReader implements Closeable {
+	private final RandomAccessFile file;
+	private final ByteBuffer buffer;
+	private final List<UUID> attributes = new ArrayList<>();
+	private final List<Integer> instanceIds = new ArrayList<>();
+	private final List<Boolean> descriptors = new ArrayList<>();
+
+	/**
+	 * Opens the capture file. The file is memory-mapped.
+	 *
+	 * @param file the capture file.
+	 * @throws IOException if the file could not be read or is not a capture file.
+	 */
+	public GattCaptureReader(@NonNull final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = this.file.getChannel();
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			readHeader();
+		} catch (final IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the capture from given buffer, starting at its current position.
+	 *
+	 * @param buffer the buffer with the capture.
+	 * @throws IOException if the buffer does not contain a capture.
+	 */
+	public GattCaptureReader(@NonNull final ByteBuffer buffer) throws IOException {
+		this.file = null;
+		this.buffer = buffer.slice();
+		readHeader();
+	}
+
+	/**
+	 * Returns the next event from the capture.
+	 *
+	 * @return The event, or null if there are no more events.
+	 * @throws IOException if the capture is corrupted.
+	 */
+	@Nullable
+	public GattEvent next() throws IOException {
+		try {
+			while (buffer.remaining() >= GattRecorder.RECORD_HEADER_LENGTH) {
+				final long timestamp = buffer.getLong();
+				final int type = buffer.get() & 0xFF;
+				final int direction = buffer.get() & 0xFF;
+				final int status = buffer.getInt();
+				final int attribute = buffer.getShort() & 0xFFFF;
+				final int length = buffer.getShort() & 0xFFFF;
+
+				if (type == GattRecorder.TYPE_END)
+					return null;
+				if (type == GattRecorder.TYPE_ATTRIBUTE) {
+					if (length != GattRecorder.ATTRIBUTE_DEFINITION_LENGTH || attribute != attributes.size())
+						throw new IOException("Invalid attribute definition: " + attribute);
+					buffer.order(ByteOrder.BIG_ENDIAN);
+					attributes.add(new UUID(buffer.getLong(), buffer.getLong()));
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+					instanceIds.add(buffer.getInt());
+					descriptors.add(status == 1);
+					continue;
+				}
+
+				UUID uuid = null;
+				int instanceId = GattEvent.NO_INSTANCE_ID;
+				boolean descriptor = false;
+				if (attribute != GattRecorder.NO_ATTRIBUTE) {
+					if (attribute >= attributes.size())
+						throw new IOException("Undefined attribute: " + attribute);
+					uuid = attributes.get(attribute);
+					instanceId = instanceIds.get(attribute);
+					descriptor = descriptors.get(attribute);
+				}
+				final byte[] value = new byte[length];
+				buffer.get(value);
+				return new GattEvent(timestamp, type, direction, status, uuid, instanceId, descriptor, value);
+			}
+			return null;
+		} catch (final BufferUnderflowException e) {
+			throw new IOException("Truncated capture", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (file != null)
+			file.close();
+	}
+
+	private void readHeader() throws IOException {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.remaining() < GattRecorder.HEADER_LENGTH
+				|| buffer.getInt() != GattRecorder.MAGIC)
+			throw new IOException("Not a capture file");
+		final int version = buffer.get() & 0xFF;
+		if (version != GattRecorder.VERSION)
+			throw new IOException("Unsupported capture version: " + version);
+		buffer.position(buffer.position() + 3);
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.annotation.GattEventType;
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * A single ATT-level event read from a capture file using {@link GattCaptureReader}.
+ *
+ * @see GattRecorder
+ * @see GattReplayer
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class GattEvent {
+	/** A value was read from a remote characteristic or descriptor, or by a remote client. */
+	public static final int TYPE_READ = 1;
+	/** A value was written to a remote characteristic or descriptor, or by a remote client. */
+	public static final int TYPE_WRITE = 2;
+	/** A notification was received or sent. */
+	public static final int TYPE_NOTIFICATION = 3;
+	/** An indication was received or sent. */
+	public static final int TYPE_INDICATION = 4;
+	/** The MTU has changed. The value contains the MTU as UINT16. */
+	public static final int TYPE_MTU = 5;
+	/** The PHY was read or updated. The value contains the TX and RX PHY, 1 byte each. */
+	public static final int TYPE_PHY = 6;
+	/**
+	 * The connection parameters were updated. The value contains the interval, latency and
+	 * supervision timeout, as UINT16 each.
+	 */
+	public static final int TYPE_CONNECTION_UPDATE = 7;
+
+	/**
+	 * The value was received from the remote device, e.g. a read response, a notification,
+	 * or a write from a remote client. Used also for MTU, PHY and connection updates.
+	 */
+	public static final int DIRECTION_INCOMING = 0;
+	/** The value was sent to the remote device, e.g. a write or a notification sent by the server. */
+	public static final int DIRECTION_OUTGOING = 1;
+
+	/** The instance ID of the attribute was not recorded. */
+	public static final int NO_INSTANCE_ID = -1;
+
+	private final long timestamp;
+	private final int type;
+	private final int direction;
+	private final int status;
+	private final UUID uuid;
+	private final int instanceId;
+	private final boolean descriptor;
+	private final byte[] value;
+
+	GattEvent(final long timestamp, @GattEventType final int type, final int direction,
+			  final int status, @Nullable final UUID uuid, final int instanceId,
+			  final boolean descriptor, @NonNull final byte[] value) {
+		this.timestamp = timestamp;
+		this.type = type;
+		this.direction = direction;
+		this.status = status;
+		this.uuid = uuid;
+		this.instanceId = instanceId;
+		this.descriptor = descriptor;
+		this.value = value;
+	}
+
+	/**
+	 * Returns the time the event was recorded, in
+	 * {@link android.os.SystemClock#elapsedRealtimeNanos()} time base.
+	 *
+	 * @return The timestamp in nanoseconds.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Returns the event type, one of the TYPE_* constants.
+	 *
+	 * @return The event type.
+	 */
+	@GattEventType
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Returns whether the value was received from the remote device
+	 * ({@link #DIRECTION_INCOMING}) or sent to it ({@link #DIRECTION_OUTGOING}).
+	 *
+	 * @return The direction.
+	 */
+	public int getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns the GATT status of the operation.
+	 *
+	 * @return The status, 0 if the operation has succeeded.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the UUID of the characteristic or descriptor, if the event refers to one.
+	 *
+	 * @return The UUID, or null for MTU, PHY and connection parameter events.
+	 */
+	@Nullable
+	public UUID getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * Returns the instance ID of the characteristic, which distinguishes characteristics with
+	 * the same UUID. For descriptors, this is the instance ID of the characteristic the
+	 * descriptor belongs to.
+	 *
+	 * @return The instance ID, or {@link #NO_INSTANCE_ID} if not known.
+	 */
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	/**
+	 * Returns whether the UUID is a descriptor UUID.
+	 *
+	 * @return True if the event refers to a descriptor, false otherwise.
+	 */
+	public boolean isDescriptor() {
+		return descriptor;
+	}
+
+	/**
+	 * Returns the value.
+	 *
+	 * @return The value, empty if there was none.
+	 */
+	@NonNull
+	public Data getValue() {
+		return new Data(value);
+	}
+
+	@Override
+	public String toString() {
+		return "GattEvent{" +
+				"timestamp=" + timestamp +
+				", type=" + type +
+				", direction=" + direction +
+				", status=" + status +
+				", uuid=" + uuid +
+				(instanceId != NO_INSTANCE_ID ? " #" + instanceId : "") +
+				(descriptor ? " (descriptor)" : "") +
+				", value=" + getValue() +
+				'}';
+	}
+
+	@NonNull
+	byte[] getRawValue() {
+		return value;
+	}
+}
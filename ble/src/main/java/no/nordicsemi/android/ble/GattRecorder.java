@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.annotation.GattEventType;
+
+/**
+ * Records ATT-level events to a compact binary capture file, which may be read using
+ * {@link GattCaptureReader} and replayed using {@link GattReplayer}, also in JVM unit tests.
+ * <p>
+ * Set the recorder using {@link BleManager#setRecorder(GattRecorder)}. Reads, writes,
+ * notifications, indications, MTU, PHY and connection parameter updates are recorded with
+ * their timestamps, both for the client and the server connection.
+ * <p>
+ * The file is written through a memory-mapped buffer, so recording does not block the
+ * thread delivering GATT events on disk I/O. The file is mapped in chunks and truncated to
+ * the recorded length when the recorder is closed.
+ *
+ * <h2>Format</h2>
+ * All numbers are Little Endian. The file starts with an 8-byte header: the ASCII "BLEC"
+ * magic, a version byte and 3 reserved bytes. Each record has the following format:
+ * <pre>
+ * timestamp (8) | type (1) | direction (1) | status (4) | attribute (2) | length (2) | value
+ * </pre>
+ * The attribute is an index of an attribute defined earlier in the file, or 0xFFFF if none.
+ * An attribute is defined, before its first use, by a record of type 0x7F, where the status
+ * is 1 for descriptors and 0 for characteristics and the value contains the 128-bit
+ * UUID, most significant bits first, followed by the instance ID as a signed 32-bit integer.
+ * For descriptors, the instance ID of the characteristic they belong to is recorded.
+ * The instance ID is {@link GattEvent#NO_INSTANCE_ID} if it was not known.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class GattRecorder implements Closeable {
+	private static final String TAG = "GattRecorder";
+	static final int MAGIC = 0x43454C42; // "BLEC" in Little Endian
+	static final int VERSION = 2;
+	static final int HEADER_LENGTH = 8;
+	static final int RECORD_HEADER_LENGTH = 18;
+	static final int ATTRIBUTE_DEFINITION_LENGTH = 20;
+	static final int TYPE_END = 0;
+	static final int TYPE_ATTRIBUTE = 0x7F;
+	static final int NO_ATTRIBUTE = 0xFFFF;
+	private static final int CHUNK_SIZE = 256 * 1024;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final Map<AttributeKey, Integer> attributes = new HashMap<>();
+	private MappedByteBuffer buffer;
+	private long bufferPosition;
+	private boolean closed;
+
+	/** A characteristic or descriptor, identified by the UUID and the instance ID. */
+	private final static class AttributeKey {
+		private final UUID uuid;
+		private final int instanceId;
+		private final boolean descriptor;
+
+		private AttributeKey(@NonNull final UUID uuid, final int instanceId, final boolean descriptor) {
+			this.uuid = uuid;
+			this.instanceId = instanceId;
+			this.descriptor = descriptor;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) return true;
+			if (!(o instanceof AttributeKey)) return false;
+			final AttributeKey other = (AttributeKey) o;
+			return instanceId == other.instanceId && descriptor == other.descriptor
+					&& uuid.equals(other.uuid);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(uuid, instanceId, descriptor);
+		}
+	}
+
+	/**
+	 * Creates a recorder writing to given file. An existing file is overwritten.
+	 *
+	 * @param file the capture file.
+	 * @throws IOException if the file could not be created.
+	 */
+	public GattRecorder(@NonNull final File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		this.channel = this.file.getChannel();
+		channel.truncate(0);
+		map(0, CHUNK_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.put((byte) VERSION);
+		buffer.put(new byte[3]);
+	}
+
+	/**
+	 * Returns whether the recorder is open. The recorder closes itself when writing fails,
+	 * for example because there is no space left.
+	 *
+	 * @return True, if events are being recorded.
+	 */
+	public synchronized boolean isRecording() {
+		return !closed;
+	}
+
+	/**
+	 * Returns the number of bytes recorded so far, including the header.
+	 *
+	 * @return The capture length.
+	 */
+	public synchronized long getLength() {
+		return closed ? 0 : bufferPosition + buffer.position();
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @param timestamp  the event time, in {@link android.os.SystemClock#elapsedRealtimeNanos()}
+	 *                   time base.
+	 * @param type       the event type.
+	 * @param direction  the event direction, see {@link GattEvent#DIRECTION_INCOMING}.
+	 * @param status     the GATT status.
+	 * @param uuid       the attribute UUID, or null.
+	 * @param instanceId the instance ID of the characteristic, or the characteristic the
+	 *                   descriptor belongs to, or {@link GattEvent#NO_INSTANCE_ID}.
+	 * @param descriptor whether the UUID is a descriptor UUID.
+	 * @param value      the value.
+	 */
+	synchronized void record(final long timestamp, @GattEventType final int type,
+							 final int direction, final int status,
+							 @Nullable final UUID uuid, final int instanceId,
+							 final boolean descriptor, @Nullable final byte[] value) {
+		if (closed)
+			return;
+		try {
+			int attribute = NO_ATTRIBUTE;
+			if (uuid != null) {
+				final AttributeKey key = new AttributeKey(uuid, instanceId, descriptor);
+				final Integer index = attributes.get(key);
+				if (index == null) {
+					attribute = attributes.size();
+					attributes.put(key, attribute);
+					ensureCapacity(RECORD_HEADER_LENGTH + ATTRIBUTE_DEFINITION_LENGTH);
+					putHeader(timestamp, TYPE_ATTRIBUTE, 0, descriptor ? 1 : 0, attribute,
+							ATTRIBUTE_DEFINITION_LENGTH);
+					buffer.order(ByteOrder.BIG_ENDIAN);
+					buffer.putLong(uuid.getMostSignificantBits());
+					buffer.putLong(uuid.getLeastSignificantBits());
+					buffer.order(ByteOrder.LITTLE_ENDIAN);
+					buffer.putInt(instanceId);
+				} else {
+					attribute = index;
+				}
+			}
+			final int length = value != null ? Math.min(value.length, 0xFFFF) : 0;
+			ensureCapacity(RECORD_HEADER_LENGTH + length);
+			putHeader(timestamp, type, direction, status, attribute, length);
+			if (length > 0)
+				buffer.put(value, 0, length);
+		} catch (final IOException | RuntimeException e) {
+			Log.e(TAG, "Recording failed, closing", e);
+			closeQuietly();
+		}
+	}
+
+	/**
+	 * Records an event of an attribute with unknown instance ID.
+	 *
+	 * @see #record(long, int, int, int, UUID, int, boolean, byte[])
+	 */
+	void record(final long timestamp, @GattEventType final int type,
+				final int direction, final int status,
+				@Nullable final UUID uuid, final boolean descriptor,
+				@Nullable final byte[] value) {
+		record(timestamp, type, direction, status, uuid, GattEvent.NO_INSTANCE_ID, descriptor, value);
+	}
+
+	/**
+	 * Records an MTU change.
+	 */
+	void recordMtu(final long timestamp, final int direction, final int status,
+				   @IntRange(from = 23, to = 517) final int mtu) {
+		record(timestamp, GattEvent.TYPE_MTU, direction, status, null, false,
+				new byte[] { (byte) mtu, (byte) (mtu >> 8) });
+	}
+
+	/**
+	 * Records a PHY read or update.
+	 */
+	void recordPhy(final long timestamp, final int status, final int txPhy, final int rxPhy) {
+		record(timestamp, GattEvent.TYPE_PHY, GattEvent.DIRECTION_INCOMING, status, null, false,
+				new byte[] { (byte) txPhy, (byte) rxPhy });
+	}
+
+	/**
+	 * Records a connection parameters update.
+	 */
+	void recordConnectionUpdate(final long timestamp, final int status,
+								final int interval, final int latency, final int timeout) {
+		record(timestamp, GattEvent.TYPE_CONNECTION_UPDATE, GattEvent.DIRECTION_INCOMING, status,
+				null, false, new byte[] {
+						(byte) interval, (byte) (interval >> 8),
+						(byte) latency, (byte) (latency >> 8),
+						(byte) timeout, (byte) (timeout >> 8)
+				});
+	}
+
+	/**
+	 * Flushes the recorded events, truncates the file to the recorded length and closes it.
+	 *
+	 * @throws IOException if closing the file failed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			final long length = bufferPosition + buffer.position();
+			buffer.force();
+			buffer = null;
+			channel.truncate(length);
+		} finally {
+			file.close();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+
+	private void putHeader(final long timestamp, final int type, final int direction,
+						   final int status, final int attribute, final int length) {
+		buffer.putLong(timestamp);
+		buffer.put((byte) type);
+		buffer.put((byte) direction);
+		buffer.putInt(status);
+		buffer.putShort((short) attribute);
+		buffer.putShort((short) length);
+	}
+
+	private void ensureCapacity(final int length) throws IOException {
+		if (buffer.remaining() < length) {
+			map(bufferPosition + buffer.position(), Math.max(CHUNK_SIZE, length));
+		}
+	}
+
+	private void map(final long position, final int size) throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		bufferPosition = position;
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.callback.ConnectionPriorityCallback;
+import no.nordicsemi.android.ble.callback.DataReceivedCallback;
+import no.nordicsemi.android.ble.callback.DataSentCallback;
+import no.nordicsemi.android.ble.callback.MtuCallback;
+import no.nordicsemi.android.ble.callback.PhyCallback;
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * Feeds events from a capture recorded by {@link GattRecorder} to value changed callbacks
+ * and request callbacks, either at the original speed or as fast as possible. Use it to
+ * reproduce issues recorded in the field, or to benchmark parsers offline, also in JVM
+ * unit tests.
+ * <p>
+ * The value changed callbacks returned by {@link #setNotificationCallback(UUID)} and
+ * {@link #setWriteCallback(UUID)} may be configured the same way as those set in
+ * the {@link BleManager}, with filters, mergers, routes, etc. All callbacks are invoked
+ * on the thread calling {@link #replay(BluetoothDevice, boolean)}, unless a handler or an
+ * executor is set on a value changed callback.
+ * Only events with status 0 (success) are replayed.
+ * <p>
+ * Callbacks may be set for all characteristics with given UUID, or for the one with given
+ * instance ID, if the device has more characteristics with the same UUID. A callback set for
+ * an instance ID takes precedence.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class GattReplayer {
+	private final GattCaptureReader reader;
+	private final Map<UUID, Map<Integer, ValueChangedCallback>> notificationCallbacks = new HashMap<>();
+	private final Map<UUID, Map<Integer, ValueChangedCallback>> writeCallbacks = new HashMap<>();
+	private final Map<UUID, Map<Integer, DataReceivedCallback>> readCallbacks = new HashMap<>();
+	private final Map<UUID, Map<Integer, DataSentCallback>> sentCallbacks = new HashMap<>();
+	private MtuCallback mtuCallback;
+	private PhyCallback phyCallback;
+	private ConnectionPriorityCallback connectionUpdateCallback;
+
+	/**
+	 * Creates the replayer.
+	 *
+	 * @param reader the reader with the capture.
+	 */
+	public GattReplayer(@NonNull final GattCaptureReader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Returns the callback for notifications and indications received from the
+	 * characteristic with given UUID.
+	 *
+	 * @param uuid the characteristic UUID.
+	 * @return The callback.
+	 */
+	@NonNull
+	public ValueChangedCallback setNotificationCallback(@NonNull final UUID uuid) {
+		return setNotificationCallback(uuid, GattEvent.NO_INSTANCE_ID);
+	}
+
+	/**
+	 * Returns the callback for notifications and indications received from the
+	 * characteristic with given UUID and instance ID.
+	 *
+	 * @param uuid       the characteristic UUID.
+	 * @param instanceId the characteristic instance ID, see {@link GattEvent#getInstanceId()}.
+	 * @return The callback.
+	 */
+	@NonNull
+	public ValueChangedCallback setNotificationCallback(@NonNull final UUID uuid, final int instanceId) {
+		return getCallback(notificationCallbacks, uuid, instanceId);
+	}
+
+	/**
+	 * Returns the callback for values written by a remote client to a server characteristic
+	 * or descriptor with given UUID.
+	 *
+	 * @param uuid the characteristic or descriptor UUID.
+	 * @return The callback.
+	 */
+	@NonNull
+	public ValueChangedCallback setWriteCallback(@NonNull final UUID uuid) {
+		return setWriteCallback(uuid, GattEvent.NO_INSTANCE_ID);
+	}
+
+	/**
+	 * Returns the callback for values written by a remote client to a server characteristic
+	 * with given UUID and instance ID, or a descriptor of that characteristic.
+	 *
+	 * @param uuid       the characteristic or descriptor UUID.
+	 * @param instanceId the characteristic instance ID, see {@link GattEvent#getInstanceId()}.
+	 * @return The callback.
+	 */
+	@NonNull
+	public ValueChangedCallback setWriteCallback(@NonNull final UUID uuid, final int instanceId) {
+		return getCallback(writeCallbacks, uuid, instanceId);
+	}
+
+	/**
+	 * Sets the callback for values read from a remote characteristic or descriptor.
+	 *
+	 * @param uuid     the characteristic or descriptor UUID.
+	 * @param callback the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setReadCallback(@NonNull final UUID uuid,
+										@NonNull final DataReceivedCallback callback) {
+		return setReadCallback(uuid, GattEvent.NO_INSTANCE_ID, callback);
+	}
+
+	/**
+	 * Sets the callback for values read from a remote characteristic with given UUID and
+	 * instance ID, or a descriptor of that characteristic.
+	 *
+	 * @param uuid       the characteristic or descriptor UUID.
+	 * @param instanceId the characteristic instance ID, see {@link GattEvent#getInstanceId()}.
+	 * @param callback   the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setReadCallback(@NonNull final UUID uuid, final int instanceId,
+										@NonNull final DataReceivedCallback callback) {
+		put(readCallbacks, uuid, instanceId, callback);
+		return this;
+	}
+
+	/**
+	 * Sets the callback for values written to a remote characteristic or descriptor.
+	 *
+	 * @param uuid     the characteristic or descriptor UUID.
+	 * @param callback the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setSentCallback(@NonNull final UUID uuid,
+										@NonNull final DataSentCallback callback) {
+		return setSentCallback(uuid, GattEvent.NO_INSTANCE_ID, callback);
+	}
+
+	/**
+	 * Sets the callback for values written to a remote characteristic with given UUID and
+	 * instance ID, or a descriptor of that characteristic.
+	 *
+	 * @param uuid       the characteristic or descriptor UUID.
+	 * @param instanceId the characteristic instance ID, see {@link GattEvent#getInstanceId()}.
+	 * @param callback   the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setSentCallback(@NonNull final UUID uuid, final int instanceId,
+										@NonNull final DataSentCallback callback) {
+		put(sentCallbacks, uuid, instanceId, callback);
+		return this;
+	}
+
+	/**
+	 * Sets the callback for MTU changes.
+	 *
+	 * @param callback the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setMtuCallback(@Nullable final MtuCallback callback) {
+		this.mtuCallback = callback;
+		return this;
+	}
+
+	/**
+	 * Sets the callback for PHY reads and updates.
+	 *
+	 * @param callback the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setPhyCallback(@Nullable final PhyCallback callback) {
+		this.phyCallback = callback;
+		return this;
+	}
+
+	/**
+	 * Sets the callback for connection parameter updates.
+	 *
+	 * @param callback the callback.
+	 * @return The replayer.
+	 */
+	@NonNull
+	public GattReplayer setConnectionUpdateCallback(@Nullable final ConnectionPriorityCallback callback) {
+		this.connectionUpdateCallback = callback;
+		return this;
+	}
+
+	/**
+	 * Replays all remaining events from the capture. Value changed callbacks receive the
+	 * original timestamps.
+	 *
+	 * @param device   the device to be passed to the callbacks.
+	 * @param realTime true to keep the original intervals between events, false to replay
+	 *                 the events as fast as possible.
+	 * @return The number of events read from the capture.
+	 * @throws IOException          if the capture is corrupted.
+	 * @throws InterruptedException if the thread was interrupted while waiting for the next
+	 *                              event.
+	 */
+	public int replay(@Nullable final BluetoothDevice device, final boolean realTime)
+			throws IOException, InterruptedException {
+		int count = 0;
+		long firstTimestamp = 0;
+		long start = 0;
+		GattEvent event;
+		while ((event = reader.next()) != null) {
+			if (realTime) {
+				if (count == 0) {
+					firstTimestamp = event.getTimestamp();
+					start = System.nanoTime();
+				} else {
+					final long delay = event.getTimestamp() - firstTimestamp - (System.nanoTime() - start);
+					if (delay > 0)
+						Thread.sleep(delay / 1_000_000L, (int) (delay % 1_000_000L));
+				}
+			}
+			count++;
+			if (event.getStatus() == 0)
+				dispatch(device, event);
+		}
+		return count;
+	}
+
+	@SuppressWarnings("ConstantConditions")
+	private void dispatch(@Nullable final BluetoothDevice device, @NonNull final GattEvent event) {
+		final UUID uuid = event.getUuid();
+		final int instanceId = event.getInstanceId();
+		final byte[] value = event.getRawValue();
+		final boolean incoming = event.getDirection() == GattEvent.DIRECTION_INCOMING;
+		switch (event.getType()) {
+			case GattEvent.TYPE_NOTIFICATION:
+			case GattEvent.TYPE_INDICATION: {
+				final ValueChangedCallback callback = incoming ? find(notificationCallbacks, uuid, instanceId) : null;
+				if (callback != null && callback.matches(value))
+					callback.notifyValueChanged(device, value, event.getTimestamp());
+				break;
+			}
+			case GattEvent.TYPE_WRITE: {
+				if (incoming) {
+					final ValueChangedCallback callback = find(writeCallbacks, uuid, instanceId);
+					if (callback != null && callback.matches(value))
+						callback.notifyValueChanged(device, value, event.getTimestamp());
+				} else {
+					final DataSentCallback callback = find(sentCallbacks, uuid, instanceId);
+					if (callback != null)
+						callback.onDataSent(device, new Data(value));
+				}
+				break;
+			}
+			case GattEvent.TYPE_READ: {
+				final DataReceivedCallback callback = incoming ? find(readCallbacks, uuid, instanceId) : null;
+				if (callback != null)
+					callback.onDataReceived(device, new Data(value));
+				break;
+			}
+			case GattEvent.TYPE_MTU: {
+				final MtuCallback callback = mtuCallback;
+				if (callback != null && value.length >= 2)
+					callback.onMtuChanged(device, (value[0] & 0xFF) | (value[1] & 0xFF) << 8);
+				break;
+			}
+			case GattEvent.TYPE_PHY: {
+				final PhyCallback callback = phyCallback;
+				if (callback != null && value.length >= 2)
+					callback.onPhyChanged(device, value[0], value[1]);
+				break;
+			}
+			case GattEvent.TYPE_CONNECTION_UPDATE: {
+				final ConnectionPriorityCallback callback = connectionUpdateCallback;
+				if (callback != null && value.length >= 6)
+					callback.onConnectionUpdated(device,
+							(value[0] & 0xFF) | (value[1] & 0xFF) << 8,
+							(value[2] & 0xFF) | (value[3] & 0xFF) << 8,
+							(value[4] & 0xFF) | (value[5] & 0xFF) << 8);
+				break;
+			}
+		}
+	}
+
+	@NonNull
+	private static ValueChangedCallback getCallback(@NonNull final Map<UUID, Map<Integer, ValueChangedCallback>> callbacks,
+													@NonNull final UUID uuid, final int instanceId) {
+		final Map<Integer, ValueChangedCallback> instances = instances(callbacks, uuid);
+		ValueChangedCallback callback = instances.get(instanceId);
+		if (callback == null) {
+			callback = new ValueChangedCallback(new ExecutorCallbackHandler(Runnable::run));
+			instances.put(instanceId, callback);
+		}
+		return callback;
+	}
+
+	private static <T> void put(@NonNull final Map<UUID, Map<Integer, T>> callbacks,
+								@NonNull final UUID uuid, final int instanceId, @NonNull final T callback) {
+		instances(callbacks, uuid).put(instanceId, callback);
+	}
+
+	@NonNull
+	private static <T> Map<Integer, T> instances(@NonNull final Map<UUID, Map<Integer, T>> callbacks,
+												 @NonNull final UUID uuid) {
+		Map<Integer, T> instances = callbacks.get(uuid);
+		if (instances == null) {
+			instances = new HashMap<>();
+			callbacks.put(uuid, instances);
+		}
+		return instances;
+	}
+
+	/**
+	 * Returns the callback set for the instance ID, or for all instances with given UUID.
+	 */
+	@Nullable
+	private static <T> T find(@NonNull final Map<UUID, Map<Integer, T>> callbacks,
+							  @Nullable final UUID uuid, final int instanceId) {
+		final Map<Integer, T> instances = callbacks.get(uuid);
+		if (instances == null)
+			return null;
+		final T callback = instances.get(instanceId);
+		return callback != null ? callback : instances.get(GattEvent.NO_INSTANCE_ID);
+	}
+}
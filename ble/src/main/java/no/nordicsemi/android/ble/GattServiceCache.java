@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A persistent cache of GATT layouts of devices, keyed by the device address.
+ * <p>
+ * Set the cache using {@link BleManager#setServiceCache(GattServiceCache)}. When a layout of
+ * a device is cached, the service discovery is started as soon as the device gets connected,
+ * without waiting {@link BleManager#getServiceDiscoveryDelay(boolean)} for a Service Changed
+ * indication. Android returns services from its own cache, so the discovery completes
+ * almost immediately and the initialization may start.
+ * <p>
+ * If the device has the Database Hash characteristic, it is read before the
+ * initialization starts and compared with the cached one. If the hash has changed, or the
+ * services returned by Android differ from the layout cached with the same hash, the Android
+ * device cache is cleared and the services are discovered again. A Service Changed
+ * indication invalidates the cached layout as well.
+ * <p>
+ * Each device is stored in a separate file in the given directory, e.g.
+ * {@link android.content.Context#getCacheDir()}. The BLE manager reads and writes the files
+ * on a background thread, not on the thread delivering GATT events.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class GattServiceCache {
+	private static final String TAG = "GattServiceCache";
+	private static final int MAGIC = 0x47415454; // "GATT"
+	private static final int VERSION = 1;
+	private static final String EXTENSION = ".gatt";
+
+	private final File directory;
+	private final Executor executor;
+
+	interface EntryCallback {
+		void onEntry(@Nullable final Entry entry);
+	}
+
+	static final class Entry {
+		/** The value of the Database Hash characteristic, or null if unknown. */
+		@Nullable
+		final byte[] hash;
+		/** The serialized layout of services, characteristics and descriptors. */
+		@NonNull
+		final byte[] layout;
+
+		Entry(@Nullable final byte[] hash, @NonNull final byte[] layout) {
+			this.hash = hash;
+			this.layout = layout;
+		}
+	}
+
+	/**
+	 * Creates a cache stored in the given directory. The directory is created when the first
+	 * layout is stored. Files are read and written on the cache's own thread, which is
+	 * released when idle.
+	 *
+	 * @param directory the cache directory.
+	 */
+	public GattServiceCache(@NonNull final File directory) {
+		this(directory, createExecutor());
+	}
+
+	/**
+	 * Creates a cache stored in the given directory, which will be read and written using
+	 * the given executor.
+	 *
+	 * @param directory the cache directory.
+	 * @param executor  the executor used for file I/O. Tasks must be executed in order.
+	 */
+	public GattServiceCache(@NonNull final File directory, @NonNull final Executor executor) {
+		this.directory = directory;
+		this.executor = executor;
+	}
+
+	@NonNull
+	private static Executor createExecutor() {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+				10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+					final Thread thread = new Thread(r, TAG);
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Returns whether a GATT layout of the device with given address is cached.
+	 *
+	 * @param address the device address.
+	 * @return True, if the layout is cached.
+	 */
+	public boolean contains(@NonNull final String address) {
+		return fileOf(address).exists();
+	}
+
+	/**
+	 * Removes the cached GATT layout of the device with given address. The services will be
+	 * discovered after the {@link BleManager#getServiceDiscoveryDelay(boolean) delay} on
+	 * the next connection.
+	 *
+	 * @param address the device address.
+	 */
+	public synchronized void invalidate(@NonNull final String address) {
+		//noinspection ResultOfMethodCallIgnored
+		fileOf(address).delete();
+	}
+
+	/**
+	 * Removes all cached layouts.
+	 */
+	public synchronized void clear() {
+		final File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (files != null) {
+			for (final File file : files) {
+				//noinspection ResultOfMethodCallIgnored
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached entry for the device with given address.
+	 *
+	 * @param address the device address.
+	 * @return The entry, or null if not cached or the file could not be read.
+	 */
+	@Nullable
+	synchronized Entry get(@NonNull final String address) {
+		final File file = fileOf(address);
+		if (!file.exists())
+			return null;
+		try (final DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+				return null;
+			byte[] hash = null;
+			final int hashLength = in.readUnsignedByte();
+			if (hashLength > 0) {
+				hash = new byte[hashLength];
+				in.readFully(hash);
+			}
+			final byte[] layout = new byte[in.readInt()];
+			in.readFully(layout);
+			return new Entry(hash, layout);
+		} catch (final IOException e) {
+			Log.w(TAG, "Reading cached services failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the cached entry in the background.
+	 *
+	 * @param address  the device address.
+	 * @param callback the callback, called on the cache's thread with the entry, or null.
+	 */
+	void getAsync(@NonNull final String address, @NonNull final EntryCallback callback) {
+		executor.execute(() -> callback.onEntry(get(address)));
+	}
+
+	/**
+	 * Stores the GATT layout in the background.
+	 *
+	 * @see #put(String, byte[], byte[])
+	 */
+	void putAsync(@NonNull final String address,
+				  @Nullable final byte[] hash, @NonNull final byte[] layout) {
+		executor.execute(() -> put(address, hash, layout));
+	}
+
+	/**
+	 * Removes the cached GATT layout in the background.
+	 *
+	 * @see #invalidate(String)
+	 */
+	void invalidateAsync(@NonNull final String address) {
+		executor.execute(() -> invalidate(address));
+	}
+
+	/**
+	 * Stores the GATT layout of the device with given address.
+	 *
+	 * @param address the device address.
+	 * @param hash    the value of the Database Hash characteristic, or null if not available.
+	 * @param layout  the layout, as returned by {@link #layoutOf(List)}.
+	 */
+	synchronized void put(@NonNull final String address,
+						  @Nullable final byte[] hash, @NonNull final byte[] layout) {
+		final File file = fileOf(address);
+		final File temp = new File(directory, file.getName() + ".tmp");
+		//noinspection ResultOfMethodCallIgnored
+		directory.mkdirs();
+		try (final DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(hash != null ? hash.length : 0);
+			if (hash != null)
+				out.write(hash);
+			out.writeInt(layout.length);
+			out.write(layout);
+		} catch (final IOException e) {
+			Log.w(TAG, "Caching services failed", e);
+			//noinspection ResultOfMethodCallIgnored
+			temp.delete();
+			return;
+		}
+		// Rename is atomic, so a partially written file is never read.
+		if (!temp.renameTo(file)) {
+			//noinspection ResultOfMethodCallIgnored
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Serializes UUIDs, instance IDs, properties and descriptors of given services.
+	 * Two layouts are equal if the services, characteristics and descriptors are equal
+	 * and were discovered in the same order.
+	 *
+	 * @param services the discovered services.
+	 * @return The serialized layout.
+	 */
+	@NonNull
+	static byte[] layoutOf(@NonNull final List<BluetoothGattService> services) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeShort(services.size());
+			for (final BluetoothGattService service : services) {
+				writeUuid(out, service.getUuid());
+				out.writeShort(service.getInstanceId());
+				out.writeByte(service.getType());
+				final List<BluetoothGattCharacteristic> characteristics = service.getCharacteristics();
+				out.writeShort(characteristics.size());
+				for (final BluetoothGattCharacteristic characteristic : characteristics) {
+					writeUuid(out, characteristic.getUuid());
+					out.writeShort(characteristic.getInstanceId());
+					out.writeByte(characteristic.getProperties());
+					final List<BluetoothGattDescriptor> descriptors = characteristic.getDescriptors();
+					out.writeShort(descriptors.size());
+					for (final BluetoothGattDescriptor descriptor : descriptors) {
+						writeUuid(out, descriptor.getUuid());
+					}
+				}
+			}
+		} catch (final IOException e) {
+			// ByteArrayOutputStream does not throw
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeUuid(@NonNull final DataOutputStream out,
+								  @NonNull final UUID uuid) throws IOException {
+		out.writeLong(uuid.getMostSignificantBits());
+		out.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	@NonNull
+	private File fileOf(@NonNull final String address) {
+		return new File(directory, address.replace(":", "") + EXTENSION);
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.annotation.LinkQuality;
+import no.nordicsemi.android.ble.callback.LinkQualityCallback;
+
+/**
+ * A link monitor reading RSSI of the connected device in the background and combining it
+ * with the rate of GATT errors into a link quality score.
+ * <p>
+ * Set the monitor using {@link BleManager#setLinkMonitor(LinkMonitor)}. RSSI is read only
+ * when the request queue is idle, so the reads do not compete with data traffic. The reads
+ * are made more often when the RSSI is trending down or the link quality is low, and rarely
+ * when the link is stable.
+ * <p>
+ * The readings are smoothed using a one-dimensional Kalman filter, which accounts for
+ * the varying time between samples. The score goes from 0 (-100 dBm or worse, or only
+ * errors) to 100 (-50 dBm or better, no errors).
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class LinkMonitor {
+	/** Measurement noise of a single RSSI reading, in dBm^2. */
+	private static final double MEASUREMENT_NOISE = 16.0;
+	/** Expected change of the real RSSI, in dBm^2 per second. */
+	private static final double PROCESS_NOISE = 1.0;
+	/** RSSI trend, in dBm per second, at which the RSSI is read most often. */
+	private static final double MAX_TREND = 2.0;
+	/** Score hysteresis applied when leaving a quality level. */
+	private static final int HYSTERESIS = 5;
+
+	private final long minInterval;
+	private final long maxInterval;
+	private int poorThreshold = 40;
+	private int goodThreshold = 70;
+	@Nullable
+	private LinkQualityCallback callback;
+
+	private boolean initialized;
+	private double rssi;
+	private double variance;
+	private double trend;
+	private long lastTime;
+	private double errorRate;
+	private int operations;
+	private int errors;
+	private int score;
+	@LinkQuality
+	private int quality;
+
+	/**
+	 * Creates a link monitor.
+	 *
+	 * @param minInterval the shortest interval between RSSI reads, in milliseconds,
+	 *                    used when the link is degrading.
+	 * @param maxInterval the longest interval between RSSI reads, in milliseconds,
+	 *                    used when the link is stable.
+	 */
+	public LinkMonitor(@IntRange(from = 0) final long minInterval,
+					   @IntRange(from = 0) final long maxInterval) {
+		this.minInterval = minInterval;
+		this.maxInterval = Math.max(minInterval, maxInterval);
+	}
+
+	/**
+	 * Sets the score thresholds of link quality levels. The default thresholds are 40 and 70.
+	 * A level is left only when the score is 5 points past the threshold, to avoid
+	 * notifying about every small change.
+	 *
+	 * @param poor the score below which the link is {@link LinkQualityCallback#LINK_QUALITY_POOR}.
+	 * @param good the score from which the link is {@link LinkQualityCallback#LINK_QUALITY_GOOD}.
+	 * @return The monitor.
+	 */
+	@NonNull
+	public synchronized LinkMonitor setThresholds(@IntRange(from = 0, to = 100) final int poor,
+												  @IntRange(from = 0, to = 100) final int good) {
+		this.poorThreshold = poor;
+		this.goodThreshold = Math.max(poor, good);
+		return this;
+	}
+
+	/**
+	 * Sets the callback notified when the link quality level changes, and with the initial
+	 * level after the first RSSI reading.
+	 *
+	 * @param callback the callback.
+	 * @return The monitor.
+	 */
+	@NonNull
+	public synchronized LinkMonitor setCallback(@Nullable final LinkQualityCallback callback) {
+		this.callback = callback;
+		return this;
+	}
+
+	/**
+	 * Returns the smoothed RSSI.
+	 *
+	 * @return The RSSI in dBm, or 0 if not read yet.
+	 */
+	public synchronized float getRssi() {
+		return (float) rssi;
+	}
+
+	/**
+	 * Returns the smoothed rate of RSSI change.
+	 *
+	 * @return The trend in dBm per second; negative when the signal gets weaker.
+	 */
+	public synchronized float getTrend() {
+		return (float) trend;
+	}
+
+	/**
+	 * Returns the smoothed ratio of failed GATT operations.
+	 *
+	 * @return The error rate, from 0 to 1.
+	 */
+	public synchronized float getErrorRate() {
+		return (float) errorRate;
+	}
+
+	/**
+	 * Returns the link quality score.
+	 *
+	 * @return The score from 0 (worst) to 100 (best), or 0 if RSSI was not read yet.
+	 */
+	@IntRange(from = 0, to = 100)
+	public synchronized int getScore() {
+		return score;
+	}
+
+	/**
+	 * Returns the link quality level.
+	 *
+	 * @return The level.
+	 */
+	@LinkQuality
+	public synchronized int getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Notifies the monitor that a GATT operation has been started.
+	 */
+	synchronized void onOperation() {
+		operations++;
+	}
+
+	/**
+	 * Notifies the monitor that a GATT operation has failed.
+	 */
+	synchronized void onGattError() {
+		errors++;
+	}
+
+	/**
+	 * Adds a RSSI reading.
+	 *
+	 * @param device the target device.
+	 * @param value  the RSSI, in dBm.
+	 * @param time   the time of the reading, in milliseconds.
+	 */
+	void onRssi(@NonNull final BluetoothDevice device, final int value, final long time) {
+		final LinkQualityCallback callback;
+		final int newQuality;
+		final int newScore;
+		final float newRssi;
+		synchronized (this) {
+			final boolean first = !initialized;
+			if (first) {
+				initialized = true;
+				rssi = value;
+				variance = MEASUREMENT_NOISE;
+			} else {
+				final double dt = Math.max(1, time - lastTime) / 1000.0;
+				final double previous = rssi;
+				// Predict, then update with the new measurement.
+				variance += PROCESS_NOISE * dt;
+				final double gain = variance / (variance + MEASUREMENT_NOISE);
+				rssi += gain * (value - rssi);
+				variance *= 1 - gain;
+				trend += 0.5 * ((rssi - previous) / dt - trend);
+			}
+			lastTime = time;
+
+			if (operations > 0)
+				errorRate += 0.3 * (Math.min(1.0, (double) errors / operations) - errorRate);
+			operations = 0;
+			errors = 0;
+
+			final double signal = Math.max(0, Math.min(100, (rssi + 100) * 2));
+			score = (int) Math.round(signal * (1 - errorRate));
+
+			final int oldQuality = quality;
+			quality = qualityOf(score, oldQuality, first);
+			if (quality == oldQuality && !first)
+				return;
+			callback = this.callback;
+			newQuality = quality;
+			newScore = score;
+			newRssi = (float) rssi;
+		}
+		if (callback != null)
+			callback.onLinkQualityChanged(device, newQuality, newScore, newRssi);
+	}
+
+	@LinkQuality
+	private int qualityOf(final int score, @LinkQuality final int current, final boolean first) {
+		final int poor = !first && current == LinkQualityCallback.LINK_QUALITY_POOR ?
+				poorThreshold + HYSTERESIS : poorThreshold;
+		final int good = !first && current == LinkQualityCallback.LINK_QUALITY_GOOD ?
+				goodThreshold - HYSTERESIS : goodThreshold;
+		if (score < poor)
+			return LinkQualityCallback.LINK_QUALITY_POOR;
+		if (score >= good)
+			return LinkQualityCallback.LINK_QUALITY_GOOD;
+		return LinkQualityCallback.LINK_QUALITY_FAIR;
+	}
+
+	/**
+	 * Returns the delay before the next RSSI read: short when the RSSI is dropping or
+	 * the link quality is low, long when the link is stable.
+	 *
+	 * @return The delay in milliseconds.
+	 */
+	synchronized long getNextInterval() {
+		if (!initialized)
+			return minInterval;
+		final double falling = Math.max(0, Math.min(1, -trend / MAX_TREND));
+		final double degraded = quality == LinkQualityCallback.LINK_QUALITY_POOR ? 1.0 :
+				quality == LinkQualityCallback.LINK_QUALITY_FAIR ? 0.5 : 0.0;
+		final double urgency = Math.max(falling, degraded);
+		return maxInterval - Math.round((maxInterval - minInterval) * urgency);
+	}
+
+	/**
+	 * Clears the state, for example after disconnection.
+	 */
+	synchronized void reset() {
+		initialized = false;
+		rssi = variance = trend = errorRate = 0;
+		operations = errors = score = 0;
+		quality = LinkQualityCallback.LINK_QUALITY_POOR;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Values of server attributes being read by a client using the Long Read sub-procedure.
+ * <p>
+ * A Read Request (offset 0) takes a snapshot of the attribute value and the following
+ * Read Blob Requests are served from the snapshot, so that all parts of one long read
+ * are consistent, even if the value is changed in the meantime. The value is copied once,
+ * when the snapshot is taken, as the application may modify the array in place. Values that
+ * fit in a single response are sent right away, so they are returned without copying and
+ * are not kept.
+ */
+final class LongReadSnapshots {
+	/** Returned when the offset is greater than the length of the value. */
+	final static byte[] INVALID_OFFSET = new byte[0];
+
+	/** Values by the characteristic or descriptor. */
+	private final Map<Object, byte[]> snapshots = new HashMap<>();
+
+	/**
+	 * Returns the part of the value to be sent in response to a Read or Read Blob Request.
+	 *
+	 * @param attribute the characteristic or descriptor being read.
+	 * @param offset    the offset requested by the client.
+	 * @param value     the current value of the attribute.
+	 * @param maxLength the maximum length of the response, that is ATT MTU - 1.
+	 * @return The part of the value, null if the value is null, or {@link #INVALID_OFFSET}.
+	 */
+	@Nullable
+	byte[] read(@NonNull final Object attribute, @IntRange(from = 0) final int offset,
+				@Nullable final byte[] value, @IntRange(from = 22) final int maxLength) {
+		byte[] snapshot;
+		if (offset == 0) {
+			snapshot = value;
+			if (snapshot == null || snapshot.length <= maxLength) {
+				snapshots.remove(attribute);
+				return snapshot;
+			}
+			snapshot = snapshot.clone();
+			snapshots.put(attribute, snapshot);
+		} else {
+			snapshot = snapshots.get(attribute);
+			// The client may skip the Read Request and read a blob directly.
+			if (snapshot == null) {
+				snapshot = value;
+				if (snapshot == null)
+					return null;
+				snapshot = snapshot.clone();
+				snapshots.put(attribute, snapshot);
+			}
+		}
+		if (offset > snapshot.length) {
+			snapshots.remove(attribute);
+			return INVALID_OFFSET;
+		}
+		// The response shorter than maxLength is the last one of this long read.
+		if (offset + maxLength > snapshot.length)
+			snapshots.remove(attribute);
+		return Arrays.copyOfRange(snapshot, offset, Math.min(snapshot.length, offset + maxLength));
+	}
+
+	/**
+	 * Removes all snapshots, for example when the client disconnects.
+	 */
+	void clear() {
+		snapshots.clear();
+	}
+
+	boolean contains(@NonNull final Object attribute) {
+		return snapshots.containsKey(attribute);
+	}
+}
@@ -25,6 +25,8 @@ package no.nordicsemi.android.ble;
 import android.bluetooth.BluetoothDevice;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -59,6 +61,13 @@ public final class MtuRequest extends SimpleValueRequest<MtuCallback> implements
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public MtuRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public MtuRequest done(@NonNull final SuccessCallback callback) {
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.callback.NotificationFanOutCallback;
+import no.nordicsemi.android.ble.data.DataSplitter;
+
+/**
+ * A single value notified to all connected clients of a {@link BleServerManager}.
+ * <p>
+ * The value is copied once and shared by all clients. It is split into packets once for
+ * each distinct MTU, and the packets are shared by all clients with this MTU.
+ * A value that fits into a single packet is sent without copying.
+ *
+ * @see BleServerManager#notifyAll(android.bluetooth.BluetoothGattCharacteristic, byte[], NotificationFanOutCallback)
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class NotificationFanOut {
+	@NonNull
+	private final byte[] value;
+	@Nullable
+	private final NotificationFanOutCallback callback;
+	private final long startTime;
+	private final int clientCount;
+	private int succeeded;
+	private int failed;
+	private int skipped;
+	private long slowestLatency = -1;
+	@Nullable
+	private BluetoothDevice slowestDevice;
+
+	/** Packets of the value, by the maximum packet length. */
+	private final Map<Integer, byte[][]> packets = new HashMap<>();
+
+	final DataSplitter splitter = new DataSplitter() {
+		@Nullable
+		@Override
+		public byte[] chunk(@NonNull final byte[] message,
+							@IntRange(from = 0) final int index,
+							@IntRange(from = 20) final int maxLength) {
+			if (message.length <= maxLength)
+				return index == 0 ? message : null;
+			final byte[][] chunks = getPackets(message, maxLength);
+			return index < chunks.length ? chunks[index] : null;
+		}
+	};
+
+	NotificationFanOut(@NonNull final byte[] value, final int clientCount, final long startTime,
+					   @Nullable final NotificationFanOutCallback callback) {
+		this.value = value;
+		this.clientCount = clientCount;
+		this.startTime = startTime;
+		this.callback = callback;
+	}
+
+	/**
+	 * Returns the number of clients connected when the fan-out was started.
+	 *
+	 * @return The number of clients.
+	 */
+	public int getClientCount() {
+		return clientCount;
+	}
+
+	/**
+	 * Returns the number of clients to which the whole value has been sent.
+	 *
+	 * @return The number of notified clients.
+	 */
+	public synchronized int getSucceededCount() {
+		return succeeded;
+	}
+
+	/**
+	 * Returns the number of clients for which sending the value has failed.
+	 *
+	 * @return The number of failed clients.
+	 */
+	public synchronized int getFailedCount() {
+		return failed;
+	}
+
+	/**
+	 * Returns the number of clients skipped, as they have not enabled notifications.
+	 *
+	 * @return The number of skipped clients.
+	 */
+	public synchronized int getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * Returns whether all clients have been notified, have failed or were skipped.
+	 *
+	 * @return True, if the fan-out is complete.
+	 */
+	public synchronized boolean isComplete() {
+		return succeeded + failed + skipped == clientCount;
+	}
+
+	/**
+	 * Returns the time between starting the fan-out and sending the whole value to the
+	 * slowest client so far.
+	 *
+	 * @return The latency in milliseconds, or -1 if no client has been notified.
+	 */
+	public synchronized long getSlowestLatency() {
+		return slowestLatency;
+	}
+
+	/**
+	 * Returns the slowest client so far.
+	 *
+	 * @return The client with the highest latency, or null if no client has been notified.
+	 */
+	@Nullable
+	public synchronized BluetoothDevice getSlowestDevice() {
+		return slowestDevice;
+	}
+
+	@NonNull
+	byte[] getValue() {
+		return value;
+	}
+
+	void onSent(@NonNull final BluetoothDevice device, final long time) {
+		final long latency = time - startTime;
+		final boolean complete;
+		synchronized (this) {
+			succeeded++;
+			if (latency > slowestLatency) {
+				slowestLatency = latency;
+				slowestDevice = device;
+			}
+			complete = isComplete();
+		}
+		if (callback != null) {
+			callback.onClientNotified(device, latency);
+			if (complete)
+				callback.onFanOutCompleted(this);
+		}
+	}
+
+	void onFailed(@NonNull final BluetoothDevice device, final int status) {
+		final boolean complete;
+		synchronized (this) {
+			failed++;
+			complete = isComplete();
+		}
+		if (callback != null) {
+			callback.onClientFailed(device, status);
+			if (complete)
+				callback.onFanOutCompleted(this);
+		}
+	}
+
+	void onSkipped(@NonNull final BluetoothDevice device) {
+		final boolean complete;
+		synchronized (this) {
+			skipped++;
+			complete = isComplete();
+		}
+		if (callback != null) {
+			callback.onClientSkipped(device);
+			if (complete)
+				callback.onFanOutCompleted(this);
+		}
+	}
+
+	@NonNull
+	private synchronized byte[][] getPackets(@NonNull final byte[] message, final int maxLength) {
+		byte[][] chunks = packets.get(maxLength);
+		if (chunks == null) {
+			chunks = new byte[(message.length + maxLength - 1) / maxLength][];
+			for (int i = 0; i < chunks.length; i++)
+				chunks[i] = Bytes.copy(message, i * maxLength, maxLength);
+			packets.put(maxLength, chunks);
+		}
+		return chunks;
+	}
+}
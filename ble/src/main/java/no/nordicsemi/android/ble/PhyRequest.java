@@ -25,6 +25,8 @@ package no.nordicsemi.android.ble;
 import android.bluetooth.BluetoothDevice;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.annotation.PhyMask;
 import no.nordicsemi.android.ble.annotation.PhyOption;
@@ -110,6 +112,13 @@ public final class PhyRequest extends SimpleValueRequest<PhyCallback> implements
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public PhyRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public PhyRequest done(@NonNull final SuccessCallback callback) {
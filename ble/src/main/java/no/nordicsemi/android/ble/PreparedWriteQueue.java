@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.error.GattError;
+
+/**
+ * Assembles values sent by a client using Prepare Write requests until they are executed.
+ * <p>
+ * Each value is assembled in a growable buffer, so that adding a chunk only copies the chunk.
+ * Chunks may arrive in any order and are written at their offset into the latest value for
+ * the same attribute, which may be at any position in the queue. A chunk with offset 0
+ * starts a new value if the latest one already has one. Chunks may overwrite already
+ * received bytes.
+ * <p>
+ * As required by Vol. 3, Part F, Section 3.4.6.1, only a full queue is reported when a chunk
+ * is added. Invalid offsets and lengths are reported by {@link #validate()}, when the queue
+ * is executed.
+ */
+final class PreparedWriteQueue {
+	/** The maximum length of an attribute value, see Vol. 3, Part F, Section 3.2.9. */
+	final static int MAX_ATTRIBUTE_LENGTH = 512;
+	/** The default maximum number of Prepare Write requests before the execution. */
+	final static int DEFAULT_MAX_QUEUE_SIZE = 128;
+
+	private final static int INITIAL_CAPACITY = 64;
+
+	/** A value being assembled for a characteristic or a descriptor. */
+	final static class Entry {
+		/** The {@link android.bluetooth.BluetoothGattCharacteristic} or {@link android.bluetooth.BluetoothGattDescriptor}. */
+		@NonNull
+		final Object attribute;
+		/** The received bytes, used to find gaps between chunks. */
+		private final BitSet received = new BitSet();
+		@NonNull
+		private byte[] buffer;
+		private int length;
+		private boolean started;
+
+		private Entry(@NonNull final Object attribute, final int capacity) {
+			this.attribute = attribute;
+			this.buffer = new byte[capacity];
+		}
+
+		/**
+		 * Returns the assembled value.
+		 *
+		 * @return A copy of the value, trimmed to its length.
+		 */
+		@NonNull
+		byte[] getValue() {
+			return Arrays.copyOf(buffer, length);
+		}
+	}
+
+	private final int maxAttributeLength;
+	private final int maxQueueSize;
+	private final List<Entry> entries = new ArrayList<>();
+	/** The latest entry of each attribute. */
+	private final Map<Object, Entry> latest = new HashMap<>();
+	private int queueSize;
+	/** The first error found when adding chunks, reported when the queue is executed. */
+	private int error = GattError.GATT_SUCCESS;
+
+	PreparedWriteQueue() {
+		this(MAX_ATTRIBUTE_LENGTH, DEFAULT_MAX_QUEUE_SIZE);
+	}
+
+	PreparedWriteQueue(@IntRange(from = 1) final int maxAttributeLength,
+					   @IntRange(from = 1) final int maxQueueSize) {
+		this.maxAttributeLength = maxAttributeLength;
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	/**
+	 * Adds a chunk received in a Prepare Write request.
+	 *
+	 * @param attribute the characteristic or descriptor.
+	 * @param offset    the offset of the chunk.
+	 * @param value     the chunk.
+	 * @return {@link android.bluetooth.BluetoothGatt#GATT_SUCCESS}, or
+	 * {@link GattError#GATT_PREPARE_Q_FULL} if the chunk was not added.
+	 */
+	int add(@NonNull final Object attribute, final int offset, @NonNull final byte[] value) {
+		if (queueSize >= maxQueueSize)
+			return GattError.GATT_PREPARE_Q_FULL;
+		queueSize++;
+
+		final int end = offset + value.length;
+		if (offset < 0 || end > maxAttributeLength) {
+			if (error == GattError.GATT_SUCCESS)
+				error = offset < 0 ? GattError.GATT_INVALID_OFFSET : GattError.GATT_INVALID_ATTR_LEN;
+			return GattError.GATT_SUCCESS;
+		}
+
+		Entry entry = latest.get(attribute);
+		if (entry == null || (offset == 0 && entry.started)) {
+			entry = new Entry(attribute, Math.min(maxAttributeLength, Math.max(INITIAL_CAPACITY, end)));
+			entries.add(entry);
+			latest.put(attribute, entry);
+		} else if (end > entry.buffer.length) {
+			final int capacity = Math.min(maxAttributeLength, Math.max(end, entry.buffer.length * 2));
+			entry.buffer = Arrays.copyOf(entry.buffer, capacity);
+		}
+		System.arraycopy(value, 0, entry.buffer, offset, value.length);
+		entry.received.set(offset, end);
+		entry.length = Math.max(entry.length, end);
+		entry.started |= offset == 0;
+		return GattError.GATT_SUCCESS;
+	}
+
+	/**
+	 * Validates the queue before it is executed.
+	 *
+	 * @return {@link android.bluetooth.BluetoothGatt#GATT_SUCCESS}, or the first error to be
+	 * reported in the Execute Write Response: {@link GattError#GATT_INVALID_OFFSET} if a value
+	 * has a gap, or {@link GattError#GATT_INVALID_ATTR_LEN} if a chunk exceeded the maximum
+	 * length of an attribute value.
+	 */
+	int validate() {
+		if (error != GattError.GATT_SUCCESS)
+			return error;
+		for (final Entry entry : entries) {
+			if (entry.received.nextClearBit(0) < entry.length)
+				return GattError.GATT_INVALID_OFFSET;
+		}
+		return GattError.GATT_SUCCESS;
+	}
+
+	/**
+	 * Returns the assembled values in the order they were started.
+	 *
+	 * @return The entries.
+	 */
+	@NonNull
+	List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns the number of Prepare Write requests added.
+	 *
+	 * @return The size of the queue.
+	 */
+	int size() {
+		return queueSize;
+	}
+
+	boolean isEmpty() {
+		return entries.isEmpty();
+	}
+}
@@ -28,6 +28,8 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -41,8 +43,11 @@ import no.nordicsemi.android.ble.data.Data;
 import no.nordicsemi.android.ble.data.DataFilter;
 import no.nordicsemi.android.ble.data.DataMerger;
 import no.nordicsemi.android.ble.data.DataStream;
+import no.nordicsemi.android.ble.data.InflateMerger;
 import no.nordicsemi.android.ble.exception.BluetoothDisabledException;
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
 import no.nordicsemi.android.ble.exception.DeviceDisconnectedException;
+import no.nordicsemi.android.ble.exception.InvalidChecksumException;
 import no.nordicsemi.android.ble.exception.InvalidDataException;
 import no.nordicsemi.android.ble.exception.InvalidRequestException;
 import no.nordicsemi.android.ble.exception.RequestFailedException;
@@ -81,6 +86,13 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ReadRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public ReadRequest done(@NonNull final SuccessCallback callback) {
@@ -131,6 +143,7 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 	/**
 	 * Adds a merger that will be used to merge multiple packets into a single Data.
 	 * The merger may modify each packet if necessary.
+	 * Use {@link no.nordicsemi.android.ble.data.InflateMerger} to decompress compressed data.
 	 *
      * @return The request.
 	 */
@@ -155,6 +168,20 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 		return this;
 	}
 
+	/**
+	 * Marks the request as resumable. When the durable queue is enabled using
+	 * {@link BleManager#setDurableQueue(boolean)}, a resumable request does not fail on link
+	 * loss and is executed again after the device reconnects and is ready. Merged reads
+	 * start over from the first packet.
+	 *
+	 * @return The request.
+	 */
+	@NonNull
+	public ReadRequest resumable() {
+		this.resumable = true;
+		return this;
+	}
+
 	/**
 	 * Same as {@link #await(Class)}, but if the response class extends
 	 * {@link ProfileReadResponse} and the received response is not valid
@@ -227,6 +254,12 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 		return filter == null || filter.filter(packet);
 	}
 
+	@Override
+	void release() {
+		if (dataMerger instanceof InflateMerger)
+			((InflateMerger) dataMerger).end();
+	}
+
 	void notifyValueChanged(@NonNull final BluetoothDevice device, @Nullable final byte[] value) {
 		// Keep a reference to the value callback, as it may change during execution
 		final DataReceivedCallback valueCallback = this.valueCallback;
@@ -239,13 +272,24 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 			final Data data = new Data(value);
 			handler.post(() -> valueCallback.onDataReceived(device, data));
 		} else {
-			handler.post(() -> {
-				if (progressCallback != null)
-					progressCallback.onPacketReceived(device, value, count);
-			});
+			final ReadProgressCallback progressCallback = this.progressCallback;
+			if (progressCallback != null) {
+				final int index = count;
+				handler.post(() -> progressCallback.onPacketReceived(device, value, index));
+			}
 			if (buffer == null)
 				buffer = new DataStream();
-			if (dataMerger.merge(buffer, value, count++)) {
+			final boolean complete;
+			try {
+				complete = dataMerger.merge(buffer, value, count++);
+			} catch (final CorruptedMessageException e) {
+				buffer = null;
+				count = 0;
+				notifyFail(device, e instanceof InvalidChecksumException ?
+						FailCallback.REASON_INVALID_CHECKSUM : FailCallback.REASON_VALIDATION);
+				return;
+			}
+			if (complete) {
 				final Data data = buffer.toData();
 				handler.post(() -> valueCallback.onDataReceived(device, data));
 				buffer = null;
@@ -255,6 +299,14 @@ public final class ReadRequest extends SimpleValueRequest<DataReceivedCallback>
 		}
 	}
 
+	/**
+	 * Prepares the request interrupted by a link loss to be executed again.
+	 */
+	void rewind() {
+		buffer = null;
+		count = 0;
+	}
+
 	boolean hasMore() {
 		return count > 0;
 	}
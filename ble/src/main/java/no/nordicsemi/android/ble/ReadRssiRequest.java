@@ -25,6 +25,8 @@ package no.nordicsemi.android.ble;
 import android.bluetooth.BluetoothDevice;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -53,6 +55,13 @@ public final class ReadRssiRequest extends SimpleValueRequest<RssiCallback> impl
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ReadRssiRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public ReadRssiRequest done(@NonNull final SuccessCallback callback) {
@@ -24,6 +24,8 @@ package no.nordicsemi.android.ble;
 
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
 import no.nordicsemi.android.ble.callback.FailCallback;
@@ -50,6 +52,13 @@ public final class ReliableWriteRequest extends RequestQueue {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public ReliableWriteRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public ReliableWriteRequest done(@NonNull final SuccessCallback callback) {
@@ -27,10 +27,13 @@ import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCallback;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
 import android.os.ConditionVariable;
 import android.os.Handler;
 import android.os.Looper;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -43,6 +46,7 @@ import no.nordicsemi.android.ble.callback.FailCallback;
 import no.nordicsemi.android.ble.callback.InvalidRequestCallback;
 import no.nordicsemi.android.ble.callback.SuccessCallback;
 import no.nordicsemi.android.ble.data.Data;
+import no.nordicsemi.android.ble.exception.InvalidRequestException;
 
 /**
  * On Android, when multiple BLE operations needs to be done, it is required to wait for a proper
@@ -101,8 +105,8 @@ public abstract class Request {
 
 	final ConditionVariable syncLock;
 	final Type type;
-	final BluetoothGattCharacteristic characteristic;
-	final BluetoothGattDescriptor descriptor;
+	BluetoothGattCharacteristic characteristic;
+	BluetoothGattDescriptor descriptor;
 	BeforeCallback beforeCallback;
 	SuccessCallback successCallback;
 	FailCallback failCallback;
@@ -112,6 +116,8 @@ public abstract class Request {
 	FailCallback internalFailCallback;
 	boolean enqueued;
 	boolean started, finished;
+	/** Whether the request should survive a link loss when the durable queue is enabled. */
+	boolean resumable;
 
 	Request(@NonNull final Type type) {
 		this.type = type;
@@ -176,6 +182,20 @@ public abstract class Request {
 		return this;
 	}
 
+	/**
+	 * Sets the executor that will be used to invoke callbacks. By default, the handler or
+	 * executor set in {@link BleManager} will be used. Use {@link BleManager#DIRECT_EXECUTOR}
+	 * to invoke callbacks directly on the thread that completed the request.
+	 *
+	 * @param executor The executor to invoke callbacks for this request.
+	 * @return The request.
+	 */
+	@NonNull
+	public Request setExecutor(@NonNull final Executor executor) {
+		this.handler = new ExecutorCallbackHandler(executor);
+		return this;
+	}
+
 	/**
 	 * Creates a new connect request. This allows to set a callback to the connect event,
 	 * just like any other request.
@@ -1166,6 +1186,115 @@ public abstract class Request {
 		requestHandler.enqueue(this);
 	}
 
+	/**
+	 * Enqueues the request for asynchronous execution and returns a future completed when
+	 * the request finishes. Unlike {@code await()}, no thread is blocked while the request
+	 * is executed, and the method may be called from any thread.
+	 * <p>
+	 * Callbacks set using {@link #done(SuccessCallback)}, {@link #fail(FailCallback)} and
+	 * {@link #invalid(InvalidRequestCallback)} are still called, before the future completes.
+	 *
+	 * @return The future.
+	 * @see SimpleValueRequest#toFuture(Class)
+	 */
+	@NonNull
+	public RequestFuture<Void> toFuture() {
+		return enqueueForFuture(null);
+	}
+
+	/**
+	 * Enqueues the request and returns a future completed with the given result when the
+	 * request succeeds.
+	 */
+	@NonNull
+	<E> RequestFuture<E> enqueueForFuture(@Nullable final E result) {
+		final RequestFuture<E> future = new RequestFuture<>();
+		final SuccessCallback sc = successCallback;
+		final FailCallback fc = failCallback;
+		final InvalidRequestCallback ic = invalidRequestCallback;
+		successCallback = device -> {
+			if (sc != null)
+				sc.onRequestCompleted(device);
+			future.complete(result);
+		};
+		failCallback = (device, status) -> {
+			if (fc != null)
+				fc.onRequestFailed(device, status);
+			future.fail(this, status);
+		};
+		invalidRequestCallback = () -> {
+			if (ic != null)
+				ic.onInvalidRequest();
+			future.fail(new InvalidRequestException(this));
+		};
+		enqueue();
+		return future;
+	}
+
+	/**
+	 * Creates a response object using the default constructor.
+	 */
+	@NonNull
+	static <E> E newResponse(@NonNull final Class<E> responseClass) {
+		try {
+			return responseClass.newInstance();
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Couldn't instantiate "
+					+ responseClass.getCanonicalName()
+					+ " class. Is the default constructor accessible?");
+		} catch (InstantiationException e) {
+			throw new IllegalArgumentException("Couldn't instantiate "
+					+ responseClass.getCanonicalName()
+					+ " class. Does it have a default constructor with no arguments?");
+		}
+	}
+
+	/**
+	 * Replaces the target characteristic or descriptor with the one with the same UUID and
+	 * instance ID from the given GATT client. This is required after the services were
+	 * discovered again, as the old instances are no longer valid.
+	 *
+	 * @param gatt the GATT client with discovered services.
+	 * @return True, if the attribute was found or the request does not target any attribute.
+	 */
+	boolean rebind(@NonNull final BluetoothGatt gatt) {
+		if (characteristic != null) {
+			final BluetoothGattCharacteristic newCharacteristic = find(gatt, characteristic);
+			if (newCharacteristic == null)
+				return false;
+			characteristic = newCharacteristic;
+		}
+		if (descriptor != null) {
+			final BluetoothGattCharacteristic newCharacteristic = find(gatt, descriptor.getCharacteristic());
+			if (newCharacteristic == null)
+				return false;
+			final BluetoothGattDescriptor newDescriptor = newCharacteristic.getDescriptor(descriptor.getUuid());
+			if (newDescriptor == null)
+				return false;
+			descriptor = newDescriptor;
+		}
+		return true;
+	}
+
+	@Nullable
+	private static BluetoothGattCharacteristic find(@NonNull final BluetoothGatt gatt,
+													@Nullable final BluetoothGattCharacteristic characteristic) {
+		if (characteristic == null)
+			return null;
+		final BluetoothGattService service = characteristic.getService();
+		for (final BluetoothGattService s : gatt.getServices()) {
+			if (service != null && (!s.getUuid().equals(service.getUuid())
+					|| s.getInstanceId() != service.getInstanceId()))
+				continue;
+			for (final BluetoothGattCharacteristic c : s.getCharacteristics()) {
+				if (c.getUuid().equals(characteristic.getUuid())
+						&& c.getInstanceId() == characteristic.getInstanceId())
+					return c;
+			}
+		}
+		return null;
+	}
+
 	void notifyStarted(@NonNull final BluetoothDevice device) {
 		if (!started) {
 			started = true;
@@ -1179,9 +1308,18 @@ public abstract class Request {
 		}
 	}
 
+	/**
+	 * Releases resources held by the request, e.g. native compression streams.
+	 * Called once, when the request has finished.
+	 */
+	void release() {
+		// do nothing
+	}
+
 	boolean notifySuccess(@NonNull final BluetoothDevice device) {
 		if (!finished) {
 			finished = true;
+			release();
 
 			if (internalSuccessCallback != null)
 				internalSuccessCallback.onRequestCompleted(device);
@@ -1197,6 +1335,7 @@ public abstract class Request {
 	void notifyFail(@NonNull final BluetoothDevice device, final int status) {
 		if (!finished) {
 			finished = true;
+			release();
 
 			if (internalFailCallback != null)
 				internalFailCallback.onRequestFailed(device, status);
@@ -1210,6 +1349,7 @@ public abstract class Request {
 	void notifyInvalidRequest() {
 		if (!finished) {
 			finished = true;
+			release();
 
 			handler.post(() -> {
 				if (invalidRequestCallback != null)
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.exception.BluetoothDisabledException;
+import no.nordicsemi.android.ble.exception.DeviceDisconnectedException;
+import no.nordicsemi.android.ble.exception.RequestFailedException;
+
+/**
+ * A result of a request enqueued using {@link Request#toFuture()} or
+ * {@link SimpleValueRequest#toFuture(Class)}.
+ * <p>
+ * Unlike {@code await()}, a future does not park a thread while the request is executed.
+ * Register a listener using {@link #whenComplete(Listener)} or combine many futures, also
+ * for different devices, using {@link #allOf(RequestFuture[])}. The future is completed from
+ * the request's done or fail callback, that is on the handler or executor set in
+ * {@link BleManager}.
+ * <p>
+ * The library supports Android versions older than Nougat, so this class does not extend
+ * {@link CompletableFuture}. On Android 7+ it may be converted using
+ * {@link #toCompletableFuture()}.
+ * <p>
+ * A failed future completes with {@link DeviceDisconnectedException},
+ * {@link BluetoothDisabledException}, {@link no.nordicsemi.android.ble.exception.InvalidRequestException}
+ * or {@link RequestFailedException}, the same exceptions as thrown by {@code await()}.
+ *
+ * @param <T> the type of the result.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class RequestFuture<T> implements Future<T> {
+
+	/**
+	 * A listener notified when the future completes.
+	 *
+	 * @param <T> the type of the result.
+	 */
+	public interface Listener<T> {
+		/**
+		 * Called when the future has completed.
+		 *
+		 * @param result the result, or null if failed.
+		 * @param error  the failure, or null if completed successfully.
+		 */
+		void onComplete(@Nullable final T result, @Nullable final Throwable error);
+	}
+
+	private List<Listener<? super T>> listeners;
+	private boolean done;
+	private T result;
+	private Throwable error;
+
+	RequestFuture() {
+		// Futures are created by requests.
+	}
+
+	/**
+	 * Returns a future completed when all given futures complete. If any of them failed,
+	 * the returned future fails with the first failure, in the order of given futures.
+	 *
+	 * @param futures the futures to wait for.
+	 * @return The combined future.
+	 */
+	@NonNull
+	public static RequestFuture<Void> allOf(@NonNull final RequestFuture<?>... futures) {
+		return allOf(Arrays.asList(futures));
+	}
+
+	/**
+	 * Returns a future completed when all given futures complete. If any of them failed,
+	 * the returned future fails with the first failure, in the order of given futures.
+	 *
+	 * @param futures the futures to wait for.
+	 * @return The combined future.
+	 */
+	@NonNull
+	public static RequestFuture<Void> allOf(@NonNull final Collection<? extends RequestFuture<?>> futures) {
+		final RequestFuture<Void> all = new RequestFuture<>();
+		final List<RequestFuture<?>> list = new ArrayList<>(futures);
+		if (list.isEmpty()) {
+			all.complete(null);
+			return all;
+		}
+		final int[] remaining = { list.size() };
+		for (final RequestFuture<?> future : list) {
+			future.whenComplete((r, e) -> {
+				synchronized (remaining) {
+					if (--remaining[0] > 0)
+						return;
+				}
+				for (final RequestFuture<?> f : list) {
+					final Throwable failure = f.getFailure();
+					if (failure != null) {
+						all.fail(failure);
+						return;
+					}
+				}
+				all.complete(null);
+			});
+		}
+		return all;
+	}
+
+	/**
+	 * Registers a listener called when the future completes. If it has already completed,
+	 * the listener is called immediately on the calling thread.
+	 *
+	 * @param listener the listener.
+	 * @return This future.
+	 */
+	@NonNull
+	public RequestFuture<T> whenComplete(@NonNull final Listener<? super T> listener) {
+		synchronized (this) {
+			if (!done) {
+				if (listeners == null)
+					listeners = new ArrayList<>();
+				listeners.add(listener);
+				return this;
+			}
+		}
+		listener.onComplete(result, error);
+		return this;
+	}
+
+	/**
+	 * Returns a {@link CompletableFuture} completed together with this future.
+	 *
+	 * @return The completable future.
+	 */
+	@RequiresApi(api = Build.VERSION_CODES.N)
+	@NonNull
+	public CompletableFuture<T> toCompletableFuture() {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		whenComplete((r, e) -> {
+			if (e != null)
+				future.completeExceptionally(e);
+			else
+				future.complete(r);
+		});
+		return future;
+	}
+
+	/**
+	 * Completes the future with {@link CancellationException}. The request is not cancelled,
+	 * use {@link BleManager#cancelQueue()} for that.
+	 *
+	 * @param mayInterruptIfRunning ignored.
+	 * @return True, if the future was cancelled, false if it has already completed.
+	 */
+	@Override
+	public boolean cancel(final boolean mayInterruptIfRunning) {
+		return fail(new CancellationException());
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return error instanceof CancellationException;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Returns whether the future has completed with a failure or was cancelled.
+	 *
+	 * @return True, if failed.
+	 */
+	public synchronized boolean isCompletedExceptionally() {
+		return error != null;
+	}
+
+	@Override
+	public synchronized T get() throws InterruptedException, ExecutionException {
+		while (!done)
+			wait();
+		return getResult();
+	}
+
+	@Override
+	public synchronized T get(final long timeout, @NonNull final TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!done) {
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				throw new TimeoutException();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return getResult();
+	}
+
+	private T getResult() throws ExecutionException {
+		if (error instanceof CancellationException)
+			throw (CancellationException) error;
+		if (error != null)
+			throw new ExecutionException(error);
+		return result;
+	}
+
+	@Nullable
+	private synchronized Throwable getFailure() {
+		return error;
+	}
+
+	boolean complete(@Nullable final T result) {
+		return finish(result, null);
+	}
+
+	boolean fail(@NonNull final Throwable error) {
+		return finish(null, error);
+	}
+
+	/**
+	 * Fails the future with the exception matching the given fail reason.
+	 */
+	boolean fail(@NonNull final Request request, final int status) {
+		switch (status) {
+			case FailCallback.REASON_DEVICE_DISCONNECTED:
+				return fail(new DeviceDisconnectedException());
+			case FailCallback.REASON_BLUETOOTH_DISABLED:
+				return fail(new BluetoothDisabledException());
+			default:
+				return fail(new RequestFailedException(request, status));
+		}
+	}
+
+	private boolean finish(@Nullable final T result, @Nullable final Throwable error) {
+		final List<Listener<? super T>> listeners;
+		synchronized (this) {
+			if (done)
+				return false;
+			done = true;
+			this.result = result;
+			this.error = error;
+			listeners = this.listeners;
+			this.listeners = null;
+			notifyAll();
+		}
+		if (listeners != null) {
+			for (final Listener<? super T> listener : listeners)
+				listener.onComplete(result, error);
+		}
+		return true;
+	}
+}
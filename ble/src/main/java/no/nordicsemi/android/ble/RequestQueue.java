@@ -26,6 +26,7 @@ import android.os.Handler;
 
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -62,6 +63,13 @@ public class RequestQueue extends SimpleRequest {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public RequestQueue setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public RequestQueue done(@NonNull final SuccessCallback callback) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.annotation.OverflowPolicy;
+import no.nordicsemi.android.ble.data.Data;
+
+/**
+ * A bounded, lock-free ring buffer of received values with a single producer (the thread
+ * delivering GATT events) and a single consumer (the callback thread).
+ * <p>
+ * The slots are allocated once. When the buffer is full, the {@link OverflowPolicy} decides
+ * what happens with the new value. Dropping old values is done by the producer advancing the
+ * consumer's index with a CAS, so the consumer confirms each slot it has read the same way.
+ */
+final class RingBuffer {
+	interface Consumer {
+		void onValue(@NonNull final Data value, final long firstTimestamp, final long timestamp);
+	}
+
+	private final Data[] values;
+	private final long[] firstTimestamps;
+	private final long[] timestamps;
+	private final int mask;
+	private final int policy;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates the ring buffer.
+	 *
+	 * @param capacity the minimum capacity, rounded up to a power of 2.
+	 * @param policy   the overflow policy.
+	 */
+	RingBuffer(@IntRange(from = 1) final int capacity, @OverflowPolicy final int policy) {
+		final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.values = new Data[size];
+		this.firstTimestamps = new long[size];
+		this.timestamps = new long[size];
+		this.mask = size - 1;
+		this.policy = policy;
+	}
+
+	/**
+	 * Adds the value to the buffer. Must be called only from the producer thread.
+	 *
+	 * @param value          the value.
+	 * @param firstTimestamp the receipt timestamp of the first packet of the value.
+	 * @param timestamp      the receipt timestamp of the value.
+	 * @return True, if the value was added, false if it was dropped.
+	 */
+	boolean offer(@NonNull final Data value, final long firstTimestamp, final long timestamp) {
+		final long t = tail.get();
+		long h;
+		while (t - (h = head.get()) >= values.length) {
+			switch (policy) {
+				case ValueChangedCallback.OVERFLOW_DROP_NEWEST:
+					dropped.incrementAndGet();
+					return false;
+				case ValueChangedCallback.OVERFLOW_DROP_OLDEST:
+					if (head.compareAndSet(h, h + 1))
+						dropped.incrementAndGet();
+					break;
+				case ValueChangedCallback.OVERFLOW_CONFLATE:
+					if (head.compareAndSet(h, t))
+						dropped.addAndGet(t - h);
+					break;
+				case ValueChangedCallback.OVERFLOW_BLOCK:
+				default:
+					LockSupport.parkNanos(50_000);
+					break;
+			}
+		}
+		final int index = (int) t & mask;
+		values[index] = value;
+		firstTimestamps[index] = firstTimestamp;
+		timestamps[index] = timestamp;
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Passes all values available in the buffer to the consumer. Must be called only from
+	 * the consumer thread.
+	 *
+	 * @param consumer the consumer.
+	 * @return Number of values consumed.
+	 */
+	int drain(@NonNull final Consumer consumer) {
+		int count = 0;
+		long h;
+		while ((h = head.get()) < tail.get()) {
+			final int index = (int) h & mask;
+			final Data value = values[index];
+			final long firstTimestamp = firstTimestamps[index];
+			final long timestamp = timestamps[index];
+			// If the producer has dropped the slot in the meantime, the value may be invalid.
+			if (!head.compareAndSet(h, h + 1))
+				continue;
+			consumer.onValue(value, firstTimestamp, timestamp);
+			count++;
+		}
+		return count;
+	}
+
+	boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+
+	/**
+	 * Returns whether the producer would wait for the consumer when adding a value.
+	 *
+	 * @return True, if the buffer is full and the overflow policy is to block.
+	 */
+	boolean wouldBlock() {
+		return policy == ValueChangedCallback.OVERFLOW_BLOCK
+				&& tail.get() - head.get() >= values.length;
+	}
+
+	@IntRange(from = 1)
+	int capacity() {
+		return values.length;
+	}
+
+	@IntRange(from = 0)
+	long getDroppedCount() {
+		return dropped.get();
+	}
+}
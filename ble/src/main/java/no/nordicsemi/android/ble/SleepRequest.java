@@ -24,6 +24,8 @@ package no.nordicsemi.android.ble;
 
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import no.nordicsemi.android.ble.callback.BeforeCallback;
@@ -53,6 +55,13 @@ public final class SleepRequest extends SimpleRequest implements Operation {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public SleepRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@NonNull
 	@Override
 	public SleepRequest done(@NonNull final SuccessCallback callback) {
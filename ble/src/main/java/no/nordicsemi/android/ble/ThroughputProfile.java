@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import androidx.annotation.IntRange;
+import no.nordicsemi.android.ble.annotation.PhyValue;
+import no.nordicsemi.android.ble.callback.PhyCallback;
+
+/**
+ * Connection parameters negotiated using {@link ConnectRequest#throughputProfile()}, with
+ * the theoretical maximum throughput they allow.
+ * <p>
+ * The theoretical throughput assumes that LE Data Length Extension is used, that the
+ * controllers fill every connection event with packets and that each data packet is
+ * acknowledged by an empty packet. Real throughput is lower, as phones limit the number
+ * of packets per connection event.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ThroughputProfile {
+	/** Inter frame space, in microseconds. */
+	private static final int T_IFS = 150;
+	/** Maximum Link Layer payload with Data Length Extension. */
+	private static final int MAX_LL_PAYLOAD = 251;
+	/** L2CAP header length. */
+	private static final int L2CAP_HEADER = 4;
+
+	private final int mtu;
+	private final int txPhy;
+	private final int rxPhy;
+	private final int interval;
+	private final int latency;
+	private final int timeout;
+
+	ThroughputProfile(final int mtu, @PhyValue final int txPhy, @PhyValue final int rxPhy,
+					  final int interval, final int latency, final int timeout) {
+		this.mtu = mtu;
+		this.txPhy = txPhy;
+		this.rxPhy = rxPhy;
+		this.interval = interval;
+		this.latency = latency;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns the negotiated MTU.
+	 *
+	 * @return The MTU.
+	 */
+	@IntRange(from = 23, to = 517)
+	public int getMtu() {
+		return mtu;
+	}
+
+	/**
+	 * Returns the PHY used for transmitting.
+	 *
+	 * @return One of {@link PhyCallback#PHY_LE_1M}, {@link PhyCallback#PHY_LE_2M},
+	 * {@link PhyCallback#PHY_LE_CODED}.
+	 */
+	@PhyValue
+	public int getTxPhy() {
+		return txPhy;
+	}
+
+	/**
+	 * Returns the PHY used for receiving.
+	 *
+	 * @return One of {@link PhyCallback#PHY_LE_1M}, {@link PhyCallback#PHY_LE_2M},
+	 * {@link PhyCallback#PHY_LE_CODED}.
+	 */
+	@PhyValue
+	public int getRxPhy() {
+		return rxPhy;
+	}
+
+	/**
+	 * Returns the connection interval, in 1.25 ms units. The interval is reported only on
+	 * Android Oreo or newer.
+	 *
+	 * @return The connection interval, or 0 if unknown.
+	 */
+	@IntRange(from = 0, to = 3200)
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Returns the slave latency, in number of connection events.
+	 *
+	 * @return The latency, 0 if unknown.
+	 */
+	@IntRange(from = 0, to = 499)
+	public int getLatency() {
+		return latency;
+	}
+
+	/**
+	 * Returns the supervision timeout, in 10 ms units.
+	 *
+	 * @return The supervision timeout, or 0 if unknown.
+	 */
+	@IntRange(from = 0, to = 3200)
+	public int getSupervisionTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Returns the theoretical maximum throughput of writes without response, in bytes of
+	 * application data per second.
+	 *
+	 * @return The maximum throughput in bytes per second.
+	 */
+	public int getMaxTxThroughput() {
+		return maxThroughput(txPhy, rxPhy);
+	}
+
+	/**
+	 * Returns the theoretical maximum throughput of notifications, in bytes of application
+	 * data per second.
+	 *
+	 * @return The maximum throughput in bytes per second.
+	 */
+	public int getMaxRxThroughput() {
+		return maxThroughput(rxPhy, txPhy);
+	}
+
+	private int maxThroughput(final int dataPhy, final int ackPhy) {
+		// An ATT PDU (MTU bytes + L2CAP header) is sent in one or more LL packets,
+		// of which MTU - 3 bytes are the application data.
+		final int pdu = mtu + L2CAP_HEADER;
+		final int fragment = Math.min(MAX_LL_PAYLOAD, pdu);
+		final int exchange = airTime(fragment, dataPhy) + T_IFS + airTime(0, ackPhy) + T_IFS;
+		if (interval == 0) {
+			return (int) ((long) fragment * (mtu - 3) * 1_000_000 / ((long) pdu * exchange));
+		}
+		final int intervalUs = interval * 1250;
+		final int packetsPerEvent = Math.max(1, intervalUs / exchange);
+		return (int) ((long) packetsPerEvent * fragment * (mtu - 3) * 1_000_000
+				/ ((long) pdu * intervalUs));
+	}
+
+	/**
+	 * Returns the time needed to send a LL packet with given payload, in microseconds.
+	 */
+	static int airTime(final int payload, final int phy) {
+		// Header (2) + payload + CRC (3)
+		final int pdu = 2 + payload + 3;
+		switch (phy) {
+			case PhyCallback.PHY_LE_2M:
+				// Preamble (2) + Access Address (4), 4 us per byte
+				return (2 + 4 + pdu) * 4;
+			case PhyCallback.PHY_LE_CODED:
+				// Preamble, Access Address, CI and TERM1 (376 us), PDU with S=8 coding
+				// (64 us per byte) and TERM2 (24 us)
+				return 376 + pdu * 64 + 24;
+			case PhyCallback.PHY_LE_1M:
+			default:
+				// Preamble (1) + Access Address (4), 8 us per byte
+				return (1 + 4 + pdu) * 8;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ThroughputProfile{" +
+				"mtu=" + mtu +
+				", txPhy=" + txPhy +
+				", rxPhy=" + rxPhy +
+				", interval=" + (interval * 1.25) + "ms" +
+				", latency=" + latency +
+				", timeout=" + (timeout * 10) + "ms" +
+				", maxTx=" + getMaxTxThroughput() + "B/s" +
+				", maxRx=" + getMaxRxThroughput() + "B/s" +
+				'}';
+	}
+}
@@ -6,6 +6,8 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -46,6 +48,13 @@ public abstract class TimeoutableRequest extends Request {
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public TimeoutableRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	/**
 	 * Sets the operation timeout.
 	 * When the timeout occurs, the request will fail with {@link FailCallback#REASON_TIMEOUT}.
@@ -180,9 +189,20 @@ public abstract class TimeoutableRequest extends Request {
 		timeout(timeout).await();
 	}
 
+	/**
+	 * Cancels the timeout of a started request, for example when it gets suspended.
+	 * The timeout starts again when the request is started again.
+	 */
+	void cancelTimeout() {
+		if (timeoutCallback != null) {
+			handler.removeCallbacks(timeoutCallback);
+			timeoutCallback = null;
+		}
+	}
+
 	@Override
 	void notifyStarted(@NonNull final BluetoothDevice device) {
-		if (timeout > 0L) {
+		if (timeout > 0L && timeoutCallback == null) {
 			timeoutCallback = () -> {
 				timeoutCallback = null;
 				if (!finished) {
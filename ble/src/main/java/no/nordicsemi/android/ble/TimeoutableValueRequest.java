@@ -235,4 +235,41 @@ public abstract class TimeoutableValueRequest<T> extends TimeoutableRequest {
 			BluetoothDisabledException, InvalidRequestException {
 		return timeout(timeout).await(response);
 	}
+
+	/**
+	 * Enqueues the request and returns a future completed with the given response object,
+	 * filled with the request response. Unlike {@code await(...)}, no thread is blocked while
+	 * the request is executed.
+	 * <p>
+	 * The value callback set using {@link #with(T)} is replaced by the response.
+	 *
+	 * @param response the response object.
+	 * @param <E>      a response class.
+	 * @return The future.
+	 * @see #toFuture(Class)
+	 */
+	@NonNull
+	public <E extends T> RequestFuture<E> toFuture(@NonNull final E response) {
+		with(response);
+		return enqueueForFuture(response);
+	}
+
+	/**
+	 * Enqueues the request and returns a future completed with a response object of the
+	 * given class, e.g. {@link no.nordicsemi.android.ble.response.ReadResponse},
+	 * {@link no.nordicsemi.android.ble.response.MtuResult},
+	 * {@link no.nordicsemi.android.ble.response.PhyResult} or
+	 * {@link no.nordicsemi.android.ble.response.RssiResult}.
+	 *
+	 * @param responseClass the response class. This class will be instantiate, therefore it has
+	 *                      to have a default constructor.
+	 * @param <E>           a response class.
+	 * @return The future.
+	 * @throws IllegalArgumentException thrown when the response class could not be instantiated.
+	 * @see #toFuture(Object)
+	 */
+	@NonNull
+	public <E extends T> RequestFuture<E> toFuture(@NonNull final Class<E> responseClass) {
+		return toFuture(newResponse(responseClass));
+	}
 }
@@ -24,25 +24,63 @@ package no.nordicsemi.android.ble;
 
 import android.bluetooth.BluetoothDevice;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.annotation.OverflowPolicy;
+import no.nordicsemi.android.ble.callback.BatchReceivedCallback;
 import no.nordicsemi.android.ble.callback.DataReceivedCallback;
 import no.nordicsemi.android.ble.callback.ReadProgressCallback;
+import no.nordicsemi.android.ble.callback.TimestampedDataReceivedCallback;
 import no.nordicsemi.android.ble.data.Data;
+import no.nordicsemi.android.ble.data.DataBatch;
 import no.nordicsemi.android.ble.data.DataFilter;
 import no.nordicsemi.android.ble.data.DataMerger;
 import no.nordicsemi.android.ble.data.DataStream;
+import no.nordicsemi.android.ble.data.InflateMerger;
+import no.nordicsemi.android.ble.data.ThroughputMeter;
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public class ValueChangedCallback {
+	/**
+	 * When the ring buffer is full, the thread delivering GATT events waits until
+	 * the callback thread makes room.
+	 */
+	public static final int OVERFLOW_BLOCK = 0;
+	/** When the ring buffer is full, the new value is dropped. */
+	public static final int OVERFLOW_DROP_NEWEST = 1;
+	/** When the ring buffer is full, the oldest value in the buffer is dropped. */
+	public static final int OVERFLOW_DROP_OLDEST = 2;
+	/** When the ring buffer is full, all values in the buffer are replaced by the new one. */
+	public static final int OVERFLOW_CONFLATE = 3;
+
 	private ReadProgressCallback progressCallback;
 	private DataReceivedCallback valueCallback;
+	private TimestampedDataReceivedCallback timestampedCallback;
+	private BatchReceivedCallback batchCallback;
+	private int maxBatchSize;
+	private long maxBatchLatency;
+	private Batch batch;
+	private RingBuffer ringBuffer;
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+	private BluetoothDevice device;
 	private DataMerger dataMerger;
 	private DataStream buffer;
 	private DataFilter filter;
+	private ThroughputMeter meter;
 	private CallbackHandler handler;
+	private ValueChangedCallback[] routes;
+	private ValueChangedCallback pendingRoute;
+	private int routingKeyOffset = 0;
 	private int count = 0;
+	private long firstTimestamp;
 
 	ValueChangedCallback(final CallbackHandler handler) {
 		this.handler = handler;
@@ -65,10 +103,33 @@ public class ValueChangedCallback {
 			public void removeCallbacks(@NonNull final Runnable r) {
 				handler.removeCallbacks(r);
 			}
+
+			@Override
+			public boolean isCurrentThread() {
+				return handler.getLooper() == Looper.myLooper();
+			}
 		};
 		return this;
 	}
 
+	/**
+	 * Sets the executor that will be used to invoke callbacks. Parsing received data may
+	 * then be moved from the UI thread to a shared thread pool. Use
+	 * {@link BleManager#DIRECT_EXECUTOR} to invoke callbacks directly on the thread that
+	 * received the notification, which gives the lowest latency, but blocks receiving
+	 * further events until the callback returns.
+	 * <p>
+	 * Callbacks may be called concurrently if the executor uses more than one thread.
+	 *
+	 * @param executor the executor to invoke callbacks.
+	 * @return The request.
+	 */
+	@NonNull
+	public ValueChangedCallback setExecutor(@NonNull final Executor executor) {
+		this.handler = new ExecutorCallbackHandler(executor);
+		return this;
+	}
+
 	/**
 	 * Sets the asynchronous data callback that will be called whenever a notification or
 	 * an indication is received on given characteristic.
@@ -79,6 +140,57 @@ public class ValueChangedCallback {
 	@NonNull
 	public ValueChangedCallback with(@NonNull final DataReceivedCallback callback) {
 		this.valueCallback = callback;
+		this.timestampedCallback = null;
+		this.batchCallback = null;
+		return this;
+	}
+
+	/**
+	 * Sets the asynchronous data callback that will be called whenever a notification or
+	 * an indication is received on given characteristic, together with the time the value
+	 * was received. Use this callback when the handler latency must not affect the
+	 * timing analysis, e.g. to measure jitter of a sensor.
+	 * <p>
+	 * This replaces the callback set using {@link #with(DataReceivedCallback)}.
+	 *
+	 * @param callback the timestamped data callback.
+	 * @return The request.
+	 */
+	@NonNull
+	public ValueChangedCallback with(@NonNull final TimestampedDataReceivedCallback callback) {
+		this.timestampedCallback = callback;
+		this.valueCallback = null;
+		this.batchCallback = null;
+		return this;
+	}
+
+	/**
+	 * Sets the asynchronous data callback that will be called with all values received since
+	 * the last call, instead of calling a {@link DataReceivedCallback} for each of them.
+	 * This reduces the number of messages posted to the handler when notifications arrive
+	 * at a high rate.
+	 * <p>
+	 * A batch is delivered when it reaches the maximum size, or when the maximum latency
+	 * has elapsed since its first value was received. With the latency set to 0, all values
+	 * received before the handler gets to run are delivered together.
+	 * <p>
+	 * This replaces the callback set using {@link #with(DataReceivedCallback)}.
+	 *
+	 * @param maxSize    the maximum number of values in a single batch.
+	 * @param maxLatency the maximum time, in milliseconds, the first value may wait for
+	 *                   the batch to be delivered.
+	 * @param callback   the batch callback.
+	 * @return The request.
+	 */
+	@NonNull
+	public ValueChangedCallback batch(@IntRange(from = 1) final int maxSize,
+									  @IntRange(from = 0) final long maxLatency,
+									  @NonNull final BatchReceivedCallback callback) {
+		this.batchCallback = callback;
+		this.valueCallback = null;
+		this.timestampedCallback = null;
+		this.maxBatchSize = Math.max(1, maxSize);
+		this.maxBatchLatency = Math.max(0, maxLatency);
 		return this;
 	}
 
@@ -97,6 +209,7 @@ public class ValueChangedCallback {
 	/**
 	 * Adds a merger that will be used to merge multiple packets into a single Data.
 	 * The merger may modify each packet if necessary.
+	 * Use {@link no.nordicsemi.android.ble.data.InflateMerger} to decompress compressed data.
 	 *
 	 * @return The request.
 	 */
@@ -121,11 +234,113 @@ public class ValueChangedCallback {
 		return this;
 	}
 
+	/**
+	 * Returns a callback for packets with given routing key, for example an op code of
+	 * a control point response. The key is the byte at offset set with
+	 * {@link #routingKeyOffset(int)}, by default the first byte. Packets are routed using
+	 * a lookup table, so the number of routes doesn't affect the performance.
+	 * <p>
+	 * Each route may have its own data callback, filter, merger and handler. Only the first
+	 * packet of a message is routed by its key. When the route's merger expects more
+	 * packets, the following packets are delivered to the same route until the message is
+	 * complete. Packets not matching any route are delivered to this callback.
+	 * <p>
+	 * The route is created with the current handler of this callback.
+	 *
+	 * @param key the routing key, e.g. an op code.
+	 * @return The callback for given key.
+	 */
+	@NonNull
+	public ValueChangedCallback route(@IntRange(from = 0, to = 255) final int key) {
+		if (routes == null)
+			routes = new ValueChangedCallback[256];
+		ValueChangedCallback route = routes[key & 0xFF];
+		if (route == null) {
+			route = routes[key & 0xFF] = new ValueChangedCallback(handler);
+		}
+		return route;
+	}
+
+	/**
+	 * Sets the offset of the byte used as a routing key, see {@link #route(int)}.
+	 * By default, the first byte is used. Packets shorter than offset + 1 are not routed.
+	 *
+	 * @param offset the offset of the routing key in each packet.
+	 * @return The callback.
+	 */
+	@NonNull
+	public ValueChangedCallback routingKeyOffset(@IntRange(from = 0) final int offset) {
+		this.routingKeyOffset = offset;
+		return this;
+	}
+
+	/**
+	 * Adds a bounded ring buffer between the thread receiving notifications and the data
+	 * callback. Instead of posting a task for each value, values are stored in the buffer
+	 * and delivered in order on the callback thread. When the callback can't keep up,
+	 * the buffer doesn't grow; the overflow policy decides which values are dropped.
+	 * <p>
+	 * The ring buffer is used only with the callback set using
+	 * {@link #with(DataReceivedCallback)} or {@link #with(TimestampedDataReceivedCallback)}.
+	 *
+	 * @param capacity the capacity of the buffer, rounded up to the power of 2.
+	 * @param policy   what should happen when the buffer is full. {@link #OVERFLOW_BLOCK}
+	 *                 blocks the binder thread delivering GATT events and should be used
+	 *                 with care. If values are received on the callback thread, e.g. when
+	 *                 the same {@link EventLoop} is used for GATT events and callbacks,
+	 *                 the buffered values are delivered right away instead of blocking.
+	 * @return The request.
+	 */
+	@NonNull
+	public ValueChangedCallback ringBuffer(@IntRange(from = 1) final int capacity,
+										   @OverflowPolicy final int policy) {
+		this.ringBuffer = new RingBuffer(capacity, policy);
+		return this;
+	}
+
+	/**
+	 * Returns the number of values dropped by the ring buffer, see
+	 * {@link #ringBuffer(int, int)}.
+	 *
+	 * @return The number of dropped values.
+	 */
+	@IntRange(from = 0)
+	public long getDroppedCount() {
+		final RingBuffer ringBuffer = this.ringBuffer;
+		return ringBuffer != null ? ringBuffer.getDroppedCount() : 0;
+	}
+
+	/**
+	 * Sets a meter that will record each packet received by this callback, before merging.
+	 * Packets rejected by the {@link #filter(DataFilter) filter} are not recorded.
+	 * Use {@link ThroughputMeter#getStats()} to get the throughput, inter-arrival times
+	 * and the longest gap between packets.
+	 *
+	 * @param meter the meter.
+	 * @return The request.
+	 */
+	@NonNull
+	public ValueChangedCallback meter(@NonNull final ThroughputMeter meter) {
+		this.meter = meter;
+		return this;
+	}
+
 	ValueChangedCallback free() {
 		valueCallback = null;
+		timestampedCallback = null;
+		batchCallback = null;
+		ringBuffer = null;
+		synchronized (this) {
+			batch = null;
+		}
+		if (dataMerger instanceof InflateMerger)
+			((InflateMerger) dataMerger).end();
 		dataMerger = null;
 		progressCallback = null;
 		buffer = null;
+		routes = null;
+		pendingRoute = null;
+		meter = null;
 		return this;
 	}
 
@@ -133,32 +348,194 @@ public class ValueChangedCallback {
 		return filter == null || filter.filter(packet);
 	}
 
+	boolean hasMore() {
+		return count > 0;
+	}
+
 	void notifyValueChanged(@NonNull final BluetoothDevice device, @Nullable final byte[] value) {
-		// Keep a reference to the value callback, as it may change during execution
-		final DataReceivedCallback valueCallback = this.valueCallback;
+		notifyValueChanged(device, value,
+				batchCallback != null || timestampedCallback != null || meter != null
+						? SystemClock.elapsedRealtimeNanos() : 0);
+	}
+
+	/**
+	 * Called when a new value was received.
+	 *
+	 * @param device    the device.
+	 * @param value     the received packet.
+	 * @param timestamp the time the packet was received, in
+	 *                  {@link SystemClock#elapsedRealtimeNanos()} time base.
+	 */
+	void notifyValueChanged(@NonNull final BluetoothDevice device, @Nullable final byte[] value,
+							final long timestamp) {
+		final ThroughputMeter meter = this.meter;
+		if (meter != null)
+			meter.record(value != null ? value.length : 0, timestamp);
+
+		// Continuation packets are delivered to the route that received the first packet
+		if (routes != null) {
+			ValueChangedCallback route = pendingRoute;
+			if (route == null && value != null && value.length > routingKeyOffset) {
+				route = routes[value[routingKeyOffset] & 0xFF];
+			}
+			if (route != null) {
+				if (route.matches(value)) {
+					route.notifyValueChanged(device, value, timestamp);
+					pendingRoute = route.hasMore() ? route : null;
+				}
+				return;
+			}
+		}
 
 		// With no value callback there is no need for any merging
-		if (valueCallback == null) {
+		if (valueCallback == null && timestampedCallback == null && batchCallback == null) {
 			return;
 		}
 
 		if (dataMerger == null) {
-			final Data data = new Data(value);
-			handler.post(() -> valueCallback.onDataReceived(device, data));
+			deliver(device, new Data(value), timestamp, timestamp);
 		} else {
-			handler.post(() -> {
-				if (progressCallback != null)
-					progressCallback.onPacketReceived(device, value, count);
-			});
+			final ReadProgressCallback progressCallback = this.progressCallback;
+			if (progressCallback != null) {
+				final int index = count;
+				handler.post(() -> progressCallback.onPacketReceived(device, value, index));
+			}
 			if (buffer == null)
 				buffer = new DataStream();
-			if (dataMerger.merge(buffer, value, count++)) {
+			if (count == 0)
+				firstTimestamp = timestamp;
+			final boolean complete;
+			try {
+				complete = dataMerger.merge(buffer, value, count++);
+			} catch (final CorruptedMessageException e) {
+				// Discard the corrupted message and start over with the next packet.
+				buffer = null;
+				count = 0;
+				return;
+			}
+			if (complete) {
 				final Data data = buffer.toData();
-				handler.post(() -> valueCallback.onDataReceived(device, data));
 				buffer = null;
 				count = 0;
+				deliver(device, data, firstTimestamp, timestamp);
 			} // else
 			// wait for more packets to be merged
 		}
 	}
+
+	/**
+	 * Delivers the value to the data callback, or adds it to the current batch.
+	 */
+	private void deliver(@NonNull final BluetoothDevice device, @NonNull final Data data,
+						 final long firstTimestamp, final long timestamp) {
+		// Keep a reference to the value callbacks, as they may change during execution
+		final DataReceivedCallback valueCallback = this.valueCallback;
+		final TimestampedDataReceivedCallback timestampedCallback = this.timestampedCallback;
+		if (valueCallback != null || timestampedCallback != null) {
+			final RingBuffer ringBuffer = this.ringBuffer;
+			if (ringBuffer != null) {
+				this.device = device;
+				// When values are received on the callback thread (e.g. when the same event loop
+				// is used for GATT events and callbacks), blocking would wait forever for the
+				// drain task queued behind this one. Deliver the buffered values now instead.
+				if (ringBuffer.wouldBlock() && handler.isCurrentThread())
+					drainTask.run();
+				if (ringBuffer.offer(data, firstTimestamp, timestamp)
+						&& drainScheduled.compareAndSet(false, true))
+					handler.post(drainTask);
+			} else if (valueCallback != null) {
+				handler.post(() -> valueCallback.onDataReceived(device, data));
+			} else {
+				handler.post(() -> timestampedCallback
+						.onDataReceived(device, data, firstTimestamp, timestamp));
+			}
+			return;
+		}
+		if (batchCallback == null)
+			return;
+
+		final Batch batch;
+		final boolean created;
+		final boolean full;
+		synchronized (this) {
+			created = this.batch == null;
+			if (created)
+				this.batch = new Batch(device, maxBatchSize);
+			batch = this.batch;
+			batch.add(data, timestamp);
+			full = batch.size == batch.data.length;
+			if (full)
+				this.batch = null;
+		}
+		// The batch is posted once, when created. If it gets full before its time,
+		// it is delivered as soon as possible.
+		if (created && (full || maxBatchLatency == 0)) {
+			handler.post(batch);
+		} else if (created) {
+			handler.postDelayed(batch, maxBatchLatency);
+		} else if (full && maxBatchLatency > 0) {
+			handler.removeCallbacks(batch);
+			handler.post(batch);
+		}
+	}
+
+	private final Runnable drainTask = new Runnable() {
+		private final RingBuffer.Consumer consumer = (value, firstTimestamp, timestamp) -> {
+			final DataReceivedCallback valueCallback = ValueChangedCallback.this.valueCallback;
+			final TimestampedDataReceivedCallback timestampedCallback =
+					ValueChangedCallback.this.timestampedCallback;
+			if (valueCallback != null)
+				valueCallback.onDataReceived(device, value);
+			else if (timestampedCallback != null)
+				timestampedCallback.onDataReceived(device, value, firstTimestamp, timestamp);
+		};
+
+		@Override
+		public void run() {
+			final RingBuffer ringBuffer = ValueChangedCallback.this.ringBuffer;
+			if (ringBuffer == null) {
+				drainScheduled.set(false);
+				return;
+			}
+			do {
+				ringBuffer.drain(consumer);
+				drainScheduled.set(false);
+				// Values added after the last drain, but before the flag was cleared,
+				// would not schedule another drain.
+			} while (!ringBuffer.isEmpty() && drainScheduled.compareAndSet(false, true));
+		}
+	};
+
+	private final class Batch implements Runnable {
+		private final BluetoothDevice device;
+		private final Data[] data;
+		private final long[] timestamps;
+		private int size;
+		private boolean delivered;
+
+		private Batch(@NonNull final BluetoothDevice device, final int capacity) {
+			this.device = device;
+			this.data = new Data[capacity];
+			this.timestamps = new long[capacity];
+		}
+
+		private void add(@NonNull final Data value, final long timestamp) {
+			data[size] = value;
+			timestamps[size++] = timestamp;
+		}
+
+		@Override
+		public void run() {
+			synchronized (ValueChangedCallback.this) {
+				if (delivered)
+					return;
+				delivered = true;
+				if (batch == this)
+					batch = null;
+			}
+			final BatchReceivedCallback callback = batchCallback;
+			if (callback != null)
+				callback.onBatchReceived(device, new DataBatch(data, timestamps, size));
+		}
+	}
 }
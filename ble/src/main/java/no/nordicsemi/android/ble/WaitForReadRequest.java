@@ -5,6 +5,8 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -78,6 +80,13 @@ public final class WaitForReadRequest extends AwaitingRequest<DataSentCallback>
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public WaitForReadRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public WaitForReadRequest done(@NonNull final SuccessCallback callback) {
@@ -27,6 +27,8 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.os.Handler;
 
+import java.util.concurrent.Executor;
+
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -41,8 +43,11 @@ import no.nordicsemi.android.ble.data.Data;
 import no.nordicsemi.android.ble.data.DataFilter;
 import no.nordicsemi.android.ble.data.DataMerger;
 import no.nordicsemi.android.ble.data.DataStream;
+import no.nordicsemi.android.ble.data.InflateMerger;
 import no.nordicsemi.android.ble.exception.BluetoothDisabledException;
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
 import no.nordicsemi.android.ble.exception.DeviceDisconnectedException;
+import no.nordicsemi.android.ble.exception.InvalidChecksumException;
 import no.nordicsemi.android.ble.exception.InvalidDataException;
 import no.nordicsemi.android.ble.exception.InvalidRequestException;
 import no.nordicsemi.android.ble.exception.RequestFailedException;
@@ -81,6 +86,13 @@ public final class WaitForValueChangedRequest extends AwaitingRequest<DataReceiv
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public WaitForValueChangedRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@NonNull
 	@Override
 	public WaitForValueChangedRequest timeout(@IntRange(from = 0) final long timeout) {
@@ -144,6 +156,7 @@ public final class WaitForValueChangedRequest extends AwaitingRequest<DataReceiv
 	/**
 	 * Adds a merger that will be used to merge multiple packets into a single Data.
 	 * The merger may modify each packet if necessary.
+	 * Use {@link no.nordicsemi.android.ble.data.InflateMerger} to decompress compressed data.
 	 *
 	 * @return The request.
 	 */
@@ -312,6 +325,12 @@ public final class WaitForValueChangedRequest extends AwaitingRequest<DataReceiv
 		return filter == null || filter.filter(packet);
 	}
 
+	@Override
+	void release() {
+		if (dataMerger instanceof InflateMerger)
+			((InflateMerger) dataMerger).end();
+	}
+
 	void notifyValueChanged(final BluetoothDevice device, final byte[] value) {
 		// Keep a reference to the value callback, as it may change during execution
 		final DataReceivedCallback valueCallback = this.valueCallback;
@@ -325,14 +344,24 @@ public final class WaitForValueChangedRequest extends AwaitingRequest<DataReceiv
 			final Data data = new Data(value);
 			handler.post(() -> valueCallback.onDataReceived(device, data));
 		} else {
-			final int c = count;
-			handler.post(() -> {
-				if (progressCallback != null)
-					progressCallback.onPacketReceived(device, value, c);
-			});
+			final ReadProgressCallback progressCallback = this.progressCallback;
+			if (progressCallback != null) {
+				final int index = count;
+				handler.post(() -> progressCallback.onPacketReceived(device, value, index));
+			}
 			if (buffer == null)
 				buffer = new DataStream();
-			if (dataMerger.merge(buffer, value, count++)) {
+			final boolean complete;
+			try {
+				complete = dataMerger.merge(buffer, value, count++);
+			} catch (final CorruptedMessageException e) {
+				buffer = null;
+				count = 0;
+				notifyFail(device, e instanceof InvalidChecksumException ?
+						FailCallback.REASON_INVALID_CHECKSUM : FailCallback.REASON_VALIDATION);
+				return;
+			}
+			if (complete) {
 				final Data data = buffer.toData();
 				handler.post(() -> valueCallback.onDataReceived(device, data));
 				buffer = null;
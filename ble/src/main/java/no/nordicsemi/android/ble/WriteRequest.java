@@ -27,8 +27,10 @@ import android.bluetooth.BluetoothGatt;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.os.Handler;
+import android.os.SystemClock;
 
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -42,7 +44,9 @@ import no.nordicsemi.android.ble.callback.SuccessCallback;
 import no.nordicsemi.android.ble.callback.WriteProgressCallback;
 import no.nordicsemi.android.ble.data.Data;
 import no.nordicsemi.android.ble.data.DataSplitter;
+import no.nordicsemi.android.ble.data.DeflateSplitter;
 import no.nordicsemi.android.ble.data.DefaultMtuSplitter;
+import no.nordicsemi.android.ble.data.ThroughputMeter;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public final class WriteRequest extends SimpleValueRequest<DataSentCallback> implements Operation {
@@ -50,11 +54,13 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 
 	private WriteProgressCallback progressCallback;
 	private DataSplitter dataSplitter;
+	private ThroughputMeter meter;
 	private final byte[] data;
 	private final int writeType;
 	private byte[] currentChunk;
 	private byte[] nextChunk;
 	private int count = 0;
+	private int chunkLength = 0;
 	private boolean complete = false;
 
 	WriteRequest(@NonNull final Type type) {
@@ -87,6 +93,17 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		this.writeType = 0;
 	}
 
+	/**
+	 * Creates a request sending the given array without copying it. The array must not be
+	 * modified until the request is complete.
+	 */
+	WriteRequest(@NonNull final Type type, @Nullable final BluetoothGattCharacteristic characteristic,
+				 @NonNull final byte[] sharedData) {
+		super(type, characteristic);
+		this.data = sharedData;
+		this.writeType = 0;
+	}
+
 	WriteRequest(@NonNull final Type type, @Nullable final BluetoothGattDescriptor descriptor,
 				 @Nullable final byte[] data,
 				 @IntRange(from = 0) final int offset, @IntRange(from = 0) final int length) {
@@ -109,6 +126,13 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		return this;
 	}
 
+	@NonNull
+	@Override
+	public WriteRequest setExecutor(@NonNull final Executor executor) {
+		super.setExecutor(executor);
+		return this;
+	}
+
 	@Override
 	@NonNull
 	public WriteRequest done(@NonNull final SuccessCallback callback) {
@@ -148,6 +172,9 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 	 * Adds a splitter that will be used to cut given data into multiple packets.
 	 * The splitter may modify each packet if necessary, i.e. add a flag indicating first packet,
 	 * continuation or the last packet.
+	 * <p>
+	 * Use {@link no.nordicsemi.android.ble.data.DeflateSplitter} to compress the data
+	 * before sending.
 	 *
 	 * @param splitter an implementation of a splitter.
 	 * @return The request.
@@ -178,6 +205,24 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		return this;
 	}
 
+	/**
+	 * Marks the request as resumable. When the durable queue is enabled using
+	 * {@link BleManager#setDurableQueue(boolean)}, a resumable request does not fail on link
+	 * loss and is executed again after the device reconnects and is ready. Split data are
+	 * resumed from the first packet that was not sent, unless the MTU has changed, in which
+	 * case the transfer starts over.
+	 * <p>
+	 * Note, that packets sent using Write Without Response are considered sent when they were
+	 * added to the outgoing buffer, so some of them may still have been lost.
+	 *
+	 * @return The request.
+	 */
+	@NonNull
+	public WriteRequest resumable() {
+		this.resumable = true;
+		return this;
+	}
+
 	/**
 	 * Adds a default MTU splitter that will be used to cut given data into at-most MTU-3
 	 * bytes long packets.
@@ -205,6 +250,19 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		return this;
 	}
 
+	/**
+	 * Sets a meter that will record each packet sent by this request. The same meter may be
+	 * used with all write requests to a characteristic to measure the outgoing throughput.
+	 *
+	 * @param meter the meter.
+	 * @return The request.
+	 */
+	@NonNull
+	public WriteRequest meter(@NonNull final ThroughputMeter meter) {
+		this.meter = meter;
+		return this;
+	}
+
 	/**
 	 * This method makes sure the data sent will be split to at-most MTU-3 bytes long packets.
 	 * This is because Long Write does not work with Reliable Write.
@@ -237,6 +295,10 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		byte[] chunk = nextChunk;
 		// Get the first chunk.
 		if (chunk == null) {
+			// When resuming with a different MTU the packet indexes no longer match the data.
+			if (count > 0 && maxLength != chunkLength)
+				count = 0;
+			chunkLength = maxLength;
 			chunk = dataSplitter.chunk(data, count, maxLength);
 		}
 		// If there's something to send, check if there are any more packets to be sent later.
@@ -250,6 +312,13 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		return currentChunk = chunk;
 	}
 
+	/** Ends the compression stream of the splitter, if any. */
+	@Override
+	void release() {
+		if (dataSplitter instanceof DeflateSplitter)
+			((DeflateSplitter) dataSplitter).end();
+	}
+
 	/**
 	 * Method called when packet has been sent and confirmed (when Write With Response was used),
 	 * or added to local outgoing buffer (when Write Without Response was used).
@@ -260,10 +329,14 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 	 * @return True, if the data received are equal to data sent.
 	 */
 	boolean notifyPacketSent(@NonNull final BluetoothDevice device, @Nullable final byte[] data) {
-		handler.post(() -> {
-			if (progressCallback != null)
-				progressCallback.onPacketSent(device, data, count);
-		});
+		final ThroughputMeter meter = this.meter;
+		if (meter != null)
+			meter.record(data != null ? data.length : 0, SystemClock.elapsedRealtimeNanos());
+		final WriteProgressCallback progressCallback = this.progressCallback;
+		if (progressCallback != null) {
+			final int index = count;
+			handler.post(() -> progressCallback.onPacketSent(device, data, index));
+		}
 		count++;
 		if (complete) {
 			handler.post(() -> {
@@ -274,6 +347,26 @@ public final class WriteRequest extends SimpleValueRequest<DataSentCallback> imp
 		return Arrays.equals(data, currentChunk);
 	}
 
+	/**
+	 * Prepares the request interrupted by a link loss to be executed again. Split data will be
+	 * resumed from the first packet that was not sent.
+	 */
+	void rewind() {
+		currentChunk = null;
+		nextChunk = null;
+		complete = data == null;
+	}
+
+	/**
+	 * Returns whether the data will be split into more than one packet.
+	 *
+	 * @param mtu the current MTU.
+	 * @return True, if a splitter is set and the data are longer than a single packet.
+	 */
+	boolean isLongSplit(@IntRange(from = 23, to = 517) final int mtu) {
+		return dataSplitter != null && data != null && data.length > mtu - 3;
+	}
+
 	/**
 	 * Returns whether there are more bytes to be sent from this Write Request.
 	 *
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.annotation.LinkQuality;
+
+@SuppressWarnings("unused")
+public interface LinkQualityCallback {
+	/** The link quality score is below the poor threshold. */
+	int LINK_QUALITY_POOR = 0;
+
+	/** The link quality score is between the poor and good thresholds. */
+	int LINK_QUALITY_FAIR = 1;
+
+	/** The link quality score is above the good threshold. */
+	int LINK_QUALITY_GOOD = 2;
+
+	/**
+	 * Called when the link quality score has crossed one of the thresholds set in
+	 * {@link no.nordicsemi.android.ble.LinkMonitor#setThresholds(int, int)}.
+	 *
+	 * @param device  the target device.
+	 * @param quality the new link quality level, one of {@link #LINK_QUALITY_POOR},
+	 *                {@link #LINK_QUALITY_FAIR} or {@link #LINK_QUALITY_GOOD}.
+	 * @param score   the link quality score, from 0 (worst) to 100 (best).
+	 * @param rssi    the smoothed RSSI, in dBm.
+	 */
+	void onLinkQualityChanged(@NonNull final BluetoothDevice device,
+							  @LinkQuality final int quality,
+							  @IntRange(from = 0, to = 100) final int score,
+							  final float rssi);
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.NotificationFanOut;
+
+public interface NotificationFanOutCallback {
+
+	/**
+	 * Called when the whole value has been sent to the client.
+	 *
+	 * @param device  the client device.
+	 * @param latency time since the fan-out was started, in milliseconds.
+	 */
+	default void onClientNotified(@NonNull final BluetoothDevice device, final long latency) {
+		// do nothing
+	}
+
+	/**
+	 * Called when sending the value to the client has failed.
+	 *
+	 * @param device the client device.
+	 * @param status the error code, see {@link FailCallback}.
+	 */
+	default void onClientFailed(@NonNull final BluetoothDevice device, final int status) {
+		// do nothing
+	}
+
+	/**
+	 * Called when the client was skipped, as it has not enabled notifications.
+	 *
+	 * @param device the client device.
+	 */
+	default void onClientSkipped(@NonNull final BluetoothDevice device) {
+		// do nothing
+	}
+
+	/**
+	 * Called when all clients have been notified, have failed or were skipped.
+	 *
+	 * @param fanOut the completed fan-out.
+	 */
+	void onFanOutCompleted(@NonNull final NotificationFanOut fanOut);
+}
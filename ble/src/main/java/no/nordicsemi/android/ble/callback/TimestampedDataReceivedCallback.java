@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.callback;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.data.Data;
+
+public interface TimestampedDataReceivedCallback {
+
+	/**
+	 * Callback received each time a value has changed using notifications or indications,
+	 * with the time the value was received by the library. The timestamps are taken when
+	 * the GATT event arrives, before the callback is posted to the handler, so they are not
+	 * affected by the handler latency.
+	 * <p>
+	 * Timestamps are in the {@link android.os.SystemClock#elapsedRealtimeNanos()} time base.
+	 *
+	 * @param device         the target device.
+	 * @param data           the data received. If the
+	 *                       {@link no.nordicsemi.android.ble.data.DataMerger} was used,
+	 *                       this contains the merged result.
+	 * @param firstTimestamp the time the first packet of the value was received.
+	 * @param lastTimestamp  the time the last packet of the value was received. Equal to
+	 *                       the first timestamp if the value consists of a single packet.
+	 */
+	void onDataReceived(@NonNull final BluetoothDevice device, @NonNull final Data data,
+						final long firstTimestamp, final long lastTimestamp);
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.ArrayDeque;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A small pool of scratch buffers used by the compression stages. Deflating and inflating
+ * are done in a streaming mode, so a fixed size buffer is enough, no matter how long the
+ * message is.
+ */
+final class BufferPool {
+	static final int BUFFER_SIZE = 4096;
+	private static final int MAX_POOLED_BUFFERS = 4;
+	private static final ArrayDeque<byte[]> POOL = new ArrayDeque<>(MAX_POOLED_BUFFERS);
+
+	private BufferPool() {
+		// empty private constructor
+	}
+
+	/**
+	 * Returns a buffer of {@link #BUFFER_SIZE} bytes. The buffer should be returned to the pool
+	 * using {@link #recycle(byte[])} when no longer needed.
+	 *
+	 * @return A scratch buffer. Its content is undefined.
+	 */
+	@NonNull
+	static byte[] obtain() {
+		synchronized (POOL) {
+			final byte[] buffer = POOL.poll();
+			if (buffer != null)
+				return buffer;
+		}
+		return new byte[BUFFER_SIZE];
+	}
+
+	/**
+	 * Returns the buffer to the pool.
+	 *
+	 * @param buffer the buffer obtained with {@link #obtain()}.
+	 */
+	static void recycle(@NonNull final byte[] buffer) {
+		if (buffer.length != BUFFER_SIZE)
+			return;
+		synchronized (POOL) {
+			if (POOL.size() < MAX_POOLED_BUFFERS)
+				POOL.push(buffer);
+		}
+	}
+}
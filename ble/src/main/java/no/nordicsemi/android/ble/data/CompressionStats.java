@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import androidx.annotation.IntRange;
+
+/**
+ * A snapshot of compression statistics of a {@link DeflateSplitter} or an
+ * {@link InflateMerger}. Use it, for example from a progress callback, to decide whether
+ * compressing given kind of data pays off.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class CompressionStats {
+	private final long uncompressedSize;
+	private final long compressedSize;
+	private final long cpuTimeNanos;
+
+	CompressionStats(final long uncompressedSize, final long compressedSize, final long cpuTimeNanos) {
+		this.uncompressedSize = uncompressedSize;
+		this.compressedSize = compressedSize;
+		this.cpuTimeNanos = cpuTimeNanos;
+	}
+
+	/**
+	 * Returns the number of bytes before compression (or after decompression) processed so far.
+	 *
+	 * @return The uncompressed size in bytes.
+	 */
+	@IntRange(from = 0)
+	public long getUncompressedSize() {
+		return uncompressedSize;
+	}
+
+	/**
+	 * Returns the number of compressed bytes produced (or consumed) so far.
+	 *
+	 * @return The compressed size in bytes.
+	 */
+	@IntRange(from = 0)
+	public long getCompressedSize() {
+		return compressedSize;
+	}
+
+	/**
+	 * Returns the compression ratio, that is the uncompressed size divided by the compressed
+	 * size. A value lower than 1.0 means that the compression made the data longer.
+	 *
+	 * @return The compression ratio, or 1.0 if nothing was processed yet.
+	 */
+	public float getRatio() {
+		if (compressedSize == 0)
+			return 1.0f;
+		return (float) uncompressedSize / compressedSize;
+	}
+
+	/**
+	 * Returns the time spent in the {@link java.util.zip.Deflater} or
+	 * {@link java.util.zip.Inflater}. As those do not block, this is the CPU time used by
+	 * the compression on the calling thread.
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	@IntRange(from = 0)
+	public long getCpuTimeNanos() {
+		return cpuTimeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "CompressionStats{" +
+				"uncompressed=" + uncompressedSize +
+				", compressed=" + compressedSize +
+				", ratio=" + getRatio() +
+				", cpuTime=" + cpuTimeNanos / 1000 + "us" +
+				'}';
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.zip.Checksum;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * CRC-16-CCITT checksum (polynomial 0x1021, not reflected, no final XOR), computed using
+ * the slicing-by-8 algorithm. With the default initial value 0xFFFF this is the variant known
+ * as CRC-16/CCITT-FALSE, used for example by the Nordic DFU; with 0x0000 it's CRC-16/XMODEM.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Crc16Ccitt implements Checksum {
+	private static final int[][] TABLE = new int[8][256];
+
+	static {
+		for (int i = 0; i < 256; ++i) {
+			int crc = i << 8;
+			for (int j = 0; j < 8; ++j) {
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+			}
+			TABLE[0][i] = crc & 0xFFFF;
+		}
+		for (int i = 0; i < 256; ++i) {
+			for (int t = 1; t < 8; ++t) {
+				final int crc = TABLE[t - 1][i];
+				TABLE[t][i] = ((crc << 8) ^ TABLE[0][crc >>> 8]) & 0xFFFF;
+			}
+		}
+	}
+
+	private final int initial;
+	private int crc;
+
+	/**
+	 * Creates the checksum with initial value 0xFFFF (CRC-16/CCITT-FALSE).
+	 */
+	public Crc16Ccitt() {
+		this(0xFFFF);
+	}
+
+	/**
+	 * Creates the checksum with given initial value.
+	 *
+	 * @param initial the initial value, for example 0xFFFF or 0x0000.
+	 */
+	public Crc16Ccitt(@IntRange(from = 0, to = 0xFFFF) final int initial) {
+		this.initial = initial & 0xFFFF;
+		this.crc = this.initial;
+	}
+
+	@Override
+	public void update(final int b) {
+		crc = ((crc << 8) ^ TABLE[0][((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+	}
+
+	@Override
+	public void update(@NonNull final byte[] b, final int off, final int len) {
+		final int[] t0 = TABLE[0], t1 = TABLE[1], t2 = TABLE[2], t3 = TABLE[3],
+				t4 = TABLE[4], t5 = TABLE[5], t6 = TABLE[6], t7 = TABLE[7];
+		int crc = this.crc;
+		int i = off;
+		final int end = off + len;
+		for (; i + 8 <= end; i += 8) {
+			crc = t7[((crc >>> 8) ^ b[i]) & 0xFF] ^ t6[(crc ^ b[i + 1]) & 0xFF]
+					^ t5[b[i + 2] & 0xFF] ^ t4[b[i + 3] & 0xFF]
+					^ t3[b[i + 4] & 0xFF] ^ t2[b[i + 5] & 0xFF]
+					^ t1[b[i + 6] & 0xFF] ^ t0[b[i + 7] & 0xFF];
+		}
+		for (; i < end; ++i) {
+			crc = ((crc << 8) ^ t0[((crc >>> 8) ^ b[i]) & 0xFF]) & 0xFFFF;
+		}
+		this.crc = crc;
+	}
+
+	public void update(@NonNull final byte[] b) {
+		update(b, 0, b.length);
+	}
+
+	@Override
+	public long getValue() {
+		return crc;
+	}
+
+	@Override
+	public void reset() {
+		crc = initial;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.zip.Checksum;
+
+import androidx.annotation.NonNull;
+
+/**
+ * CRC-32 checksum (IEEE 802.3, the same as {@link java.util.zip.CRC32}), computed using
+ * the slicing-by-8 algorithm. For short packets, as received over BLE, this is faster than
+ * the native implementation, as no JNI call is made per packet.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class Crc32 implements Checksum {
+	private static final int[][] TABLE = new int[8][256];
+
+	static {
+		for (int i = 0; i < 256; ++i) {
+			int crc = i;
+			for (int j = 0; j < 8; ++j) {
+				crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0xEDB88320 : crc >>> 1;
+			}
+			TABLE[0][i] = crc;
+		}
+		for (int i = 0; i < 256; ++i) {
+			for (int t = 1; t < 8; ++t) {
+				final int crc = TABLE[t - 1][i];
+				TABLE[t][i] = (crc >>> 8) ^ TABLE[0][crc & 0xFF];
+			}
+		}
+	}
+
+	private int crc = 0xFFFFFFFF;
+
+	@Override
+	public void update(final int b) {
+		crc = (crc >>> 8) ^ TABLE[0][(crc ^ b) & 0xFF];
+	}
+
+	@Override
+	public void update(@NonNull final byte[] b, final int off, final int len) {
+		final int[] t0 = TABLE[0], t1 = TABLE[1], t2 = TABLE[2], t3 = TABLE[3],
+				t4 = TABLE[4], t5 = TABLE[5], t6 = TABLE[6], t7 = TABLE[7];
+		int crc = this.crc;
+		int i = off;
+		final int end = off + len;
+		for (; i + 8 <= end; i += 8) {
+			final int one = crc ^ ((b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8
+					| (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24);
+			final int two = (b[i + 4] & 0xFF) | (b[i + 5] & 0xFF) << 8
+					| (b[i + 6] & 0xFF) << 16 | (b[i + 7] & 0xFF) << 24;
+			crc = t7[one & 0xFF] ^ t6[(one >>> 8) & 0xFF] ^ t5[(one >>> 16) & 0xFF] ^ t4[one >>> 24]
+					^ t3[two & 0xFF] ^ t2[(two >>> 8) & 0xFF] ^ t1[(two >>> 16) & 0xFF] ^ t0[two >>> 24];
+		}
+		for (; i < end; ++i) {
+			crc = (crc >>> 8) ^ t0[(crc ^ b[i]) & 0xFF];
+		}
+		this.crc = crc;
+	}
+
+	public void update(@NonNull final byte[] b) {
+		update(b, 0, b.length);
+	}
+
+	@Override
+	public long getValue() {
+		return ~crc & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public void reset() {
+		crc = 0xFFFFFFFF;
+	}
+}
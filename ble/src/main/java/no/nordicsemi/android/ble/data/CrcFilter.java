@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.zip.Checksum;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A filter that accepts only packets ending with a valid checksum, in Little Endian.
+ * The checksum is not removed from the packet. Use {@link CrcMerger} to validate checksums
+ * of messages split into multiple packets.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class CrcFilter implements DataFilter {
+	private final Checksum checksum;
+	private final int size;
+
+	/**
+	 * Creates a filter validating CRC-16-CCITT (0xFFFF initial value) of each packet.
+	 *
+	 * @return The filter.
+	 */
+	@NonNull
+	public static CrcFilter crc16() {
+		return new CrcFilter(new Crc16Ccitt(), 2);
+	}
+
+	/**
+	 * Creates a filter validating CRC-32 of each packet.
+	 *
+	 * @return The filter.
+	 */
+	@NonNull
+	public static CrcFilter crc32() {
+		return new CrcFilter(new Crc32(), 4);
+	}
+
+	/**
+	 * Creates a filter validating a checksum of each packet.
+	 *
+	 * @param checksum the checksum implementation. The instance will be reset for each packet.
+	 * @param size     the size of the checksum in bytes.
+	 */
+	public CrcFilter(@NonNull final Checksum checksum, @IntRange(from = 1, to = 8) final int size) {
+		this.checksum = checksum;
+		this.size = size;
+	}
+
+	@Override
+	public synchronized boolean filter(@Nullable final byte[] lastPacket) {
+		if (lastPacket == null || lastPacket.length < size)
+			return false;
+
+		final int length = lastPacket.length - size;
+		checksum.reset();
+		checksum.update(lastPacket, 0, length);
+
+		long received = 0;
+		for (int i = lastPacket.length - 1; i >= length; --i) {
+			received = (received << 8) | (lastPacket[i] & 0xFF);
+		}
+		return received == checksum.getValue();
+	}
+}
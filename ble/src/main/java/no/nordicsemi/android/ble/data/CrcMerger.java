@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.zip.Checksum;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
+import no.nordicsemi.android.ble.exception.InvalidChecksumException;
+
+/**
+ * A merger that validates a checksum appended, in Little Endian, to each merged message.
+ * <p>
+ * The packets are merged using given merger. The checksum is updated with each packet as soon
+ * as it's merged, so when the last packet arrives only the remaining bytes are processed and
+ * no extra pass over the whole message is required. If the checksum matches, it is removed
+ * from the message. Otherwise, an {@link InvalidChecksumException} is thrown and the message
+ * is discarded.
+ * <p>
+ * An instance keeps the state of the current message, so it should not be shared between
+ * characteristics.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class CrcMerger implements DataMerger {
+	private final DataMerger merger;
+	private final Checksum checksum;
+	private final int size;
+	private int checked;
+
+	/**
+	 * Creates a merger validating CRC-16-CCITT (0xFFFF initial value) of each message.
+	 *
+	 * @param merger the merger used to merge packets, including the checksum.
+	 * @return The merger.
+	 */
+	@NonNull
+	public static CrcMerger crc16(@NonNull final DataMerger merger) {
+		return new CrcMerger(merger, new Crc16Ccitt(), 2);
+	}
+
+	/**
+	 * Creates a merger validating CRC-32 of each message.
+	 *
+	 * @param merger the merger used to merge packets, including the checksum.
+	 * @return The merger.
+	 */
+	@NonNull
+	public static CrcMerger crc32(@NonNull final DataMerger merger) {
+		return new CrcMerger(merger, new Crc32(), 4);
+	}
+
+	/**
+	 * Creates a merger validating a checksum of each message.
+	 *
+	 * @param merger   the merger used to merge packets, including the checksum.
+	 * @param checksum the checksum implementation. The instance will be reset for each message.
+	 * @param size     the size of the checksum in bytes.
+	 */
+	public CrcMerger(@NonNull final DataMerger merger, @NonNull final Checksum checksum,
+					 @IntRange(from = 1, to = 8) final int size) {
+		this.merger = merger;
+		this.checksum = checksum;
+		this.size = size;
+	}
+
+	@Override
+	public synchronized boolean merge(@NonNull final DataStream output,
+									  @Nullable final byte[] lastPacket,
+									  @IntRange(from = 0) final int index) {
+		if (index == 0) {
+			checksum.reset();
+			checked = 0;
+		}
+		final boolean complete = merger.merge(output, lastPacket, index);
+
+		// The last bytes may turn out to be the checksum, so they are not included
+		// until more data arrive.
+		final int length = output.size() - size;
+		if (length > checked) {
+			output.update(checksum, checked, length - checked);
+			checked = length;
+		}
+		if (!complete)
+			return false;
+
+		if (length < 0)
+			throw new CorruptedMessageException("Message shorter than the checksum");
+
+		long received = 0;
+		for (int i = size - 1; i >= 0; --i) {
+			received = (received << 8) | output.get(length + i);
+		}
+		final long calculated = checksum.getValue();
+		if (received != calculated)
+			throw new InvalidChecksumException(received, calculated);
+
+		output.truncate(length);
+		return true;
+	}
+}
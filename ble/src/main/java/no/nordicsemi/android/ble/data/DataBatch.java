@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A batch of values received using notifications or indications, delivered to
+ * {@link no.nordicsemi.android.ble.callback.BatchReceivedCallback}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class DataBatch {
+	private final Data[] data;
+	private final long[] timestamps;
+	private final int size;
+
+	/**
+	 * Creates a batch. The arrays are not copied.
+	 *
+	 * @param data       the values.
+	 * @param timestamps the receipt timestamps of the values.
+	 * @param size       number of values in the batch.
+	 */
+	public DataBatch(@NonNull final Data[] data, @NonNull final long[] timestamps,
+					 @IntRange(from = 0) final int size) {
+		this.data = data;
+		this.timestamps = timestamps;
+		this.size = size;
+	}
+
+	/**
+	 * Returns number of values in the batch.
+	 *
+	 * @return The size of the batch.
+	 */
+	@IntRange(from = 0)
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value at given index.
+	 *
+	 * @param index the index, from 0 to {@link #size()} - 1.
+	 * @return The value.
+	 */
+	@NonNull
+	public Data get(@IntRange(from = 0) final int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		return data[index];
+	}
+
+	/**
+	 * Returns the time the value at given index was received, in
+	 * {@link android.os.SystemClock#elapsedRealtimeNanos()} time base.
+	 *
+	 * @param index the index, from 0 to {@link #size()} - 1.
+	 * @return The receipt timestamp in nanoseconds.
+	 */
+	public long getTimestamp(@IntRange(from = 0) final int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		return timestamps[index];
+	}
+}
@@ -23,6 +23,7 @@
 package no.nordicsemi.android.ble.data;
 
 import java.io.ByteArrayOutputStream;
+import java.util.zip.Checksum;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
@@ -30,10 +31,10 @@ import androidx.annotation.Nullable;
 
 @SuppressWarnings("WeakerAccess")
 public class DataStream {
-	private final ByteArrayOutputStream buffer;
+	private final Buffer buffer;
 
 	public DataStream() {
-		buffer = new ByteArrayOutputStream();
+		buffer = new Buffer();
 	}
 
 	@SuppressWarnings("SimplifiableIfStatement")
@@ -72,4 +73,46 @@ public class DataStream {
 	public Data toData() {
 		return new Data(buffer.toByteArray());
 	}
+
+	/**
+	 * Updates the checksum with given range of bytes of the stream, without copying them.
+	 *
+	 * @param checksum the checksum to be updated.
+	 * @param offset   the offset of the first byte.
+	 * @param length   number of bytes.
+	 */
+	void update(@NonNull final Checksum checksum,
+				@IntRange(from = 0) final int offset, @IntRange(from = 0) final int length) {
+		checksum.update(buffer.array(), offset, length);
+	}
+
+	/**
+	 * Returns the byte at given index as unsigned value.
+	 *
+	 * @param index the index of the byte.
+	 * @return The byte value.
+	 */
+	int get(@IntRange(from = 0) final int index) {
+		return buffer.array()[index] & 0xFF;
+	}
+
+	/**
+	 * Removes bytes from the end of the stream, leaving given number of bytes.
+	 *
+	 * @param size the new size of the stream, not greater than the current size.
+	 */
+	void truncate(@IntRange(from = 0) final int size) {
+		buffer.truncate(size);
+	}
+
+	private static final class Buffer extends ByteArrayOutputStream {
+		byte[] array() {
+			return buf;
+		}
+
+		void truncate(final int size) {
+			if (size < count)
+				count = size;
+		}
+	}
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A splitter that compresses the message using the Deflate algorithm (zlib format) before
+ * it is sent. The receiving side may use {@link InflateMerger} to restore the original message.
+ * <p>
+ * When no other splitter is given, the message is deflated in a streaming mode, directly into
+ * at-most MTU-3 bytes long packets, so the compressed message is never kept in memory as a whole.
+ * Otherwise, the message is compressed at once and the compressed bytes are split using
+ * given splitter, which allows to add headers to each packet.
+ * <p>
+ * Compression statistics may be obtained using {@link #getStats()}, for example from the
+ * progress callback:
+ * <pre>
+ * final DeflateSplitter splitter = new DeflateSplitter();
+ * writeCharacteristic(characteristic, data)
+ *     .split(splitter, (device, packet, index) -&gt; log(splitter.getStats()))
+ *     .enqueue();
+ * </pre>
+ * An instance keeps the state of the current message, so it should not be shared between
+ * requests that may be executed at the same time.
+ * <p>
+ * The native compression stream is released using {@link #end()}, which is called
+ * automatically when the {@link no.nordicsemi.android.ble.WriteRequest} using the splitter
+ * finishes. A new stream is created if the splitter is used again.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class DeflateSplitter implements DataSplitter {
+	private final int level;
+	private final DataSplitter splitter;
+	private Deflater deflater;
+	private byte[] message;
+	private byte[] compressed;
+	private byte[] lastPacket;
+	private int nextIndex;
+
+	private volatile long uncompressedSize;
+	private volatile long compressedSize;
+	private volatile long cpuTimeNanos;
+
+	/**
+	 * Creates a splitter with the default compression level, which deflates the message
+	 * directly into at-most MTU-3 bytes long packets.
+	 */
+	public DeflateSplitter() {
+		this(Deflater.DEFAULT_COMPRESSION, null);
+	}
+
+	/**
+	 * Creates a splitter which deflates the message directly into at-most MTU-3 bytes
+	 * long packets.
+	 *
+	 * @param level the compression level (0-9), or {@link Deflater#DEFAULT_COMPRESSION}.
+	 */
+	public DeflateSplitter(@IntRange(from = -1, to = 9) final int level) {
+		this(level, null);
+	}
+
+	/**
+	 * Creates a splitter with the default compression level, which compresses the whole message
+	 * and splits the compressed bytes using given splitter.
+	 *
+	 * @param splitter the splitter to be used to split compressed data.
+	 */
+	public DeflateSplitter(@NonNull final DataSplitter splitter) {
+		this(Deflater.DEFAULT_COMPRESSION, splitter);
+	}
+
+	/**
+	 * Creates a splitter which compresses the whole message and splits the compressed bytes
+	 * using given splitter. If the splitter is null, the message is deflated directly into
+	 * at-most MTU-3 bytes long packets.
+	 *
+	 * @param level    the compression level (0-9), or {@link Deflater#DEFAULT_COMPRESSION}.
+	 * @param splitter an optional splitter to be used to split compressed data.
+	 */
+	public DeflateSplitter(@IntRange(from = -1, to = 9) final int level,
+						   @Nullable final DataSplitter splitter) {
+		this.level = level;
+		this.splitter = splitter;
+	}
+
+	@Nullable
+	@Override
+	public synchronized byte[] chunk(@NonNull final byte[] message,
+									 @IntRange(from = 0) final int index,
+									 @IntRange(from = 20) final int maxLength) {
+		if (splitter != null) {
+			if (message != this.message || compressed == null) {
+				start(message);
+				compressed = deflate();
+			}
+			return splitter.chunk(compressed, index, maxLength);
+		}
+
+		// Packets are produced one after another. Only the last one is kept, as the
+		// WriteRequest may ask for it again.
+		if (message != this.message || index + 1 < nextIndex) {
+			start(message);
+		}
+		if (index + 1 == nextIndex)
+			return lastPacket;
+
+		while (nextIndex <= index) {
+			lastPacket = deflate(maxLength);
+			if (lastPacket == null)
+				return null;
+			nextIndex++;
+		}
+		return lastPacket;
+	}
+
+	/**
+	 * Releases the native compression stream. The statistics of the last message are kept.
+	 * If the splitter is used again, a new stream is created and the message is compressed
+	 * from the beginning.
+	 */
+	public synchronized void end() {
+		if (deflater != null) {
+			deflater.end();
+			deflater = null;
+		}
+		message = null;
+		compressed = null;
+		lastPacket = null;
+		nextIndex = 0;
+	}
+
+	/**
+	 * Returns the compression statistics of the current, or the last, message.
+	 *
+	 * @return The statistics snapshot.
+	 */
+	@NonNull
+	public CompressionStats getStats() {
+		return new CompressionStats(uncompressedSize, compressedSize, cpuTimeNanos);
+	}
+
+	private void start(@NonNull final byte[] message) {
+		this.message = message;
+		this.compressed = null;
+		this.lastPacket = null;
+		this.nextIndex = 0;
+		this.uncompressedSize = 0;
+		this.compressedSize = 0;
+		this.cpuTimeNanos = 0;
+		if (deflater == null)
+			deflater = new Deflater(level);
+		deflater.reset();
+		deflater.setInput(message);
+		deflater.finish();
+	}
+
+	/**
+	 * Deflates the next packet of the current message.
+	 *
+	 * @param maxLength maximum length of the packet.
+	 * @return The packet, or null, if the whole message was already deflated.
+	 */
+	@Nullable
+	private byte[] deflate(final int maxLength) {
+		if (deflater.finished())
+			return null;
+
+		final long start = System.nanoTime();
+		// The packet is deflated into a scratch buffer and copied, as the last one is shorter.
+		final byte[] buffer = maxLength <= BufferPool.BUFFER_SIZE ? BufferPool.obtain() : new byte[maxLength];
+		try {
+			int length = 0;
+			while (length < maxLength && !deflater.finished()) {
+				final int n = deflater.deflate(buffer, length, maxLength - length);
+				if (n == 0)
+					break;
+				length += n;
+			}
+			updateStats(start);
+
+			if (length == 0)
+				return null;
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			BufferPool.recycle(buffer);
+		}
+	}
+
+	/**
+	 * Deflates the whole current message.
+	 *
+	 * @return The compressed message.
+	 */
+	@NonNull
+	private byte[] deflate() {
+		final long start = System.nanoTime();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(message.length / 2 + 16);
+		final byte[] buffer = BufferPool.obtain();
+		try {
+			while (!deflater.finished()) {
+				final int n = deflater.deflate(buffer);
+				if (n == 0)
+					break;
+				output.write(buffer, 0, n);
+			}
+		} finally {
+			BufferPool.recycle(buffer);
+		}
+		updateStats(start);
+		return output.toByteArray();
+	}
+
+	private void updateStats(final long start) {
+		cpuTimeNanos += System.nanoTime() - start;
+		uncompressedSize = deflater.getBytesRead();
+		compressedSize = deflater.getBytesWritten();
+	}
+}
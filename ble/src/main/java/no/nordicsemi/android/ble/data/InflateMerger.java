@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
+
+/**
+ * A merger that decompresses a message compressed using the Deflate algorithm (zlib format),
+ * for example by a {@link DeflateSplitter}.
+ * <p>
+ * When no other merger is given, each packet is inflated as soon as it is received and the
+ * message is complete when the end of the deflate stream has been reached.
+ * Otherwise, the packets are first merged using given merger, which may remove headers
+ * from each packet, and the compressed message is inflated when that merger reports it complete.
+ * <p>
+ * If the stream is corrupted, a {@link CorruptedMessageException} is thrown and the message
+ * is discarded. Compression statistics may be obtained using {@link #getStats()}.
+ * An instance keeps the state of the current message, so it should not be shared between
+ * characteristics.
+ * <p>
+ * The native decompression stream is released using {@link #end()}, which is called
+ * automatically when the request using the merger finishes, or the value changed callback
+ * is replaced or removed. A new stream is created if the merger is used again.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class InflateMerger implements DataMerger {
+	private final DataMerger merger;
+	private Inflater inflater;
+	private DataStream compressed;
+
+	private volatile long uncompressedSize;
+	private volatile long compressedSize;
+	private volatile long cpuTimeNanos;
+
+	/**
+	 * Creates a merger which inflates each packet as soon as it is received.
+	 */
+	public InflateMerger() {
+		this(null);
+	}
+
+	/**
+	 * Creates a merger which merges the packets using given merger and inflates the message
+	 * when complete. If the merger is null, each packet is inflated as soon as it is received.
+	 *
+	 * @param merger an optional merger used to merge compressed packets.
+	 */
+	public InflateMerger(@Nullable final DataMerger merger) {
+		this.merger = merger;
+	}
+
+	@Override
+	public synchronized boolean merge(@NonNull final DataStream output,
+									  @Nullable final byte[] lastPacket,
+									  @IntRange(from = 0) final int index) {
+		if (inflater == null)
+			inflater = new Inflater();
+		if (index == 0) {
+			inflater.reset();
+			compressed = null;
+			uncompressedSize = 0;
+			compressedSize = 0;
+			cpuTimeNanos = 0;
+		}
+
+		if (merger == null) {
+			if (lastPacket == null)
+				return inflater.finished();
+			return inflate(output, lastPacket);
+		}
+
+		if (compressed == null)
+			compressed = new DataStream();
+		if (!merger.merge(compressed, lastPacket, index))
+			return false;
+
+		final byte[] message = compressed.toByteArray();
+		compressed = null;
+		if (!inflate(output, message))
+			throw new CorruptedMessageException("Deflate stream incomplete");
+		return true;
+	}
+
+	/**
+	 * Releases the native decompression stream. The statistics of the last message are kept.
+	 * A message received partially is discarded.
+	 */
+	public synchronized void end() {
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		compressed = null;
+	}
+
+	/**
+	 * Returns the compression statistics of the current, or the last, message.
+	 *
+	 * @return The statistics snapshot.
+	 */
+	@NonNull
+	public CompressionStats getStats() {
+		return new CompressionStats(uncompressedSize, compressedSize, cpuTimeNanos);
+	}
+
+	/**
+	 * Inflates given bytes into the output stream.
+	 *
+	 * @param output the output stream.
+	 * @param data   the compressed bytes.
+	 * @return True, if the end of the deflate stream has been reached.
+	 */
+	private boolean inflate(@NonNull final DataStream output, @NonNull final byte[] data) {
+		final long start = System.nanoTime();
+		final byte[] buffer = BufferPool.obtain();
+		try {
+			inflater.setInput(data);
+			while (!inflater.finished()) {
+				final int n = inflater.inflate(buffer);
+				if (n == 0) {
+					if (inflater.needsDictionary())
+						throw new CorruptedMessageException("Preset dictionary not supported");
+					break;
+				}
+				output.write(buffer, 0, n);
+			}
+		} catch (final DataFormatException e) {
+			throw new CorruptedMessageException("Invalid deflate stream", e);
+		} finally {
+			BufferPool.recycle(buffer);
+			cpuTimeNanos += System.nanoTime() - start;
+			uncompressedSize = inflater.getBytesWritten();
+			compressedSize = inflater.getBytesRead();
+		}
+		return inflater.finished();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A meter counting packets and bytes sent or received on a characteristic, the intervals
+ * between them and the longest gap. The meter uses a fixed amount of memory and does not
+ * allocate when a packet is recorded, so it may be used on every packet.
+ * <p>
+ * Attach the meter using
+ * {@link no.nordicsemi.android.ble.ValueChangedCallback#meter(ThroughputMeter)} or
+ * {@link no.nordicsemi.android.ble.WriteRequest#meter(ThroughputMeter)}. A single meter may
+ * be used with multiple write requests to the same characteristic. Call
+ * {@link #getStats()} at any time to get a snapshot.
+ * <p>
+ * Inter-arrival times are counted in {@link #BUCKET_COUNT} buckets: bucket 0 counts gaps
+ * shorter than 1 ms, bucket i counts gaps from 2<sup>i-1</sup> ms (inclusive) to
+ * 2<sup>i</sup> ms (exclusive), and the last bucket counts all longer gaps.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ThroughputMeter {
+	/** Number of buckets in the inter-arrival time histogram. */
+	public static final int BUCKET_COUNT = 12;
+	private static final long NONE = Long.MIN_VALUE;
+
+	private final AtomicLong packets = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong firstTimestamp = new AtomicLong(NONE);
+	/** The length of the first packet, which starts the measurement. */
+	private final AtomicLong firstLength = new AtomicLong();
+	private final AtomicLong lastTimestamp = new AtomicLong(NONE);
+	private final AtomicLong maxGap = new AtomicLong();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * Records a packet.
+	 *
+	 * @param length    the packet length in bytes.
+	 * @param timestamp the time the packet was sent or received, in nanoseconds, in
+	 *                  {@link android.os.SystemClock#elapsedRealtimeNanos()} time base.
+	 */
+	public void record(@IntRange(from = 0) final int length, final long timestamp) {
+		packets.incrementAndGet();
+		bytes.addAndGet(length);
+		final long previous = lastTimestamp.getAndSet(timestamp);
+		if (previous == NONE) {
+			firstTimestamp.compareAndSet(NONE, timestamp);
+			firstLength.set(length);
+			return;
+		}
+		final long gap = timestamp - previous;
+		if (gap < 0)
+			return;
+		histogram.incrementAndGet(bucketOf(gap));
+		long max;
+		while (gap > (max = maxGap.get()) && !maxGap.compareAndSet(max, gap)) {
+			// retry
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the current values. Counters are read one by one while packets
+	 * may still be recorded, so the snapshot may be off by the packets recorded meanwhile.
+	 *
+	 * @return The statistics.
+	 */
+	@NonNull
+	public ThroughputStats getStats() {
+		final long[] buckets = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] = histogram.get(i);
+		final long first = firstTimestamp.get();
+		final long last = lastTimestamp.get();
+		return new ThroughputStats(packets.get(), bytes.get(), firstLength.get(),
+				first != NONE ? first : 0, last != NONE ? last : 0,
+				maxGap.get(), buckets);
+	}
+
+	/**
+	 * Clears all counters, for example after a reconnection.
+	 */
+	public void reset() {
+		packets.set(0);
+		bytes.set(0);
+		firstTimestamp.set(NONE);
+		firstLength.set(0);
+		lastTimestamp.set(NONE);
+		maxGap.set(0);
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			histogram.set(i, 0);
+	}
+
+	/**
+	 * Returns the histogram bucket for given inter-arrival time.
+	 *
+	 * @param gapNanos the time between two packets in nanoseconds.
+	 * @return The bucket index.
+	 */
+	static int bucketOf(final long gapNanos) {
+		final long millis = gapNanos / 1_000_000L;
+		if (millis == 0)
+			return 0;
+		return Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKET_COUNT - 1);
+	}
+}
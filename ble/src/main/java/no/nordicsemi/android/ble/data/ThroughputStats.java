@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import java.util.Arrays;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A snapshot of a {@link ThroughputMeter}. Rates are calculated over the time between
+ * the first and the last recorded packet. The first packet only starts the measurement
+ * and is not counted in the rates.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ThroughputStats {
+	private final long packetCount;
+	private final long byteCount;
+	private final long firstPacketLength;
+	private final long firstTimestamp;
+	private final long lastTimestamp;
+	private final long maxGapNanos;
+	private final long[] histogram;
+
+	ThroughputStats(final long packetCount, final long byteCount, final long firstPacketLength,
+					final long firstTimestamp, final long lastTimestamp,
+					final long maxGapNanos, @NonNull final long[] histogram) {
+		this.packetCount = packetCount;
+		this.byteCount = byteCount;
+		this.firstPacketLength = firstPacketLength;
+		this.firstTimestamp = firstTimestamp;
+		this.lastTimestamp = lastTimestamp;
+		this.maxGapNanos = maxGapNanos;
+		this.histogram = histogram;
+	}
+
+	/**
+	 * Returns the number of packets recorded.
+	 *
+	 * @return The packet count.
+	 */
+	@IntRange(from = 0)
+	public long getPacketCount() {
+		return packetCount;
+	}
+
+	/**
+	 * Returns the number of bytes recorded.
+	 *
+	 * @return The byte count.
+	 */
+	@IntRange(from = 0)
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Returns the time the last packet was recorded, in
+	 * {@link android.os.SystemClock#elapsedRealtimeNanos()} time base. Compare it with the
+	 * current time to detect a stalled link.
+	 *
+	 * @return The timestamp of the last packet, or 0 if no packet was recorded.
+	 */
+	public long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	/**
+	 * Returns the time between the first and the last recorded packet.
+	 *
+	 * @return The duration in nanoseconds.
+	 */
+	@IntRange(from = 0)
+	public long getDurationNanos() {
+		return Math.max(0, lastTimestamp - firstTimestamp);
+	}
+
+	/**
+	 * Returns the average number of packets per second.
+	 *
+	 * @return Packets per second, or 0 if less than 2 packets were recorded.
+	 */
+	public double getPacketsPerSecond() {
+		final long duration = getDurationNanos();
+		if (duration == 0 || packetCount < 2)
+			return 0;
+		// The first packet starts the measurement.
+		return (packetCount - 1) * 1e9 / duration;
+	}
+
+	/**
+	 * Returns the average number of bytes per second.
+	 *
+	 * @return Bytes per second, or 0 if less than 2 packets were recorded.
+	 */
+	public double getBytesPerSecond() {
+		final long duration = getDurationNanos();
+		if (duration == 0 || packetCount < 2)
+			return 0;
+		// The first packet starts the measurement, like in getPacketsPerSecond().
+		return (byteCount - firstPacketLength) * 1e9 / duration;
+	}
+
+	/**
+	 * Returns the longest time between two consecutive packets.
+	 *
+	 * @return The longest gap in nanoseconds.
+	 */
+	@IntRange(from = 0)
+	public long getMaxGapNanos() {
+		return maxGapNanos;
+	}
+
+	/**
+	 * Returns the number of inter-arrival times in given histogram bucket.
+	 * See {@link ThroughputMeter} for bucket ranges.
+	 *
+	 * @param bucket the bucket index, from 0 to {@link ThroughputMeter#BUCKET_COUNT} - 1.
+	 * @return The number of gaps in the bucket.
+	 */
+	@IntRange(from = 0)
+	public long getHistogramCount(@IntRange(from = 0, to = ThroughputMeter.BUCKET_COUNT - 1) final int bucket) {
+		return histogram[bucket];
+	}
+
+	/**
+	 * Returns the lower bound of given histogram bucket.
+	 *
+	 * @param bucket the bucket index.
+	 * @return The shortest gap counted in the bucket, in milliseconds.
+	 */
+	@IntRange(from = 0)
+	public static long getBucketLowerBoundMillis(@IntRange(from = 0, to = ThroughputMeter.BUCKET_COUNT - 1) final int bucket) {
+		return bucket == 0 ? 0 : 1L << (bucket - 1);
+	}
+
+	@Override
+	public String toString() {
+		return "ThroughputStats{" +
+				"packets=" + packetCount +
+				", bytes=" + byteCount +
+				", packetsPerSecond=" + getPacketsPerSecond() +
+				", bytesPerSecond=" + getBytesPerSecond() +
+				", maxGap=" + maxGapNanos / 1000 + "us" +
+				", histogram=" + Arrays.toString(histogram) +
+				'}';
+	}
+}
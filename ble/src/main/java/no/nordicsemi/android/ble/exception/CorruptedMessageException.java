@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.exception;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Thrown by a {@link no.nordicsemi.android.ble.data.DataMerger} when the message being merged
+ * turned out to be corrupted. The partially merged message is discarded.
+ * A {@link no.nordicsemi.android.ble.ReadRequest} or
+ * {@link no.nordicsemi.android.ble.WaitForValueChangedRequest} will fail with
+ * {@link no.nordicsemi.android.ble.callback.FailCallback#REASON_VALIDATION}, while
+ * notifications and indications will be ignored until a new message begins.
+ */
+@SuppressWarnings("unused")
+public class CorruptedMessageException extends RuntimeException {
+
+	public CorruptedMessageException(@NonNull final String message) {
+		super(message);
+	}
+
+	public CorruptedMessageException(@NonNull final String message, @NonNull final Throwable cause) {
+		super(message, cause);
+	}
+}
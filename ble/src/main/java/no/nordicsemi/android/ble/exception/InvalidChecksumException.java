@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.exception;
+
+/**
+ * Thrown by a {@link no.nordicsemi.android.ble.data.CrcMerger} when the checksum received
+ * at the end of a merged message does not match the one calculated from the received data.
+ * A {@link no.nordicsemi.android.ble.ReadRequest} or
+ * {@link no.nordicsemi.android.ble.WaitForValueChangedRequest} will fail with
+ * {@link no.nordicsemi.android.ble.callback.FailCallback#REASON_INVALID_CHECKSUM}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class InvalidChecksumException extends CorruptedMessageException {
+	private final long received;
+	private final long calculated;
+
+	public InvalidChecksumException(final long received, final long calculated) {
+		super("Invalid checksum: received 0x" + Long.toHexString(received).toUpperCase() +
+				", calculated 0x" + Long.toHexString(calculated).toUpperCase());
+		this.received = received;
+		this.calculated = calculated;
+	}
+
+	/**
+	 * Returns the checksum received with the message.
+	 *
+	 * @return The received checksum.
+	 */
+	public long getReceived() {
+		return received;
+	}
+
+	/**
+	 * Returns the checksum calculated from the received message.
+	 *
+	 * @return The calculated checksum.
+	 */
+	public long getCalculated() {
+		return calculated;
+	}
+}
@@ -110,6 +110,10 @@ public class ConnectionPriorityResponse implements ConnectionPriorityCallback, P
 		return supervisionTimeout;
 	}
 
+	public ConnectionPriorityResponse() {
+		// empty
+	}
+
 	// Parcelable
 	protected ConnectionPriorityResponse(final Parcel in) {
 		device = in.readParcelable(BluetoothDevice.class.getClassLoader());
@@ -60,6 +60,10 @@ public class MtuResult implements MtuCallback, Parcelable {
 		return mtu;
 	}
 
+	public MtuResult() {
+		// empty
+	}
+
 	// Parcelable
 	protected MtuResult(final Parcel in) {
 		device = in.readParcelable(BluetoothDevice.class.getClassLoader());
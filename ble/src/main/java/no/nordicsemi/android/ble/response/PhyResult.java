@@ -64,6 +64,10 @@ public class PhyResult implements PhyCallback, Parcelable {
 		return rxPhy;
 	}
 
+	public PhyResult() {
+		// empty
+	}
+
 	// Parcelable
 	protected PhyResult(final Parcel in) {
 		device = in.readParcelable(BluetoothDevice.class.getClassLoader());
@@ -55,6 +55,10 @@ public class RssiResult implements RssiCallback, Parcelable {
 		return rssi;
 	}
 
+	public RssiResult() {
+		// empty
+	}
+
 	// Parcelable
 	protected RssiResult(final Parcel in) {
 		device = in.readParcelable(BluetoothDevice.class.getClassLoader());
@@ -57,6 +57,10 @@ public class WriteResponse implements DataSentCallback, Parcelable {
 		return data;
 	}
 
+	public WriteResponse() {
+		// empty
+	}
+
 	// Parcelable
 	protected WriteResponse(final Parcel in) {
 		device = in.readParcelable(BluetoothDevice.class.getClassLoader());
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.retry;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.SystemClock;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+/**
+ * A retry policy that stops all attempts after too many consecutive failures.
+ * <p>
+ * Failures are counted across operations. When the threshold is reached, the circuit
+ * "opens": retries are not made and new operations fail immediately, until the open
+ * duration has elapsed. Then a single attempt is allowed; the circuit closes if it
+ * succeeds and opens again if it fails. While closed, retries are delegated to the
+ * given policy.
+ * <p>
+ * Share an instance between requests to the same device, or between all devices to
+ * protect the Bluetooth stack as a whole.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CircuitBreakerRetryPolicy implements RetryPolicy {
+
+	/** A source of time, in milliseconds. */
+	interface Clock {
+		long elapsedRealtime();
+	}
+
+	private final RetryPolicy delegate;
+	private final int failureThreshold;
+	private final long openDuration;
+	private final Clock clock;
+
+	private int failures;
+	private long openUntil;
+	private boolean open;
+	private boolean halfOpen;
+
+	/**
+	 * Creates the policy.
+	 *
+	 * @param delegate         the policy used while the circuit is closed.
+	 * @param failureThreshold the number of consecutive failures that opens the circuit.
+	 * @param openDuration     the time the circuit stays open, in milliseconds.
+	 */
+	public CircuitBreakerRetryPolicy(@NonNull final RetryPolicy delegate,
+									 @IntRange(from = 1) final int failureThreshold,
+									 @IntRange(from = 0) final long openDuration) {
+		this(delegate, failureThreshold, openDuration, SystemClock::elapsedRealtime);
+	}
+
+	CircuitBreakerRetryPolicy(@NonNull final RetryPolicy delegate,
+							  final int failureThreshold, final long openDuration,
+							  @NonNull final Clock clock) {
+		this.delegate = delegate;
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.clock = clock;
+	}
+
+	/**
+	 * Returns whether the circuit is open, that is whether new attempts are rejected.
+	 *
+	 * @return True, if the circuit is open.
+	 */
+	public synchronized boolean isOpen() {
+		return open && clock.elapsedRealtime() < openUntil;
+	}
+
+	@Override
+	public synchronized boolean canAttempt(@NonNull final BluetoothDevice device) {
+		if (!open)
+			return delegate.canAttempt(device);
+		if (clock.elapsedRealtime() < openUntil)
+			return false;
+		// Half-open: allow a single trial attempt.
+		open = false;
+		halfOpen = true;
+		return delegate.canAttempt(device);
+	}
+
+	@Override
+	public synchronized long getRetryDelay(@NonNull final BluetoothDevice device,
+										   @IntRange(from = 1) final int attempt, final int status) {
+		failures++;
+		if (halfOpen || failures >= failureThreshold) {
+			open = true;
+			halfOpen = false;
+			openUntil = clock.elapsedRealtime() + openDuration;
+			return NO_RETRY;
+		}
+		return delegate.getRetryDelay(device, attempt, status);
+	}
+
+	@Override
+	public synchronized void onSuccess(@NonNull final BluetoothDevice device) {
+		failures = 0;
+		open = false;
+		halfOpen = false;
+		delegate.onSuccess(device);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.retry;
+
+import android.bluetooth.BluetoothDevice;
+
+import java.util.Random;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * A retry policy with "decorrelated jitter": each delay is a random value between the base
+ * delay and 3 times the previous delay, capped at the maximum delay. Devices that failed at
+ * the same moment, for example after a power cycle, retry at different times instead of
+ * colliding again.
+ * <p>
+ * The sequence restarts from the base delay after the first failed attempt, so an instance
+ * may be reused for the following connections to the same device. Timeouts
+ * ({@link FailCallback#REASON_TIMEOUT}) are not retried.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class DecorrelatedJitterRetryPolicy implements RetryPolicy {
+	private final int maxRetries;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final Random random;
+	private long previousDelay;
+
+	/**
+	 * Creates the policy.
+	 *
+	 * @param maxRetries the maximum number of retries.
+	 * @param baseDelay  the minimum delay, in milliseconds.
+	 * @param maxDelay   the maximum delay, in milliseconds.
+	 */
+	public DecorrelatedJitterRetryPolicy(@IntRange(from = 0) final int maxRetries,
+										 @IntRange(from = 0) final long baseDelay,
+										 @IntRange(from = 0) final long maxDelay) {
+		this(maxRetries, baseDelay, maxDelay, new Random());
+	}
+
+	DecorrelatedJitterRetryPolicy(final int maxRetries, final long baseDelay, final long maxDelay,
+								  @NonNull final Random random) {
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = Math.max(baseDelay, maxDelay);
+		this.random = random;
+		this.previousDelay = baseDelay;
+	}
+
+	@Override
+	public synchronized long getRetryDelay(@NonNull final BluetoothDevice device,
+										   @IntRange(from = 1) final int attempt, final int status) {
+		if (attempt > maxRetries || status == FailCallback.REASON_TIMEOUT)
+			return NO_RETRY;
+		if (attempt == 1)
+			previousDelay = baseDelay;
+		final long upper = Math.min(maxDelay, previousDelay * 3);
+		final long delay = upper > baseDelay ?
+				baseDelay + (long) (random.nextDouble() * (upper - baseDelay)) : baseDelay;
+		previousDelay = delay;
+		return delay;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.retry;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * A retry policy doubling the delay after each failed attempt:
+ * {@code min(maxDelay, baseDelay * 2^(attempt - 1))}.
+ * <p>
+ * Timeouts ({@link FailCallback#REASON_TIMEOUT}) are not retried, as the device is most
+ * probably out of range.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+	private final int maxRetries;
+	private final long baseDelay;
+	private final long maxDelay;
+
+	/**
+	 * Creates the policy.
+	 *
+	 * @param maxRetries the maximum number of retries.
+	 * @param baseDelay  the delay before the first retry, in milliseconds.
+	 * @param maxDelay   the maximum delay, in milliseconds.
+	 */
+	public ExponentialBackoffRetryPolicy(@IntRange(from = 0) final int maxRetries,
+										 @IntRange(from = 0) final long baseDelay,
+										 @IntRange(from = 0) final long maxDelay) {
+		this.maxRetries = maxRetries;
+		this.baseDelay = baseDelay;
+		this.maxDelay = Math.max(baseDelay, maxDelay);
+	}
+
+	@Override
+	public long getRetryDelay(@NonNull final BluetoothDevice device,
+							  @IntRange(from = 1) final int attempt, final int status) {
+		if (attempt > maxRetries || status == FailCallback.REASON_TIMEOUT)
+			return NO_RETRY;
+		// Avoid overflow for high attempt numbers.
+		final int shift = Math.min(attempt - 1, 30);
+		return Math.min(maxDelay, baseDelay << shift);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.retry;
+
+import android.bluetooth.BluetoothDevice;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+
+/**
+ * A policy deciding whether, and after what delay, a failed operation should be retried.
+ * <p>
+ * Set the policy using {@link no.nordicsemi.android.ble.ConnectRequest#retry(RetryPolicy)}.
+ * The policy is given the status of each failure, so it may, for example, retry
+ * {@link no.nordicsemi.android.ble.error.GattError#GATT_ERROR GATT_ERROR (133)} but give up
+ * when the device is not reachable ({@link FailCallback#REASON_TIMEOUT}).
+ *
+ * @see ExponentialBackoffRetryPolicy
+ * @see DecorrelatedJitterRetryPolicy
+ * @see CircuitBreakerRetryPolicy
+ */
+public interface RetryPolicy {
+	/** A value returned from {@link #getRetryDelay(BluetoothDevice, int, int)} to give up. */
+	long NO_RETRY = -1;
+
+	/**
+	 * Returns the delay before the next attempt, or {@link #NO_RETRY}.
+	 *
+	 * @param device  the target device.
+	 * @param attempt the number of failed attempts so far, starting from 1.
+	 * @param status  the GATT status of the failure, or {@link FailCallback#REASON_TIMEOUT}
+	 *                if the device did not respond in time.
+	 * @return The delay in milliseconds, or {@link #NO_RETRY}.
+	 */
+	long getRetryDelay(@NonNull final BluetoothDevice device,
+					   @IntRange(from = 1) final int attempt, final int status);
+
+	/**
+	 * Returns whether a new operation may be started. Policies that stop all attempts after
+	 * too many failures, like {@link CircuitBreakerRetryPolicy}, return false to fail the
+	 * operation immediately.
+	 *
+	 * @param device the target device.
+	 * @return True, if the operation may be started.
+	 */
+	default boolean canAttempt(@NonNull final BluetoothDevice device) {
+		return true;
+	}
+
+	/**
+	 * Called when the operation has completed successfully.
+	 *
+	 * @param device the target device.
+	 */
+	default void onSuccess(@NonNull final BluetoothDevice device) {
+		// do nothing
+	}
+}
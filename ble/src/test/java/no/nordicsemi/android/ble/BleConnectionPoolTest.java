@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.callback.SuccessCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class BleConnectionPoolTest {
+
+	/** A handler that runs delayed tasks only when asked to, like a clock being advanced. */
+	private final static class ManualScheduler implements CallbackHandler {
+		private final Map<Runnable, Long> tasks = new LinkedHashMap<>();
+		private long now;
+
+		@Override
+		public void post(@NonNull final Runnable r) {
+			tasks.put(r, now);
+		}
+
+		@Override
+		public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
+			tasks.put(r, now + delayMillis);
+		}
+
+		@Override
+		public void removeCallbacks(@NonNull final Runnable r) {
+			tasks.remove(r);
+		}
+
+		/** Advances the clock by the stagger interval. */
+		void tick() {
+			advance(100);
+		}
+
+		void advance(final long millis) {
+			now += millis;
+			final List<Runnable> due = new ArrayList<>();
+			for (final Map.Entry<Runnable, Long> task : tasks.entrySet())
+				if (task.getValue() <= now)
+					due.add(task.getKey());
+			for (final Runnable r : due) {
+				tasks.remove(r);
+				r.run();
+			}
+		}
+	}
+
+	/** Simulated devices, which connect or fail when told to. */
+	private final static class SimulatedTransport implements BleConnectionPool.Transport {
+		private final Map<BleConnectionPool.Member, SuccessCallback> done = new HashMap<>();
+		private final Map<BleConnectionPool.Member, FailCallback> fail = new HashMap<>();
+		private final List<Integer> started = new ArrayList<>();
+		private int disconnected;
+
+		@Override
+		public void connect(@NonNull final BleConnectionPool.Member member,
+							@NonNull final SuccessCallback done, @NonNull final FailCallback fail) {
+			started.add(member.getPriority());
+			this.done.put(member, done);
+			this.fail.put(member, fail);
+		}
+
+		@Override
+		public void disconnect(@NonNull final BleConnectionPool.Member member) {
+			disconnected++;
+			final FailCallback callback = fail.remove(member);
+			done.remove(member);
+			if (callback != null)
+				callback.onRequestFailed(null, FailCallback.REASON_CANCELLED);
+		}
+
+		void complete(final BleConnectionPool.Member member) {
+			fail.remove(member);
+			done.remove(member).onRequestCompleted(null);
+		}
+
+		void fail(final BleConnectionPool.Member member, final int status) {
+			done.remove(member);
+			fail.remove(member).onRequestFailed(null, status);
+		}
+	}
+
+	private final ManualScheduler scheduler = new ManualScheduler();
+	private final SimulatedTransport transport = new SimulatedTransport();
+	private final BleConnectionPool pool =
+			new BleConnectionPool(3, 100, transport, Runnable::run, scheduler);
+
+	@Test
+	public void limitsConcurrentAttempts() {
+		final List<BleConnectionPool.Member> members = new ArrayList<>();
+		for (int i = 0; i < 40; i++)
+			members.add(pool.addMember(null, null, 0));
+		pool.connectAll();
+
+		// Attempts are staggered
+		assertEquals(1, pool.getConnectingCount());
+		for (int i = 0; i < 5; i++)
+			scheduler.tick();
+		assertEquals(3, pool.getConnectingCount());
+		assertEquals(37, pool.getPendingCount());
+
+		// Devices connect or fail in random order, slots get reused
+		int round = 0;
+		while (pool.getConnectingCount() > 0) {
+			for (final BleConnectionPool.Member member : members) {
+				if (member.getState() == BleConnectionPool.Member.STATE_CONNECTING) {
+					if (round++ % 4 == 0)
+						transport.fail(member, 133);
+					else
+						transport.complete(member);
+					break;
+				}
+			}
+			scheduler.tick();
+			assertTrue(pool.getConnectingCount() <= 3);
+		}
+
+		assertEquals(40, pool.getAttemptCount());
+		assertEquals(30, pool.getSuccessCount());
+		assertEquals(10, pool.getFailureCount());
+		assertEquals(30, pool.getConnectedCount());
+		assertEquals(0, pool.getPendingCount());
+		assertEquals(3, pool.getMaxConnectingCount());
+	}
+
+	@Test
+	public void connectsInPriorityOrder() {
+		final BleConnectionPool.Member first = pool.addMember(null, null, 0);
+		pool.addMember(null, null, 1);
+		pool.addMember(null, null, 5);
+		pool.addMember(null, null, 1);
+		pool.connect(first);
+		pool.connectAll();
+		for (int i = 0; i < 10; i++) {
+			scheduler.tick();
+			for (final BleConnectionPool.Member member : pool.getMembers())
+				if (member.getState() == BleConnectionPool.Member.STATE_CONNECTING)
+					transport.complete(member);
+		}
+		// The first one was already started when the others were queued
+		assertEquals(4, transport.started.size());
+		assertEquals(0, (int) transport.started.get(0));
+		assertEquals(5, (int) transport.started.get(1));
+		assertEquals(1, (int) transport.started.get(2));
+		assertEquals(1, (int) transport.started.get(3));
+	}
+
+	@Test
+	public void disconnectWhileConnecting_freesSlot() {
+		final BleConnectionPool.Member a = pool.addMember(null, null, 0);
+		final BleConnectionPool.Member b = pool.addMember(null, null, 0);
+		pool.connect(a);
+		pool.connect(b);
+		pool.disconnect(b);
+		assertEquals(BleConnectionPool.Member.STATE_IDLE, b.getState());
+		assertEquals(0, pool.getPendingCount());
+
+		pool.disconnect(a);
+		assertEquals(BleConnectionPool.Member.STATE_IDLE, a.getState());
+		assertEquals(FailCallback.REASON_CANCELLED, a.getLastStatus());
+		assertEquals(0, pool.getConnectingCount());
+	}
+
+	@Test
+	public void connectTimeout_cancelsAttempt() {
+		pool.setConnectTimeout(1000);
+		final BleConnectionPool.Member a = pool.addMember(null, null, 0);
+		final BleConnectionPool.Member b = pool.addMember(null, null, 0);
+		pool.connect(a);
+		scheduler.advance(500);
+		pool.connect(b);
+		assertEquals(2, pool.getConnectingCount());
+
+		// The first attempt times out and gets cancelled
+		scheduler.advance(500);
+		assertEquals(BleConnectionPool.Member.STATE_IDLE, a.getState());
+		assertEquals(FailCallback.REASON_TIMEOUT, a.getLastStatus());
+		assertEquals(1, transport.disconnected);
+		assertEquals(1, pool.getConnectingCount());
+		assertEquals(1, pool.getFailureCount());
+
+		// The second one completes in time
+		transport.complete(b);
+		scheduler.advance(1000);
+		assertEquals(BleConnectionPool.Member.STATE_CONNECTED, b.getState());
+		assertEquals(1, pool.getFailureCount());
+		assertEquals(1, pool.getSuccessCount());
+		assertEquals(1, transport.disconnected);
+	}
+
+	@Test
+	public void close_cancelsScheduledTasks() {
+		final BleConnectionPool.Member a = pool.addMember(null, null, 0);
+		pool.addMember(null, null, 0);
+		pool.connectAll();
+		pool.close();
+		assertEquals(0, pool.getPendingCount());
+		assertTrue(scheduler.tasks.isEmpty());
+		assertEquals(BleConnectionPool.Member.STATE_CONNECTING, a.getState());
+	}
+}
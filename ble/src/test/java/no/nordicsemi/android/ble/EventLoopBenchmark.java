@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the latency between a GATT callback being delivered and the event being
+ * dispatched, when handled directly on the delivering thread under a lock, and when
+ * handed over to an {@link EventLoop}. Two threads deliver events, like a binder thread
+ * delivering GATT callbacks and an app thread enqueuing requests.
+ * <p>
+ * This is a benchmark, not a test. The results are printed and nothing is asserted.
+ */
+public class EventLoopBenchmark {
+	private static final int WARM_UP = 5000;
+	private static final int EVENTS = 20000;
+
+	@Test
+	public void dispatchLatency() throws InterruptedException {
+		final Object lock = new Object();
+		final Dispatcher direct = event -> {
+			synchronized (lock) {
+				event.run();
+			}
+		};
+		final EventLoop loop = new EventLoop();
+		final Dispatcher actor = loop::execute;
+
+		measure(direct, WARM_UP);
+		measure(actor, WARM_UP);
+		final long[] directLatencies = measure(direct, EVENTS);
+		final long[] actorLatencies = measure(actor, EVENTS);
+		loop.shutdown();
+
+		System.out.println("Callback-to-dispatch latency (ns), " + EVENTS + " events:");
+		System.out.println("  direct: " + summary(directLatencies));
+		System.out.println("  actor:  " + summary(actorLatencies));
+	}
+
+	private interface Dispatcher {
+		void dispatch(Runnable event);
+	}
+
+	private static long[] measure(final Dispatcher dispatcher, final int events)
+			throws InterruptedException {
+		final long[] latencies = new long[events];
+		final CountDownLatch done = new CountDownLatch(events);
+		final Thread[] threads = new Thread[2];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread(() -> {
+				for (int i = offset; i < events; i += threads.length) {
+					final int index = i;
+					final long delivered = System.nanoTime();
+					dispatcher.dispatch(() -> {
+						latencies[index] = System.nanoTime() - delivered;
+						done.countDown();
+					});
+				}
+			});
+		}
+		for (final Thread thread : threads)
+			thread.start();
+		done.await();
+		for (final Thread thread : threads)
+			thread.join();
+		return latencies;
+	}
+
+	private static String summary(final long[] latencies) {
+		final long[] sorted = latencies.clone();
+		Arrays.sort(sorted);
+		return "p50=" + sorted[sorted.length / 2] +
+				", p99=" + sorted[sorted.length * 99 / 100] +
+				", max=" + sorted[sorted.length - 1];
+	}
+}
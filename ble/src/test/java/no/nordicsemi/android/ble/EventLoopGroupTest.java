@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopGroupTest {
+
+	@Test
+	public void acquire_spreadsDevices() {
+		final EventLoopGroup group = new EventLoopGroup(3);
+		for (int i = 0; i < 30; i++)
+			group.acquire("device" + i);
+		for (int i = 0; i < 3; i++)
+			assertEquals(10, group.getDeviceCount(i));
+		group.shutdown();
+	}
+
+	@Test
+	public void acquire_affinity() {
+		final EventLoopGroup group = new EventLoopGroup(2);
+		final EventLoop first = group.acquire("A");
+		final EventLoop second = group.acquire("B");
+		assertNotSame(first, second);
+		// A second manager of the same device shares the loop.
+		assertSame(first, group.acquire("A"));
+		assertEquals(1, group.getDeviceCount(0));
+		assertEquals(1, group.getDeviceCount(1));
+
+		group.release("A");
+		assertSame(first, group.get("A"));
+		group.release("A");
+		assertNull(group.get("A"));
+		assertEquals(0, group.getDeviceCount(0));
+
+		// The freed loop is used for the next device.
+		assertSame(first, group.acquire("C"));
+		group.shutdown();
+	}
+
+	@Test
+	public void load() throws InterruptedException {
+		final EventLoop loop = new EventLoop();
+		assertEquals(0f, loop.getLoad(), 0.001f);
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		loop.execute(() -> {
+			final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+			//noinspection StatementWithEmptyBody
+			while (System.nanoTime() < end);
+		});
+		loop.execute(latch::countDown);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		// 500 ms of work with a time constant of 1 s gives 1 - e^-0.5 = 0.39.
+		final float load = loop.getLoad();
+		assertTrue(load > 0.2f);
+		assertTrue(load < 0.5f);
+
+		Thread.sleep(200);
+		assertTrue(loop.getLoad() < load);
+		loop.shutdown();
+	}
+}
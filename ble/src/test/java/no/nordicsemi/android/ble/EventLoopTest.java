@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLoopTest {
+	private static final int EVENTS = 20000;
+
+	@Test
+	public void execute_inOrder() throws InterruptedException {
+		final EventLoop loop = new EventLoop();
+		final List<Integer> executed = new ArrayList<>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		for (int i = 0; i < 1000; i++) {
+			final int value = i;
+			loop.execute(() -> executed.add(value));
+		}
+		loop.execute(latch::countDown);
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 1000; i++)
+			assertEquals(i, (int) executed.get(i));
+		loop.shutdown();
+	}
+
+	@Test
+	public void inEventLoop() throws InterruptedException {
+		final EventLoop loop = new EventLoop();
+		final AtomicBoolean inLoop = new AtomicBoolean();
+		final CountDownLatch latch = new CountDownLatch(1);
+		loop.execute(() -> {
+			inLoop.set(loop.inEventLoop());
+			latch.countDown();
+		});
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(inLoop.get());
+		assertFalse(loop.inEventLoop());
+		loop.shutdown();
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void shutdown_rejects() {
+		final EventLoop loop = new EventLoop();
+		loop.shutdown();
+		assertTrue(loop.isShutdown());
+		loop.execute(() -> {});
+	}
+
+	/**
+	 * Two threads deliver events, like a binder thread delivering GATT callbacks and an app
+	 * thread enqueuing requests. All events must be handled on the loop thread, in the order
+	 * each thread delivered them.
+	 */
+	@Test
+	public void execute_fromManyThreads() throws InterruptedException {
+		final EventLoop loop = new EventLoop();
+		final int[] last = { -1, -1 };
+		final AtomicBoolean ordered = new AtomicBoolean(true);
+		final AtomicBoolean onLoop = new AtomicBoolean(true);
+		final CountDownLatch done = new CountDownLatch(EVENTS);
+		final Thread[] threads = new Thread[2];
+		for (int t = 0; t < threads.length; t++) {
+			final int producer = t;
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < EVENTS / threads.length; i++) {
+					final int index = i;
+					loop.execute(() -> {
+						if (!loop.inEventLoop())
+							onLoop.set(false);
+						if (last[producer] != index - 1)
+							ordered.set(false);
+						last[producer] = index;
+						done.countDown();
+					});
+				}
+			});
+		}
+		for (final Thread thread : threads)
+			thread.start();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		for (final Thread thread : threads)
+			thread.join();
+		loop.shutdown();
+		assertTrue(onLoop.get());
+		assertTrue(ordered.get());
+	}
+}
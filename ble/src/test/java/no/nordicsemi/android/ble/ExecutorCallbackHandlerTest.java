@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutorCallbackHandlerTest {
+
+	@Test
+	public void removeCallbacks_removesAllPosts() throws InterruptedException {
+		final ExecutorCallbackHandler handler = new ExecutorCallbackHandler(Runnable::run);
+		final AtomicInteger counter = new AtomicInteger();
+		final Runnable task = counter::incrementAndGet;
+		handler.postDelayed(task, 50);
+		handler.postDelayed(task, 60);
+		assertEquals(2, handler.getPendingCount());
+
+		handler.removeCallbacks(task);
+		assertEquals(0, handler.getPendingCount());
+		Thread.sleep(150);
+		assertEquals(0, counter.get());
+	}
+
+	@Test
+	public void postDelayed_samePostedTwice() throws InterruptedException {
+		final ExecutorCallbackHandler handler = new ExecutorCallbackHandler(Runnable::run);
+		final CountDownLatch latch = new CountDownLatch(2);
+		final Runnable task = latch::countDown;
+		handler.postDelayed(task, 10);
+		handler.postDelayed(task, 20);
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals(0, handler.getPendingCount());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import no.nordicsemi.android.ble.data.Data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class GattCaptureTest {
+	private static final UUID CHARACTERISTIC = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb");
+	private static final UUID CONTROL_POINT = UUID.fromString("00002a39-0000-1000-8000-00805f9b34fb");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recordAndRead() throws IOException {
+		final File file = folder.newFile("capture.bin");
+		final GattRecorder recorder = new GattRecorder(file);
+		recorder.recordMtu(100, GattEvent.DIRECTION_INCOMING, 0, 247);
+		recorder.record(200, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+				CHARACTERISTIC, false, new byte[] { 1, 2, 3 });
+		recorder.record(300, GattEvent.TYPE_WRITE, GattEvent.DIRECTION_OUTGOING, 0,
+				CONTROL_POINT, false, new byte[] { 4 });
+		recorder.record(400, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+				CHARACTERISTIC, false, null);
+		recorder.close();
+		assertFalse(recorder.isRecording());
+
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			GattEvent event = reader.next();
+			assertEquals(GattEvent.TYPE_MTU, event.getType());
+			assertEquals(100, event.getTimestamp());
+			assertEquals(247, event.getValue().getIntValue(Data.FORMAT_UINT16, 0).intValue());
+			assertNull(event.getUuid());
+
+			event = reader.next();
+			assertEquals(GattEvent.TYPE_NOTIFICATION, event.getType());
+			assertEquals(CHARACTERISTIC, event.getUuid());
+			assertArrayEquals(new byte[] { 1, 2, 3 }, event.getValue().getValue());
+
+			event = reader.next();
+			assertEquals(GattEvent.TYPE_WRITE, event.getType());
+			assertEquals(GattEvent.DIRECTION_OUTGOING, event.getDirection());
+			assertEquals(CONTROL_POINT, event.getUuid());
+
+			event = reader.next();
+			assertEquals(CHARACTERISTIC, event.getUuid());
+			assertEquals(0, event.getValue().size());
+
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void recordStatusAndInstanceId() throws IOException {
+		final File file = folder.newFile("capture.bin");
+		try (final GattRecorder recorder = new GattRecorder(file)) {
+			recorder.record(100, GattEvent.TYPE_READ, GattEvent.DIRECTION_INCOMING, 0x101,
+					CHARACTERISTIC, 12, false, new byte[] { 1 });
+			recorder.record(200, GattEvent.TYPE_READ, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, 20, false, new byte[] { 2 });
+			recorder.record(300, GattEvent.TYPE_READ, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, 12, false, new byte[] { 3 });
+		}
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			GattEvent event = reader.next();
+			// GATT_FAILURE does not fit in a byte
+			assertEquals(0x101, event.getStatus());
+			assertEquals(12, event.getInstanceId());
+			assertEquals(20, reader.next().getInstanceId());
+			event = reader.next();
+			assertEquals(12, event.getInstanceId());
+			assertEquals(CHARACTERISTIC, event.getUuid());
+			assertNull(reader.next());
+		}
+		// Two attribute definitions only
+		assertEquals(8 + 2 * (18 + 20) + 3 * (18 + 1), file.length());
+	}
+
+	@Test
+	public void recordMoreThanOneChunk() throws IOException {
+		final File file = folder.newFile("capture.bin");
+		final int count = 20_000;
+		try (final GattRecorder recorder = new GattRecorder(file)) {
+			for (int i = 0; i < count; i++) {
+				recorder.record(i, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+						CHARACTERISTIC, false, new byte[20]);
+			}
+		}
+		// Header, attribute definition and events, without any mapped padding.
+		assertEquals(8 + 18 + 20 + count * (18 + 20), file.length());
+
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			int read = 0;
+			while (reader.next() != null)
+				read++;
+			assertEquals(count, read);
+		}
+	}
+
+	@Test
+	public void replay() throws IOException, InterruptedException {
+		final File file = folder.newFile("capture.bin");
+		try (final GattRecorder recorder = new GattRecorder(file)) {
+			recorder.record(1000, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, false, new byte[] { 1, 2 });
+			recorder.record(2000, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, false, new byte[] { 3 });
+			recorder.record(2500, GattEvent.TYPE_WRITE, GattEvent.DIRECTION_OUTGOING, 0,
+					CONTROL_POINT, false, new byte[] { 9 });
+			recorder.record(2600, GattEvent.TYPE_WRITE, GattEvent.DIRECTION_OUTGOING, 3,
+					CONTROL_POINT, false, new byte[] { 10 });
+			recorder.recordConnectionUpdate(3000, 0, 6, 0, 500);
+		}
+
+		final List<String> received = new ArrayList<>();
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			final GattReplayer replayer = new GattReplayer(reader);
+			replayer.setNotificationCallback(CHARACTERISTIC)
+					.merge((output, lastPacket, index) -> {
+						output.write(lastPacket);
+						return index == 1;
+					})
+					.with((device, data, firstTimestamp, lastTimestamp) ->
+							received.add("notification " + data.size() + " " + firstTimestamp + "-" + lastTimestamp));
+			replayer.setSentCallback(CONTROL_POINT, (device, data) -> received.add("sent " + data.getByte(0)));
+			replayer.setConnectionUpdateCallback((device, interval, latency, timeout) ->
+					received.add("connection " + interval + " " + latency + " " + timeout));
+
+			assertEquals(5, replayer.replay(null, false));
+		}
+		// The failed write (status 3) is not replayed.
+		assertEquals(Arrays.asList(
+				"notification 3 1000-2000",
+				"sent 9",
+				"connection 6 0 500"), received);
+	}
+
+	@Test
+	public void replay_byInstanceId() throws IOException, InterruptedException {
+		final File file = folder.newFile("capture.bin");
+		try (final GattRecorder recorder = new GattRecorder(file)) {
+			recorder.record(1000, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, 12, false, new byte[] { 1 });
+			recorder.record(2000, GattEvent.TYPE_NOTIFICATION, GattEvent.DIRECTION_INCOMING, 0,
+					CHARACTERISTIC, 20, false, new byte[] { 2 });
+		}
+
+		final List<String> received = new ArrayList<>();
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			final GattReplayer replayer = new GattReplayer(reader);
+			replayer.setNotificationCallback(CHARACTERISTIC, 20)
+					.with((device, data) -> received.add("instance 20: " + data.getByte(0)));
+			replayer.setNotificationCallback(CHARACTERISTIC)
+					.with((device, data) -> received.add("any: " + data.getByte(0)));
+			replayer.replay(null, false);
+		}
+		assertEquals(Arrays.asList("any: 1", "instance 20: 2"), received);
+	}
+
+	@Test
+	public void replay_realTime() throws IOException, InterruptedException {
+		final File file = folder.newFile("capture.bin");
+		try (final GattRecorder recorder = new GattRecorder(file)) {
+			recorder.recordMtu(0, GattEvent.DIRECTION_INCOMING, 0, 23);
+			recorder.recordMtu(50_000_000L, GattEvent.DIRECTION_INCOMING, 0, 247);
+		}
+		try (final GattCaptureReader reader = new GattCaptureReader(file)) {
+			final long start = System.nanoTime();
+			new GattReplayer(reader).replay(null, true);
+			assertTrue(System.nanoTime() - start >= 50_000_000L);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattService;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class GattServiceCacheTest {
+	private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+	private static final UUID SERVICE = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+	private static final UUID RX = UUID.fromString("6e400002-b5a3-f393-e0a9-e50e24dcca9e");
+	private static final UUID TX = UUID.fromString("6e400003-b5a3-f393-e0a9-e50e24dcca9e");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GattServiceCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new GattServiceCache(folder.getRoot());
+	}
+
+	@Test
+	public void putAndGet() {
+		final byte[] hash = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+		final byte[] layout = GattServiceCache.layoutOf(services(true));
+		assertFalse(cache.contains(ADDRESS));
+		cache.put(ADDRESS, hash, layout);
+		assertTrue(cache.contains(ADDRESS));
+
+		// A new instance reads the same directory
+		final GattServiceCache.Entry entry = new GattServiceCache(folder.getRoot()).get(ADDRESS);
+		assertNotNull(entry);
+		assertArrayEquals(hash, entry.hash);
+		assertArrayEquals(layout, entry.layout);
+	}
+
+	@Test
+	public void putWithoutHash() {
+		cache.put(ADDRESS, null, new byte[] { 0, 0 });
+		final GattServiceCache.Entry entry = cache.get(ADDRESS);
+		assertNull(entry.hash);
+		assertArrayEquals(new byte[] { 0, 0 }, entry.layout);
+	}
+
+	@Test
+	public void invalidate() {
+		cache.put(ADDRESS, null, new byte[0]);
+		cache.put("11:22:33:44:55:66", null, new byte[0]);
+		cache.invalidate(ADDRESS);
+		assertFalse(cache.contains(ADDRESS));
+		assertNull(cache.get(ADDRESS));
+		assertTrue(cache.contains("11:22:33:44:55:66"));
+		cache.clear();
+		assertFalse(cache.contains("11:22:33:44:55:66"));
+	}
+
+	@Test
+	public void asyncMethods_useExecutor() {
+		final List<Runnable> tasks = new ArrayList<>();
+		final GattServiceCache cache = new GattServiceCache(folder.getRoot(), tasks::add);
+		final List<GattServiceCache.Entry> entries = new ArrayList<>();
+
+		cache.putAsync(ADDRESS, null, new byte[] { 1 });
+		cache.getAsync(ADDRESS, entries::add);
+		cache.invalidateAsync(ADDRESS);
+		cache.getAsync(ADDRESS, entries::add);
+		// Nothing is read or written on the calling thread
+		assertFalse(cache.contains(ADDRESS));
+		assertTrue(entries.isEmpty());
+
+		for (final Runnable task : tasks)
+			task.run();
+		assertEquals(2, entries.size());
+		assertArrayEquals(new byte[] { 1 }, entries.get(0).layout);
+		assertNull(entries.get(1));
+		assertFalse(cache.contains(ADDRESS));
+	}
+
+	@Test
+	public void layoutOf_differsOnChange() {
+		final byte[] layout = GattServiceCache.layoutOf(services(true));
+		assertArrayEquals(layout, GattServiceCache.layoutOf(services(true)));
+		assertFalse(Arrays.equals(layout, GattServiceCache.layoutOf(services(false))));
+		assertFalse(Arrays.equals(layout,
+				GattServiceCache.layoutOf(Collections.emptyList())));
+	}
+
+	private static List<BluetoothGattService> services(final boolean withTx) {
+		final BluetoothGattService service =
+				new BluetoothGattService(SERVICE, BluetoothGattService.SERVICE_TYPE_PRIMARY);
+		service.addCharacteristic(new BluetoothGattCharacteristic(RX,
+				BluetoothGattCharacteristic.PROPERTY_WRITE, BluetoothGattCharacteristic.PERMISSION_WRITE));
+		if (withTx)
+			service.addCharacteristic(new BluetoothGattCharacteristic(TX,
+					BluetoothGattCharacteristic.PROPERTY_NOTIFY, 0));
+		return Collections.singletonList(service);
+	}
+}
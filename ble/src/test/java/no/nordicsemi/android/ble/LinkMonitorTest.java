@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.nordicsemi.android.ble.callback.LinkQualityCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class LinkMonitorTest {
+
+	@Test
+	public void smoothing() {
+		final LinkMonitor monitor = new LinkMonitor(1000, 10000);
+		long time = 0;
+		for (int i = 0; i < 20; i++, time += 1000)
+			monitor.onRssi(null, -60, time);
+		assertEquals(-60f, monitor.getRssi(), 0.01f);
+		// A single outlier is damped
+		monitor.onRssi(null, -90, time);
+		assertTrue(monitor.getRssi() > -70);
+		assertTrue(monitor.getRssi() < -60);
+	}
+
+	@Test
+	public void interval_stableAndFalling() {
+		final LinkMonitor monitor = new LinkMonitor(1000, 10000);
+		assertEquals(1000, monitor.getNextInterval());
+		long time = 0;
+		for (int i = 0; i < 10; i++, time += 5000)
+			monitor.onRssi(null, -50, time);
+		assertEquals(10000, monitor.getNextInterval());
+
+		// The signal is getting weaker by 5 dBm per second
+		int rssi = -50;
+		for (int i = 0; i < 5; i++, time += 1000, rssi -= 5)
+			monitor.onRssi(null, rssi, time);
+		assertTrue(monitor.getTrend() < 0);
+		assertTrue(monitor.getNextInterval() < 5000);
+	}
+
+	@Test
+	public void score_errors() {
+		final LinkMonitor monitor = new LinkMonitor(1000, 10000);
+		monitor.onRssi(null, -50, 0);
+		assertEquals(100, monitor.getScore());
+		for (int i = 0; i < 10; i++) {
+			monitor.onOperation();
+			monitor.onGattError();
+		}
+		monitor.onRssi(null, -50, 1000);
+		assertEquals(0.3f, monitor.getErrorRate(), 0.001f);
+		assertEquals(70, monitor.getScore());
+	}
+
+	@Test
+	public void thresholds() {
+		final List<Integer> levels = new ArrayList<>();
+		final LinkMonitor monitor = new LinkMonitor(1000, 10000)
+				.setThresholds(40, 70)
+				.setCallback((device, quality, score, rssi) -> levels.add(quality));
+		long time = 0;
+		// Initial level is always reported
+		monitor.onRssi(null, -50, time);
+		// Dropping out of range
+		for (int i = 0; i < 60; i++)
+			monitor.onRssi(null, -95, time += 1000);
+		assertEquals(LinkQualityCallback.LINK_QUALITY_POOR, monitor.getQuality());
+		assertEquals(3, levels.size());
+		assertEquals(LinkQualityCallback.LINK_QUALITY_GOOD, (int) levels.get(0));
+		assertEquals(LinkQualityCallback.LINK_QUALITY_FAIR, (int) levels.get(1));
+		assertEquals(LinkQualityCallback.LINK_QUALITY_POOR, (int) levels.get(2));
+
+		monitor.reset();
+		monitor.onRssi(null, -70, 0);
+		assertEquals(LinkQualityCallback.LINK_QUALITY_FAIR, (int) levels.get(3));
+	}
+}
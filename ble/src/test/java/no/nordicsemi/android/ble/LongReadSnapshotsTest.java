@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LongReadSnapshotsTest {
+	private final static Object CHARACTERISTIC = new Object();
+	private final static int MAX_LENGTH = 22; // MTU 23
+
+	private static byte[] value(final int length, final int first) {
+		final byte[] value = new byte[length];
+		for (int i = 0; i < length; i++)
+			value[i] = (byte) (first + i);
+		return value;
+	}
+
+	@Test
+	public void shortValue_notCopied() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		final byte[] value = value(10, 0);
+		assertSame(value, snapshots.read(CHARACTERISTIC, 0, value, MAX_LENGTH));
+		assertFalse(snapshots.contains(CHARACTERISTIC));
+		assertNull(snapshots.read(CHARACTERISTIC, 0, null, MAX_LENGTH));
+	}
+
+	@Test
+	public void longRead_consistent() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		final byte[] value = value(50, 0);
+		final byte[] changed = value(60, 100);
+
+		final byte[] first = snapshots.read(CHARACTERISTIC, 0, value, MAX_LENGTH);
+		assertArrayEquals(Arrays.copyOfRange(value, 0, 22), first);
+		assertTrue(snapshots.contains(CHARACTERISTIC));
+
+		// The value changes in the middle of the long read.
+		final byte[] second = snapshots.read(CHARACTERISTIC, 22, changed, MAX_LENGTH);
+		assertArrayEquals(Arrays.copyOfRange(value, 22, 44), second);
+		final byte[] last = snapshots.read(CHARACTERISTIC, 44, changed, MAX_LENGTH);
+		assertArrayEquals(Arrays.copyOfRange(value, 44, 50), last);
+		assertFalse(snapshots.contains(CHARACTERISTIC));
+
+		// The next long read gets the new value.
+		assertArrayEquals(Arrays.copyOfRange(changed, 0, 22),
+				snapshots.read(CHARACTERISTIC, 0, changed, MAX_LENGTH));
+	}
+
+	@Test
+	public void longRead_valueModifiedInPlace() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		final byte[] value = value(50, 0);
+		final byte[] expected = value.clone();
+
+		assertArrayEquals(Arrays.copyOfRange(expected, 0, 22),
+				snapshots.read(CHARACTERISTIC, 0, value, MAX_LENGTH));
+		// The application overwrites the array in the middle of the long read.
+		Arrays.fill(value, (byte) 0xFF);
+		assertArrayEquals(Arrays.copyOfRange(expected, 22, 44),
+				snapshots.read(CHARACTERISTIC, 22, value, MAX_LENGTH));
+		value[45] = 0;
+		assertArrayEquals(Arrays.copyOfRange(expected, 44, 50),
+				snapshots.read(CHARACTERISTIC, 44, value, MAX_LENGTH));
+	}
+
+	@Test
+	public void longRead_lengthMultipleOfMaxLength() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		final byte[] value = value(44, 0);
+		snapshots.read(CHARACTERISTIC, 0, value, MAX_LENGTH);
+		assertEquals(22, snapshots.read(CHARACTERISTIC, 22, value, MAX_LENGTH).length);
+		assertTrue(snapshots.contains(CHARACTERISTIC));
+		assertEquals(0, snapshots.read(CHARACTERISTIC, 44, value, MAX_LENGTH).length);
+		assertFalse(snapshots.contains(CHARACTERISTIC));
+	}
+
+	@Test
+	public void invalidOffset() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		final byte[] value = value(30, 0);
+		assertSame(LongReadSnapshots.INVALID_OFFSET, snapshots.read(CHARACTERISTIC, 31, value, MAX_LENGTH));
+		// A short value read with an offset is also sliced.
+		assertArrayEquals(new byte[] { 5, 6, 7, 8, 9 },
+				snapshots.read(CHARACTERISTIC, 5, value(10, 0), MAX_LENGTH));
+	}
+
+	@Test
+	public void clear() {
+		final LongReadSnapshots snapshots = new LongReadSnapshots();
+		snapshots.read(CHARACTERISTIC, 0, value(30, 0), MAX_LENGTH);
+		snapshots.clear();
+		assertFalse(snapshots.contains(CHARACTERISTIC));
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothDevice;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.NotificationFanOutCallback;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class NotificationFanOutTest {
+
+	@Test
+	public void splitter_singlePacketNotCopied() {
+		final byte[] value = new byte[] { 1, 2, 3 };
+		final NotificationFanOut fanOut = new NotificationFanOut(value, 2, 0, null);
+		assertSame(value, fanOut.splitter.chunk(value, 0, 20));
+		assertNull(fanOut.splitter.chunk(value, 1, 20));
+	}
+
+	@Test
+	public void splitter_packetsSharedPerMtu() {
+		final byte[] value = new byte[50];
+		for (int i = 0; i < value.length; i++)
+			value[i] = (byte) i;
+		final NotificationFanOut fanOut = new NotificationFanOut(value, 3, 0, null);
+
+		final byte[] first = fanOut.splitter.chunk(value, 0, 20);
+		assertSame(first, fanOut.splitter.chunk(value, 0, 20));
+		assertEquals(20, first.length);
+		assertEquals(20, fanOut.splitter.chunk(value, 1, 20)[0]);
+		assertArrayEquals(new byte[] { 40, 41, 42, 43, 44, 45, 46, 47, 48, 49 },
+				fanOut.splitter.chunk(value, 2, 20));
+		assertNull(fanOut.splitter.chunk(value, 3, 20));
+
+		// A client with a different MTU gets its own packets.
+		final byte[] other = fanOut.splitter.chunk(value, 0, 30);
+		assertNotSame(first, other);
+		assertEquals(30, other.length);
+		assertEquals(20, fanOut.splitter.chunk(value, 1, 30).length);
+	}
+
+	@Test
+	public void results() {
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicInteger notified = new AtomicInteger();
+		final NotificationFanOut fanOut = new NotificationFanOut(new byte[1], 4, 1000,
+				new NotificationFanOutCallback() {
+					@Override
+					public void onClientNotified(@NonNull final BluetoothDevice device, final long latency) {
+						notified.incrementAndGet();
+					}
+
+					@Override
+					public void onFanOutCompleted(@NonNull final NotificationFanOut fanOut) {
+						completed.incrementAndGet();
+					}
+				});
+		assertEquals(-1, fanOut.getSlowestLatency());
+
+		fanOut.onSent(null, 1030);
+		fanOut.onSkipped(null);
+		fanOut.onSent(null, 1120);
+		assertFalse(fanOut.isComplete());
+		assertEquals(0, completed.get());
+
+		fanOut.onFailed(null, -1);
+		assertTrue(fanOut.isComplete());
+		assertEquals(1, completed.get());
+		assertEquals(2, notified.get());
+		assertEquals(2, fanOut.getSucceededCount());
+		assertEquals(1, fanOut.getFailedCount());
+		assertEquals(1, fanOut.getSkippedCount());
+		assertEquals(120, fanOut.getSlowestLatency());
+	}
+}
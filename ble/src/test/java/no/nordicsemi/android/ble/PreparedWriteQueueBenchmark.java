@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+/**
+ * Compares assembling a 512-byte long write at MTU 23 in the {@link PreparedWriteQueue} with
+ * concatenating the whole value on each chunk, as the server used to do.
+ * <p>
+ * This is a benchmark, not a test. The results are printed and nothing is asserted.
+ */
+public class PreparedWriteQueueBenchmark {
+	private final static int VALUE_LENGTH = 512;
+	private final static int CHUNK_LENGTH = 18;
+	private final static int WARM_UP = 5000;
+	private final static int ITERATIONS = 20000;
+	private final static Object CHARACTERISTIC = new Object();
+
+	/** Keeps the results alive, so that the JIT can't skip the work. */
+	private static int sink;
+
+	@Test
+	public void longWrite() {
+		final byte[] value = new byte[VALUE_LENGTH];
+		for (int i = 0; i < value.length; i++)
+			value[i] = (byte) i;
+		final byte[][] chunks = new byte[(value.length + CHUNK_LENGTH - 1) / CHUNK_LENGTH][];
+		for (int i = 0; i < chunks.length; i++)
+			chunks[i] = Bytes.copy(value, i * CHUNK_LENGTH, CHUNK_LENGTH);
+
+		concat(chunks, WARM_UP);
+		queue(chunks, WARM_UP);
+		final long concatTime = concat(chunks, ITERATIONS);
+		final long queueTime = queue(chunks, ITERATIONS);
+
+		System.out.println(VALUE_LENGTH + "-byte long write at MTU 23, " + ITERATIONS + " iterations:");
+		System.out.println("  concat: " + concatTime / ITERATIONS + " ns/write");
+		System.out.println("  queue:  " + queueTime / ITERATIONS + " ns/write");
+	}
+
+	private static long concat(final byte[][] chunks, final int iterations) {
+		final long start = System.nanoTime();
+		for (int n = 0; n < iterations; n++) {
+			byte[] value = chunks[0];
+			for (int i = 1; i < chunks.length; i++)
+				value = Bytes.concat(value, chunks[i], i * CHUNK_LENGTH);
+			sink += value.length;
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long queue(final byte[][] chunks, final int iterations) {
+		final long start = System.nanoTime();
+		for (int n = 0; n < iterations; n++) {
+			final PreparedWriteQueue queue = new PreparedWriteQueue();
+			for (int i = 0; i < chunks.length; i++)
+				queue.add(CHARACTERISTIC, i * CHUNK_LENGTH, chunks[i]);
+			sink += queue.validate() + queue.getEntries().get(0).getValue().length;
+		}
+		return System.nanoTime() - start;
+	}
+}
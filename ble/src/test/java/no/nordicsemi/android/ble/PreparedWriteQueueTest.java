@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import no.nordicsemi.android.ble.error.GattError;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PreparedWriteQueueTest {
+	private final static Object CHARACTERISTIC = new Object();
+	private final static Object DESCRIPTOR = new Object();
+
+	private static byte[] value(final int length) {
+		final byte[] value = new byte[length];
+		for (int i = 0; i < length; i++)
+			value[i] = (byte) i;
+		return value;
+	}
+
+	private static byte[] chunk(final byte[] value, final int offset, final int length) {
+		return Bytes.copy(value, offset, length);
+	}
+
+	@Test
+	public void longWrite() {
+		final byte[] value = value(512);
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		for (int offset = 0; offset < value.length; offset += 18)
+			assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, offset, chunk(value, offset, 18)));
+		assertEquals(29, queue.size());
+		assertEquals(1, queue.getEntries().size());
+		assertArrayEquals(value, queue.getEntries().get(0).getValue());
+	}
+
+	@Test
+	public void interleavedAttributes() {
+		final byte[] first = value(40);
+		final byte[] second = value(30);
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		queue.add(CHARACTERISTIC, 0, chunk(first, 0, 20));
+		queue.add(DESCRIPTOR, 0, chunk(second, 0, 20));
+		queue.add(CHARACTERISTIC, 20, chunk(first, 20, 20));
+		queue.add(DESCRIPTOR, 20, chunk(second, 20, 20));
+
+		final List<PreparedWriteQueue.Entry> entries = queue.getEntries();
+		assertEquals(2, entries.size());
+		assertSame(CHARACTERISTIC, entries.get(0).attribute);
+		assertArrayEquals(first, entries.get(0).getValue());
+		assertSame(DESCRIPTOR, entries.get(1).attribute);
+		assertArrayEquals(second, entries.get(1).getValue());
+	}
+
+	@Test
+	public void outOfOrderOffsets() {
+		final byte[] value = value(60);
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 40, chunk(value, 40, 20)));
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 0, chunk(value, 0, 20)));
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 20, chunk(value, 20, 20)));
+
+		assertEquals(GattError.GATT_SUCCESS, queue.validate());
+		assertEquals(1, queue.getEntries().size());
+		assertArrayEquals(value, queue.getEntries().get(0).getValue());
+	}
+
+	@Test
+	public void overlappingChunks() {
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		queue.add(CHARACTERISTIC, 0, new byte[] { 1, 2, 3, 4 });
+		// A retransmitted chunk overwrites the bytes.
+		queue.add(CHARACTERISTIC, 2, new byte[] { 7, 8, 9 });
+		assertArrayEquals(new byte[] { 1, 2, 7, 8, 9 }, queue.getEntries().get(0).getValue());
+		queue.add(CHARACTERISTIC, 1, new byte[] { 5 });
+		assertArrayEquals(new byte[] { 1, 5, 7, 8, 9 }, queue.getEntries().get(0).getValue());
+		assertEquals(GattError.GATT_SUCCESS, queue.validate());
+	}
+
+	@Test
+	public void gap_reportedOnExecute() {
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 0, new byte[] { 1, 2, 3, 4 }));
+		// A gap is accepted, as the missing chunk may still arrive.
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 5, new byte[] { 6 }));
+		assertEquals(GattError.GATT_INVALID_OFFSET, queue.validate());
+
+		queue.add(CHARACTERISTIC, 4, new byte[] { 5 });
+		assertEquals(GattError.GATT_SUCCESS, queue.validate());
+	}
+
+	@Test
+	public void missingStart_reportedOnExecute() {
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 10, new byte[10]));
+		assertEquals(GattError.GATT_INVALID_OFFSET, queue.validate());
+	}
+
+	@Test
+	public void limits() {
+		final PreparedWriteQueue queue = new PreparedWriteQueue(32, 3);
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 0, new byte[20]));
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 20, new byte[12]));
+		assertEquals(GattError.GATT_SUCCESS, queue.add(DESCRIPTOR, 0, new byte[1]));
+		// A full queue is reported immediately.
+		assertEquals(GattError.GATT_PREPARE_Q_FULL, queue.add(DESCRIPTOR, 1, new byte[1]));
+		assertEquals(3, queue.size());
+		assertEquals(32, queue.getEntries().get(0).getValue().length);
+		assertEquals(GattError.GATT_SUCCESS, queue.validate());
+	}
+
+	@Test
+	public void tooLong_reportedOnExecute() {
+		final PreparedWriteQueue queue = new PreparedWriteQueue(32, 3);
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 0, new byte[20]));
+		assertEquals(GattError.GATT_SUCCESS, queue.add(CHARACTERISTIC, 20, new byte[20]));
+		assertEquals(GattError.GATT_INVALID_ATTR_LEN, queue.validate());
+	}
+
+	/**
+	 * The queue must assemble the same value as concatenating the chunks one by one.
+	 */
+	@Test
+	public void longWrite_sameAsConcat() {
+		final byte[] value = value(512);
+		final int chunkLength = 18;
+		final PreparedWriteQueue queue = new PreparedWriteQueue();
+		byte[] concatenated = null;
+		for (int offset = 0; offset < value.length; offset += chunkLength) {
+			final byte[] chunk = chunk(value, offset, chunkLength);
+			concatenated = Bytes.concat(concatenated, chunk, offset);
+			queue.add(CHARACTERISTIC, offset, chunk);
+		}
+		assertArrayEquals(value, concatenated);
+		assertArrayEquals(concatenated, queue.getEntries().get(0).getValue());
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.exception.DeviceDisconnectedException;
+import no.nordicsemi.android.ble.exception.RequestFailedException;
+import no.nordicsemi.android.ble.response.RssiResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings("ConstantConditions")
+public class RequestFutureTest {
+	private final List<Request> queue = new ArrayList<>();
+
+	private final RequestHandler requestHandler = new RequestHandler() {
+		@Override
+		void enqueue(@NonNull final Request request) {
+			queue.add(request);
+		}
+
+		@Override
+		void enqueueFirst(@NonNull final Request request) {
+			queue.add(0, request);
+		}
+
+		@Override
+		void cancelQueue() {
+			queue.clear();
+		}
+
+		@Override
+		void onRequestTimeout(@NonNull final TimeoutableRequest request) {
+			// not used
+		}
+
+		@Override
+		public void post(@NonNull final Runnable r) {
+			r.run();
+		}
+
+		@Override
+		public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
+			r.run();
+		}
+
+		@Override
+		public void removeCallbacks(@NonNull final Runnable r) {
+			// do nothing
+		}
+	};
+
+	private boolean done;
+
+	@Before
+	public void setUp() {
+		queue.clear();
+		done = false;
+	}
+
+	@Test
+	public void toFuture_typedResult() throws Exception {
+		final ReadRssiRequest request = Request.newReadRssiRequest();
+		request.setRequestHandler(requestHandler).done(device -> done = true);
+		final RequestFuture<RssiResult> future = request.toFuture(RssiResult.class);
+		assertEquals(1, queue.size());
+		assertFalse(future.isDone());
+
+		request.notifyRssiRead(null, -42);
+		request.notifySuccess(null);
+		assertTrue(done);
+		assertTrue(future.isDone());
+		assertEquals(-42, future.get().getRssi());
+	}
+
+	@Test
+	public void toFuture_failure() throws Exception {
+		final Request request = Request.newRefreshCacheRequest().setRequestHandler(requestHandler);
+		final RequestFuture<Void> future = request.toFuture();
+		request.notifyFail(null, FailCallback.REASON_DEVICE_DISCONNECTED);
+		assertTrue(future.isCompletedExceptionally());
+		try {
+			future.get();
+			fail();
+		} catch (final ExecutionException e) {
+			assertTrue(e.getCause() instanceof DeviceDisconnectedException);
+		}
+	}
+
+	@Test
+	public void whenComplete() {
+		final Request request = Request.newRefreshCacheRequest().setRequestHandler(requestHandler);
+		final Object[] result = { "not called", "not called" };
+		request.toFuture().whenComplete((r, e) -> {
+			result[0] = r;
+			result[1] = e;
+		});
+		request.notifySuccess(null);
+		assertNull(result[0]);
+		assertNull(result[1]);
+	}
+
+	@Test
+	public void allOf() {
+		final RequestFuture<Void> a = new RequestFuture<>();
+		final RequestFuture<Void> b = new RequestFuture<>();
+		final RequestFuture<Void> c = new RequestFuture<>();
+		final RequestFuture<Void> all = RequestFuture.allOf(a, b, c);
+
+		a.complete(null);
+		b.fail(Request.newRefreshCacheRequest(), 0x85);
+		assertFalse(all.isDone());
+		c.complete(null);
+		assertTrue(all.isDone());
+		assertTrue(all.isCompletedExceptionally());
+		try {
+			all.get();
+			fail();
+		} catch (final Exception e) {
+			assertTrue(e.getCause() instanceof RequestFailedException);
+			assertEquals(0x85, ((RequestFailedException) e.getCause()).getStatus());
+		}
+		assertTrue(RequestFuture.allOf().isDone());
+	}
+
+	@Test
+	public void cancel() {
+		final RequestFuture<Void> future = new RequestFuture<>();
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+		assertFalse(future.complete(null));
+	}
+}
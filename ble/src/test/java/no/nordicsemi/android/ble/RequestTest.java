@@ -198,4 +198,39 @@ public class RequestTest {
 		readRequest.notifySuccess(null);
 		assertTrue(done);
 	}
+
+	@Test
+	public void split_resume() {
+		final WriteRequest request = Request.newWriteRequest(characteristic, text.getBytes(), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
+				.split()
+				.resumable();
+		request.handler = new SynchronousHandler();
+
+		// Send 2 packets, the third one is lost together with the link
+		request.notifyPacketSent(null, request.getData(MTU));
+		request.notifyPacketSent(null, request.getData(MTU));
+		request.getData(MTU);
+		request.rewind();
+
+		// The transfer continues from the first packet that was not sent
+		chunk = request.getData(MTU);
+		assertArrayEquals(text.substring(2 * (MTU - 3), 3 * (MTU - 3)).getBytes(), chunk);
+		assertTrue(request.hasMore());
+	}
+
+	@Test
+	public void split_resumeMtuChanged() {
+		final int MTU_HIGH = 100;
+		final WriteRequest request = Request.newWriteRequest(characteristic, text.getBytes(), BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
+				.split()
+				.resumable();
+		request.handler = new SynchronousHandler();
+
+		request.notifyPacketSent(null, request.getData(MTU));
+		request.rewind();
+
+		// Packet indexes do not match the data with the new MTU, so the transfer starts over
+		chunk = request.getData(MTU_HIGH);
+		assertArrayEquals(text.substring(0, MTU_HIGH - 3).getBytes(), chunk);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import android.bluetooth.BluetoothGatt;
+import android.content.BroadcastReceiver;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Field;
+import java.util.Deque;
+import java.util.concurrent.LinkedBlockingDeque;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceCacheVerificationTest {
+	private static final String ADDRESS = "AA:BB:CC:DD:EE:FF";
+	private static final byte[] LAYOUT = { 1, 2, 3 };
+	private static final byte[] HASH = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GattServiceCache cache;
+	private TestGattCallback handler;
+	private Deque<Request> initQueue;
+
+	private static class TestGattCallback extends BleManager.BleManagerGattCallback {
+		private boolean initialized;
+
+		@Override
+		protected boolean isRequiredServiceSupported(@NonNull final BluetoothGatt gatt) {
+			return true;
+		}
+
+		@Override
+		protected void initialize() {
+			initialized = true;
+		}
+
+		@Override
+		protected void onDeviceDisconnected() {
+			// do nothing
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new GattServiceCache(folder.getRoot(), Runnable::run);
+		cache.put(ADDRESS, HASH, LAYOUT);
+		final ContextWrapper context = new ContextWrapper(null) {
+			@Override
+			public Intent registerReceiver(final BroadcastReceiver receiver, final IntentFilter filter) {
+				return null;
+			}
+		};
+		handler = new TestGattCallback();
+		// The handler is only used to post callbacks, which these tests don't do.
+		new BleManager(context, null) {
+			@NonNull
+			@Override
+			protected BleManagerGattCallback getGattCallback() {
+				return handler;
+			}
+		};
+		// The initialization queue is set when services have been discovered, with the
+		// Database Hash read as the current request.
+		initQueue = new LinkedBlockingDeque<>();
+		initQueue.add(Request.newSleepRequest(100));
+		field("initQueue").set(handler, initQueue);
+	}
+
+	@Test
+	public void hashChanged_refreshBeforeReady() throws Exception {
+		final byte[] hash = HASH.clone();
+		hash[0] = 0;
+		handler.verifyServiceCache(cache, ADDRESS, cache.get(ADDRESS), LAYOUT, hash);
+
+		// The refresh must be done before the initialization queue is empty,
+		// otherwise the device would become ready before the services are discovered again.
+		assertEquals(2, initQueue.size());
+		assertSame(Request.Type.REFRESH_CACHE, initQueue.peekFirst().type);
+		assertTrue(((Deque<?>) field("taskQueue").get(handler)).isEmpty());
+		assertFalse(handler.initialized);
+		assertNull(cache.get(ADDRESS));
+	}
+
+	@Test
+	public void layoutChanged_refreshBeforeReady() throws Exception {
+		handler.verifyServiceCache(cache, ADDRESS, cache.get(ADDRESS), new byte[] { 3, 2, 1 }, HASH);
+
+		assertSame(Request.Type.REFRESH_CACHE, initQueue.peekFirst().type);
+		assertTrue(((Deque<?>) field("taskQueue").get(handler)).isEmpty());
+		assertFalse(handler.initialized);
+	}
+
+	@Test
+	public void hashMatches_initializes() throws Exception {
+		handler.verifyServiceCache(cache, ADDRESS, cache.get(ADDRESS), LAYOUT, HASH.clone());
+
+		assertEquals(1, initQueue.size());
+		assertTrue(((Deque<?>) field("taskQueue").get(handler)).isEmpty());
+		assertTrue(handler.initialized);
+	}
+
+	private static Field field(@NonNull final String name) throws NoSuchFieldException {
+		final Field field = BleManagerHandler.class.getDeclaredField(name);
+		field.setAccessible(true);
+		return field;
+	}
+}
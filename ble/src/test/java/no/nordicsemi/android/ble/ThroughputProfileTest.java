@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import no.nordicsemi.android.ble.callback.PhyCallback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ThroughputProfileTest {
+
+	@Test
+	public void airTime() {
+		// Empty packets
+		assertEquals(80, ThroughputProfile.airTime(0, PhyCallback.PHY_LE_1M));
+		assertEquals(44, ThroughputProfile.airTime(0, PhyCallback.PHY_LE_2M));
+		// Full packets with Data Length Extension
+		assertEquals(2088, ThroughputProfile.airTime(251, PhyCallback.PHY_LE_1M));
+		assertEquals(1048, ThroughputProfile.airTime(251, PhyCallback.PHY_LE_2M));
+		assertEquals(16784, ThroughputProfile.airTime(251, PhyCallback.PHY_LE_CODED));
+	}
+
+	@Test
+	public void maxThroughput_defaultMtu_unknownInterval() {
+		final ThroughputProfile profile = new ThroughputProfile(23,
+				PhyCallback.PHY_LE_1M, PhyCallback.PHY_LE_1M, 0, 0, 0);
+		// 20 bytes every 296 + 150 + 80 + 150 us
+		assertEquals(29585, profile.getMaxTxThroughput());
+		assertEquals(29585, profile.getMaxRxThroughput());
+	}
+
+	@Test
+	public void maxThroughput_2M() {
+		final ThroughputProfile profile = new ThroughputProfile(247,
+				PhyCallback.PHY_LE_2M, PhyCallback.PHY_LE_2M, 6, 0, 500);
+		// 5 packets of 244 bytes in every 7.5 ms connection event
+		assertEquals(162666, profile.getMaxTxThroughput());
+	}
+
+	@Test
+	public void maxThroughput_longInterval() {
+		final ThroughputProfile profile = new ThroughputProfile(517,
+				PhyCallback.PHY_LE_CODED, PhyCallback.PHY_LE_CODED, 6, 0, 500);
+		// A single packet per connection event
+		assertEquals(251L * 514 * 1_000_000 / (521L * 7500), profile.getMaxRxThroughput());
+	}
+
+	@Test
+	public void maxThroughput_asymmetricPhy() {
+		final ThroughputProfile profile = new ThroughputProfile(247,
+				PhyCallback.PHY_LE_2M, PhyCallback.PHY_LE_1M, 0, 0, 0);
+		assertTrue(profile.getMaxTxThroughput() > profile.getMaxRxThroughput());
+	}
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import no.nordicsemi.android.ble.data.DataBatch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@SuppressWarnings("ConstantConditions")
+public class ValueChangedCallbackTest {
+	private final static class SynchronousHandler implements CallbackHandler {
+		@Override
+		public void post(@NonNull final Runnable r) {
+			r.run();
+		}
+
+		@Override
+		public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
+			r.run();
+		}
+
+		@Override
+		public void removeCallbacks(@NonNull final Runnable r) {
+			// do nothing
+		}
+	}
+
+	/** A handler that runs posted tasks only when asked to, like a busy looper. */
+	private final static class QueuedHandler implements CallbackHandler {
+		private final List<Runnable> tasks = new ArrayList<>();
+		/** Whether values are received on the handler's thread. */
+		private boolean currentThread;
+
+		@Override
+		public void post(@NonNull final Runnable r) {
+			tasks.add(r);
+		}
+
+		@Override
+		public void postDelayed(@NonNull final Runnable r, final long delayMillis) {
+			tasks.add(r);
+		}
+
+		@Override
+		public void removeCallbacks(@NonNull final Runnable r) {
+			tasks.remove(r);
+		}
+
+		@Override
+		public boolean isCurrentThread() {
+			return currentThread;
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty())
+				tasks.remove(0).run();
+		}
+	}
+
+	private final List<String> received = new ArrayList<>();
+
+	@Test
+	public void route_byOpCode() {
+		final ValueChangedCallback callback = new ValueChangedCallback(new SynchronousHandler())
+				.with((device, data) -> received.add("default " + data.size()));
+		callback.route(0x10).with((device, data) -> received.add("0x10 " + data.size()));
+		callback.route(0x20).with((device, data) -> received.add("0x20 " + data.size()));
+
+		callback.notifyValueChanged(null, new byte[] { 0x20, 1 });
+		callback.notifyValueChanged(null, new byte[] { 0x10 });
+		callback.notifyValueChanged(null, new byte[] { 0x30, 1, 2 });
+		callback.notifyValueChanged(null, new byte[0]);
+
+		assertEquals(4, received.size());
+		assertEquals("0x20 2", received.get(0));
+		assertEquals("0x10 1", received.get(1));
+		assertEquals("default 3", received.get(2));
+		assertEquals("default 0", received.get(3));
+	}
+
+	@Test
+	public void route_withMerger() {
+		final ValueChangedCallback callback = new ValueChangedCallback(new SynchronousHandler())
+				.routingKeyOffset(1)
+				.with((device, data) -> received.add("default"));
+		// Message of 3 packets, only the first one has the key.
+		callback.route(0x01)
+				.merge((output, lastPacket, index) -> {
+					output.write(lastPacket);
+					return index == 2;
+				})
+				.with((device, data) -> {
+					received.add("0x01");
+					assertArrayEquals(new byte[] { 0, 1, 2, 1, 3, 4 }, data.getValue());
+				});
+
+		callback.notifyValueChanged(null, new byte[] { 0, 1, 2 });
+		callback.notifyValueChanged(null, new byte[] { 1 });
+		callback.notifyValueChanged(null, new byte[] { 3, 4 });
+		callback.notifyValueChanged(null, new byte[] { 3, 4 });
+
+		assertEquals(2, received.size());
+		assertEquals("0x01", received.get(0));
+		assertEquals("default", received.get(1));
+	}
+
+	@Test
+	public void batch_betweenHandlerTurns() {
+		final QueuedHandler handler = new QueuedHandler();
+		final List<DataBatch> batches = new ArrayList<>();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.batch(10, 0, (device, batch) -> batches.add(batch));
+
+		callback.notifyValueChanged(null, new byte[] { 1 }, 100);
+		callback.notifyValueChanged(null, new byte[] { 2 }, 200);
+		callback.notifyValueChanged(null, new byte[] { 3 }, 300);
+		assertEquals(1, handler.tasks.size());
+		handler.runAll();
+		callback.notifyValueChanged(null, new byte[] { 4 }, 400);
+		handler.runAll();
+
+		assertEquals(2, batches.size());
+		assertEquals(3, batches.get(0).size());
+		assertEquals(2, (int) batches.get(0).get(1).getByte(0));
+		assertEquals(300, batches.get(0).getTimestamp(2));
+		assertEquals(1, batches.get(1).size());
+		assertEquals(400, batches.get(1).getTimestamp(0));
+	}
+
+	@Test
+	public void batch_maxSize() {
+		final QueuedHandler handler = new QueuedHandler();
+		final List<DataBatch> batches = new ArrayList<>();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.batch(2, 1000, (device, batch) -> batches.add(batch));
+
+		for (int i = 0; i < 5; ++i)
+			callback.notifyValueChanged(null, new byte[] { (byte) i }, i);
+		// 2 full batches and one waiting for more data
+		assertEquals(3, handler.tasks.size());
+		handler.runAll();
+
+		assertEquals(3, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertEquals(2, batches.get(1).size());
+		assertEquals(1, batches.get(2).size());
+		assertEquals(4, (int) batches.get(2).get(0).getByte(0));
+	}
+
+	@Test
+	public void progress_notPostedWithoutCallback() {
+		final QueuedHandler handler = new QueuedHandler();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.merge((output, lastPacket, index) -> {
+					output.write(lastPacket);
+					return index == 1;
+				})
+				.with((device, data) -> received.add("merged"));
+
+		callback.notifyValueChanged(null, new byte[] { 1 });
+		assertEquals(0, handler.tasks.size());
+		callback.notifyValueChanged(null, new byte[] { 2 });
+		assertEquals(1, handler.tasks.size());
+	}
+
+	@Test
+	public void ringBuffer_dropNewest() {
+		final QueuedHandler handler = new QueuedHandler();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.with((device, data) -> received.add(String.valueOf(data.getByte(0))))
+				.ringBuffer(4, ValueChangedCallback.OVERFLOW_DROP_NEWEST);
+
+		for (int i = 0; i < 6; ++i)
+			callback.notifyValueChanged(null, new byte[] { (byte) i });
+		// A single drain task is posted.
+		assertEquals(1, handler.tasks.size());
+		handler.runAll();
+
+		assertEquals(Arrays.asList("0", "1", "2", "3"), received);
+		assertEquals(2, callback.getDroppedCount());
+	}
+
+	@Test
+	public void ringBuffer_blockOnCallbackThread() {
+		final QueuedHandler handler = new QueuedHandler();
+		// Values are received on the thread running the drain task, e.g. when the same
+		// event loop is used for GATT events and callbacks.
+		handler.currentThread = true;
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.with((device, data) -> received.add(String.valueOf(data.getByte(0))))
+				.ringBuffer(4, ValueChangedCallback.OVERFLOW_BLOCK);
+
+		// This would wait forever for the drain task, which can't run until it returns.
+		for (int i = 0; i < 6; ++i)
+			callback.notifyValueChanged(null, new byte[] { (byte) i });
+		assertEquals(Arrays.asList("0", "1", "2", "3"), received);
+		handler.runAll();
+
+		assertEquals(Arrays.asList("0", "1", "2", "3", "4", "5"), received);
+		assertEquals(0, callback.getDroppedCount());
+	}
+
+	@Test
+	public void ringBuffer_dropOldest() {
+		final QueuedHandler handler = new QueuedHandler();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.with((device, data) -> received.add(String.valueOf(data.getByte(0))))
+				.ringBuffer(4, ValueChangedCallback.OVERFLOW_DROP_OLDEST);
+
+		for (int i = 0; i < 6; ++i)
+			callback.notifyValueChanged(null, new byte[] { (byte) i });
+		handler.runAll();
+		callback.notifyValueChanged(null, new byte[] { 6 });
+		handler.runAll();
+
+		assertEquals(Arrays.asList("2", "3", "4", "5", "6"), received);
+		assertEquals(2, callback.getDroppedCount());
+	}
+
+	@Test
+	public void ringBuffer_conflate() {
+		final QueuedHandler handler = new QueuedHandler();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.with((device, data) -> received.add(String.valueOf(data.getByte(0))))
+				.ringBuffer(2, ValueChangedCallback.OVERFLOW_CONFLATE);
+
+		for (int i = 0; i < 5; ++i)
+			callback.notifyValueChanged(null, new byte[] { (byte) i });
+		handler.runAll();
+
+		// 0 and 1 are replaced by 2, then 2 and 3 are replaced by 4
+		assertEquals(Collections.singletonList("4"), received);
+		assertEquals(4, callback.getDroppedCount());
+	}
+
+	@Test
+	public void timestamps_mergedMessage() {
+		final ValueChangedCallback callback = new ValueChangedCallback(new SynchronousHandler())
+				.merge((output, lastPacket, index) -> {
+					output.write(lastPacket);
+					return index == 1;
+				})
+				.with((device, data, firstTimestamp, lastTimestamp) ->
+						received.add(data.size() + " " + firstTimestamp + "-" + lastTimestamp));
+
+		callback.notifyValueChanged(null, new byte[] { 1, 2 }, 100);
+		callback.notifyValueChanged(null, new byte[] { 3 }, 250);
+		callback.notifyValueChanged(null, new byte[] { 4 }, 300);
+		callback.notifyValueChanged(null, new byte[] { 5 }, 310);
+
+		assertEquals(Arrays.asList("3 100-250", "2 300-310"), received);
+	}
+
+	@Test
+	public void timestamps_ringBuffer() {
+		final QueuedHandler handler = new QueuedHandler();
+		final ValueChangedCallback callback = new ValueChangedCallback(handler)
+				.ringBuffer(4, ValueChangedCallback.OVERFLOW_DROP_NEWEST)
+				.with((device, data, firstTimestamp, lastTimestamp) ->
+						received.add(firstTimestamp + "-" + lastTimestamp));
+
+		callback.notifyValueChanged(null, new byte[] { 1 }, 100);
+		callback.notifyValueChanged(null, new byte[] { 2 }, 200);
+		handler.runAll();
+
+		// The timestamps are taken on arrival, not when the handler gets to run
+		assertEquals(Arrays.asList("100-100", "200-200"), received);
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import no.nordicsemi.android.ble.exception.InvalidChecksumException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CrcMergerTest {
+	private final byte[] check = "123456789".getBytes();
+
+	/** A merger that expects 3 packets. */
+	private final DataMerger threePackets = (output, lastPacket, index) -> {
+		output.write(lastPacket);
+		return index == 2;
+	};
+
+	@Test
+	public void crc16_check() {
+		final Crc16Ccitt crc = new Crc16Ccitt();
+		crc.update(check);
+		assertEquals(0x29B1, crc.getValue());
+
+		final Crc16Ccitt xmodem = new Crc16Ccitt(0x0000);
+		xmodem.update(check);
+		assertEquals(0x31C3, xmodem.getValue());
+	}
+
+	@Test
+	public void crc16_bytewise() {
+		final byte[] data = random(1000);
+		final Crc16Ccitt sliced = new Crc16Ccitt();
+		final Crc16Ccitt bytewise = new Crc16Ccitt();
+		sliced.update(data, 3, 990);
+		for (int i = 3; i < 993; ++i)
+			bytewise.update(data[i]);
+		assertEquals(bytewise.getValue(), sliced.getValue());
+	}
+
+	@Test
+	public void crc32_check() {
+		final Crc32 crc = new Crc32();
+		crc.update(check);
+		assertEquals(0xCBF43926L, crc.getValue());
+	}
+
+	@Test
+	public void crc32_sameAsJava() {
+		final byte[] data = random(1000);
+		for (int length = 0; length < 40; ++length) {
+			final Crc32 crc = new Crc32();
+			final CRC32 expected = new CRC32();
+			crc.update(data, 5, length);
+			expected.update(data, 5, length);
+			assertEquals(expected.getValue(), crc.getValue());
+		}
+	}
+
+	@Test
+	public void merge_valid() {
+		final CrcMerger merger = CrcMerger.crc16(threePackets);
+		final DataStream output = new DataStream();
+		// 0x29B1 in Little Endian is split between the 2 last packets.
+		assertFalse(merger.merge(output, "12345".getBytes(), 0));
+		assertFalse(merger.merge(output, new byte[] { '6', '7', '8', '9', (byte) 0xB1 }, 1));
+		assertTrue(merger.merge(output, new byte[] { 0x29 }, 2));
+		assertArrayEquals(check, output.toByteArray());
+	}
+
+	@Test
+	public void merge_reused() {
+		final CrcMerger merger = CrcMerger.crc32(threePackets);
+		for (int n = 0; n < 2; ++n) {
+			final DataStream output = new DataStream();
+			merger.merge(output, "1234".getBytes(), 0);
+			merger.merge(output, "56789".getBytes(), 1);
+			assertTrue(merger.merge(output, new byte[] { 0x26, 0x39, (byte) 0xF4, (byte) 0xCB }, 2));
+			assertArrayEquals(check, output.toByteArray());
+		}
+	}
+
+	@Test
+	public void merge_invalid() {
+		final CrcMerger merger = CrcMerger.crc16(threePackets);
+		final DataStream output = new DataStream();
+		merger.merge(output, "12345".getBytes(), 0);
+		merger.merge(output, "6789".getBytes(), 1);
+		try {
+			merger.merge(output, new byte[] { 0x29, (byte) 0xB1 }, 2);
+			throw new AssertionError("Exception expected");
+		} catch (final InvalidChecksumException e) {
+			assertEquals(0xB129, e.getReceived());
+			assertEquals(0x29B1, e.getCalculated());
+		}
+	}
+
+	@Test
+	public void filter() {
+		final CrcFilter filter = CrcFilter.crc16();
+		assertTrue(filter.filter(new byte[] { '1', '2', '3', '4', '5', '6', '7', '8', '9', (byte) 0xB1, 0x29 }));
+		assertFalse(filter.filter(new byte[] { '1', '2', '3', '4', '5', '6', '7', '8', '0', (byte) 0xB1, 0x29 }));
+		assertFalse(filter.filter(new byte[] { 0x01 }));
+	}
+
+	private static byte[] random(final int length) {
+		final byte[] data = new byte[length];
+		new Random(1).nextBytes(data);
+		return data;
+	}
+}
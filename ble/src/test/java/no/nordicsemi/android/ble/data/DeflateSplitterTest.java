@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import no.nordicsemi.android.ble.exception.CorruptedMessageException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeflateSplitterTest {
+	private final String text = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod " +
+			"tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis " +
+			"nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat. " +
+			"Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod " +
+			"tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis " +
+			"nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo consequat.";
+
+	@Test
+	public void chunk_streaming() {
+		final byte[] message = text.getBytes();
+		final DeflateSplitter splitter = new DeflateSplitter();
+		final List<byte[]> packets = split(splitter, message, 20);
+
+		assertTrue(packets.size() < message.length / 20);
+		assertTrue(splitter.getStats().getRatio() > 1.0f);
+
+		final InflateMerger merger = new InflateMerger();
+		final DataStream output = new DataStream();
+		for (int i = 0; i < packets.size(); ++i) {
+			final boolean complete = merger.merge(output, packets.get(i), i);
+			assertTrue(complete == (i == packets.size() - 1));
+		}
+		assertArrayEquals(message, output.toByteArray());
+	}
+
+	@Test
+	public void chunk_repeated() {
+		final byte[] message = text.getBytes();
+		final DeflateSplitter splitter = new DeflateSplitter();
+		final byte[] first = splitter.chunk(message, 0, 20);
+		final byte[] second = splitter.chunk(message, 1, 20);
+		assertArrayEquals(second, splitter.chunk(message, 1, 20));
+		assertArrayEquals(first, splitter.chunk(message, 0, 20));
+	}
+
+	@Test
+	public void end_reused() {
+		final byte[] message = text.getBytes();
+		final DeflateSplitter splitter = new DeflateSplitter();
+		final List<byte[]> packets = split(splitter, message, 20);
+		final byte[] first = splitter.chunk(message, 0, 20);
+		splitter.end();
+		splitter.end();
+		// A new stream is created and the message is compressed again, also when
+		// continued from the middle.
+		assertArrayEquals(packets.get(3), splitter.chunk(message, 3, 20));
+		splitter.end();
+		assertArrayEquals(first, splitter.chunk(message, 0, 20));
+
+		final InflateMerger merger = new InflateMerger();
+		merger.merge(new DataStream(), packets.get(0), 0);
+		merger.end();
+		// The next message starts from the beginning.
+		final DataStream output = new DataStream();
+		for (int i = 0; i < packets.size(); ++i)
+			merger.merge(output, packets.get(i), i);
+		assertArrayEquals(message, output.toByteArray());
+	}
+
+	@Test
+	public void chunk_withSplitter() {
+		final byte[] message = text.getBytes();
+		final DeflateSplitter splitter = new DeflateSplitter(new DefaultMtuSplitter());
+		final List<byte[]> packets = split(splitter, message, 20);
+
+		// The default MTU splitter does not mark the last packet, so a 20-byte one is
+		// added if the compressed length is a multiple of 20.
+		if (packets.get(packets.size() - 1).length == 20)
+			packets.add(new byte[0]);
+
+		final InflateMerger merger = new InflateMerger((output, lastPacket, index) -> {
+			output.write(lastPacket);
+			return lastPacket == null || lastPacket.length < 20;
+		});
+		final DataStream output = new DataStream();
+		for (int i = 0; i < packets.size(); ++i) {
+			final boolean complete = merger.merge(output, packets.get(i), i);
+			assertTrue(complete == (i == packets.size() - 1));
+		}
+		assertArrayEquals(message, output.toByteArray());
+	}
+
+	@Test
+	public void merge_reused() {
+		final byte[] message = text.getBytes();
+		final InflateMerger merger = new InflateMerger();
+		for (int n = 0; n < 2; ++n) {
+			final List<byte[]> packets = split(new DeflateSplitter(9), message, 64);
+			final DataStream output = new DataStream();
+			for (int i = 0; i < packets.size(); ++i) {
+				merger.merge(output, packets.get(i), i);
+			}
+			assertArrayEquals(message, output.toByteArray());
+		}
+	}
+
+	@Test(expected = CorruptedMessageException.class)
+	public void merge_corrupted() {
+		final InflateMerger merger = new InflateMerger();
+		final DataStream output = new DataStream();
+		assertFalse(merger.merge(output, new byte[] { 0x78, (byte) 0x9C }, 0));
+		merger.merge(output, new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x00 }, 1);
+	}
+
+	private static List<byte[]> split(final DataSplitter splitter, final byte[] message, final int maxLength) {
+		final List<byte[]> packets = new ArrayList<>();
+		byte[] packet;
+		int index = 0;
+		while ((packet = splitter.chunk(message, index++, maxLength)) != null) {
+			packets.add(packet);
+		}
+		assertNull(splitter.chunk(message, index, maxLength));
+		return packets;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThroughputMeterTest {
+	private static final long MS = 1_000_000L;
+
+	@Test
+	public void record_countsAndGaps() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		meter.record(20, 1000 * MS);
+		meter.record(20, 1010 * MS);
+		meter.record(20, 1020 * MS);
+		meter.record(40, 1500 * MS);
+		meter.record(20, 1500 * MS);
+
+		final ThroughputStats stats = meter.getStats();
+		assertEquals(5, stats.getPacketCount());
+		assertEquals(120, stats.getByteCount());
+		assertEquals(500 * MS, stats.getDurationNanos());
+		assertEquals(1500 * MS, stats.getLastTimestamp());
+		assertEquals(480 * MS, stats.getMaxGapNanos());
+		assertEquals(8.0, stats.getPacketsPerSecond(), 0.001);
+		// The first packet starts the measurement and is not counted in the rates.
+		assertEquals(200.0, stats.getBytesPerSecond(), 0.001);
+
+		assertEquals(1, stats.getHistogramCount(0)); // 0 ms
+		assertEquals(2, stats.getHistogramCount(4)); // 10 ms, in [8, 16)
+		assertEquals(1, stats.getHistogramCount(9)); // 480 ms, in [256, 512)
+	}
+
+	@Test
+	public void bytesPerSecond_excludesFirstPacket() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		meter.record(200, 0);
+		meter.record(10, 1000 * MS);
+		assertEquals(10.0, meter.getStats().getBytesPerSecond(), 0.001);
+
+		meter.reset();
+		meter.record(10, 0);
+		meter.record(200, 1000 * MS);
+		assertEquals(200.0, meter.getStats().getBytesPerSecond(), 0.001);
+	}
+
+	@Test
+	public void bucketOf_boundaries() {
+		assertEquals(0, ThroughputMeter.bucketOf(MS - 1));
+		assertEquals(1, ThroughputMeter.bucketOf(MS));
+		assertEquals(2, ThroughputMeter.bucketOf(2 * MS));
+		assertEquals(2, ThroughputMeter.bucketOf(3 * MS));
+		assertEquals(11, ThroughputMeter.bucketOf(1024 * MS));
+		assertEquals(11, ThroughputMeter.bucketOf(60_000 * MS));
+		assertEquals(512, ThroughputStats.getBucketLowerBoundMillis(10));
+	}
+
+	@Test
+	public void reset_clearsAll() {
+		final ThroughputMeter meter = new ThroughputMeter();
+		meter.record(20, 10 * MS);
+		meter.record(20, 30 * MS);
+		meter.reset();
+
+		final ThroughputStats stats = meter.getStats();
+		assertEquals(0, stats.getPacketCount());
+		assertEquals(0, stats.getMaxGapNanos());
+		assertEquals(0.0, stats.getPacketsPerSecond(), 0.0);
+		assertEquals(0, stats.getHistogramCount(4));
+	}
+}
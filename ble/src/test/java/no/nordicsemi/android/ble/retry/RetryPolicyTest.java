@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, Nordic Semiconductor
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package no.nordicsemi.android.ble.retry;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import no.nordicsemi.android.ble.callback.FailCallback;
+import no.nordicsemi.android.ble.error.GattError;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+public class RetryPolicyTest {
+
+	@Test
+	public void exponentialBackoff() {
+		final RetryPolicy policy = new ExponentialBackoffRetryPolicy(5, 100, 1000);
+		assertEquals(100, policy.getRetryDelay(null, 1, GattError.GATT_ERROR));
+		assertEquals(200, policy.getRetryDelay(null, 2, GattError.GATT_ERROR));
+		assertEquals(400, policy.getRetryDelay(null, 3, GattError.GATT_ERROR));
+		assertEquals(800, policy.getRetryDelay(null, 4, GattError.GATT_ERROR));
+		assertEquals(1000, policy.getRetryDelay(null, 5, GattError.GATT_ERROR));
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(null, 6, GattError.GATT_ERROR));
+	}
+
+	@Test
+	public void exponentialBackoff_timeout() {
+		final RetryPolicy policy = new ExponentialBackoffRetryPolicy(5, 100, 1000);
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(null, 1, FailCallback.REASON_TIMEOUT));
+	}
+
+	@Test
+	public void decorrelatedJitter_bounds() {
+		final RetryPolicy policy = new DecorrelatedJitterRetryPolicy(1000, 100, 5000, new Random(1));
+		long previous = 100;
+		for (int attempt = 1; attempt <= 1000; attempt++) {
+			final long delay = policy.getRetryDelay(null, attempt, GattError.GATT_ERROR);
+			assertTrue(delay >= 100);
+			assertTrue(delay <= Math.min(5000, previous * 3));
+			previous = delay;
+		}
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(null, 1001, GattError.GATT_ERROR));
+	}
+
+	@Test
+	public void decorrelatedJitter_spreadsDevices() {
+		// Devices failing at the same time should not retry in lockstep.
+		final RetryPolicy a = new DecorrelatedJitterRetryPolicy(3, 100, 5000, new Random(1));
+		final RetryPolicy b = new DecorrelatedJitterRetryPolicy(3, 100, 5000, new Random(2));
+		boolean differ = false;
+		for (int attempt = 1; attempt <= 3; attempt++) {
+			differ |= a.getRetryDelay(null, attempt, GattError.GATT_ERROR)
+					!= b.getRetryDelay(null, attempt, GattError.GATT_ERROR);
+		}
+		assertTrue(differ);
+	}
+
+	@Test
+	public void circuitBreaker() {
+		final long[] now = { 0 };
+		final CircuitBreakerRetryPolicy policy = new CircuitBreakerRetryPolicy(
+				new ExponentialBackoffRetryPolicy(10, 100, 1000), 3, 10000, () -> now[0]);
+
+		assertTrue(policy.canAttempt(null));
+		assertEquals(100, policy.getRetryDelay(null, 1, GattError.GATT_ERROR));
+		assertEquals(200, policy.getRetryDelay(null, 2, GattError.GATT_ERROR));
+		// Third consecutive failure opens the circuit
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(null, 3, GattError.GATT_ERROR));
+		assertTrue(policy.isOpen());
+		assertFalse(policy.canAttempt(null));
+
+		// After the open duration a single attempt is allowed
+		now[0] = 10000;
+		assertTrue(policy.canAttempt(null));
+		assertEquals(RetryPolicy.NO_RETRY, policy.getRetryDelay(null, 1, GattError.GATT_ERROR));
+		assertFalse(policy.canAttempt(null));
+
+		// A successful trial closes the circuit
+		now[0] = 20000;
+		assertTrue(policy.canAttempt(null));
+		policy.onSuccess(null);
+		assertFalse(policy.isOpen());
+		assertEquals(100, policy.getRetryDelay(null, 1, GattError.GATT_ERROR));
+	}
+}